@@ -11,11 +11,16 @@
 package org.springsource.ide.eclipse.gradle.core.modelmanager.test;
 
 import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import junit.framework.AssertionFailedError;
 
@@ -25,6 +30,7 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.jobs.Job;
 import org.gradle.tooling.model.DomainObjectSet;
+import org.gradle.tooling.model.GradleTask;
 import org.gradle.tooling.model.UnsupportedMethodException;
 import org.gradle.tooling.model.eclipse.EclipseLinkedResource;
 import org.gradle.tooling.model.eclipse.EclipseProjectDependency;
@@ -35,6 +41,7 @@ import org.springsource.ide.eclipse.gradle.core.GradleCore;
 import org.springsource.ide.eclipse.gradle.core.GradleProject;
 import org.springsource.ide.eclipse.gradle.core.classpathcontainer.FastOperationFailedException;
 import org.springsource.ide.eclipse.gradle.core.modelmanager.AbstractModelBuilder;
+import org.springsource.ide.eclipse.gradle.core.modelmanager.ConcurrentModelBuilder;
 import org.springsource.ide.eclipse.gradle.core.modelmanager.GradleModelManager;
 import org.springsource.ide.eclipse.gradle.core.modelmanager.IGradleModelListener;
 import org.springsource.ide.eclipse.gradle.core.test.GradleTest;
@@ -461,6 +468,116 @@ public class GradleModelManagerTest extends GradleTest {
 		assertEquals(1, builder.totalBuilds());
 	}
 	
+	/**
+	 * Concurrent requests for the same model should join a single in progress request and 
+	 * this should be reflected in the coalesced request count.
+	 */
+	public void testCoalescedRequestCount() throws Exception {
+		GradleProject animal = project("animal");
+		builder.setBuildDuration(1000);
+		
+		ArrayList<JoinableContinuation<FooModel>> promises = new ArrayList<JoinableContinuation<FooModel>>();
+		for (int i = 0; i < 10; i++) {
+			promises.add(getModelPromise(animal, FooModel.class));
+		}
+		for (JoinableContinuation<FooModel> promise : promises) {
+			assertEquals("Foo(animal)", promise.join().getFoo());
+		}
+		assertEquals(1, builder.totalBuilds());
+		assertEquals(9, mgr.getCoalescedRequestCount());
+		
+		//Requests satisfied from the cache are not coalesced requests.
+		mgr.getModel(animal, FooModel.class, new NullProgressMonitor());
+		assertEquals(9, mgr.getCoalescedRequestCount());
+	}
+	
+	/**
+	 * When one of several requests waiting for the same build is canceled, the build
+	 * should still complete for the others.
+	 */
+	public void testCancelingOneWaiter() throws Exception {
+		GradleProject animal = project("animal");
+		builder.setBuildDuration(1000);
+		
+		ModelPromise<FooModel> waiting = getModelPromise(animal, FooModel.class);
+		builder.awaitBuildStarted();
+		ModelPromise<FooModel> canceled = getModelPromise(animal, FooModel.class);
+		awaitCoalescedRequests(1); //Second request waiting for the build now.
+		canceled.cancel();
+		try {
+			canceled.join();
+			fail("Should have been canceled");
+		} catch (Throwable e) {
+			assertTrue("Expected cancelation but got: "+e, ExceptionUtil.isCancelation(e));
+		}
+		assertEquals("Foo(animal)", waiting.join().getFoo());
+		assertEquals(1, builder.totalBuilds());
+	}
+	
+	/**
+	 * When all requests waiting for the same build are canceled, the build itself
+	 * should be canceled and its result should not be cached.
+	 */
+	public void testCancelingAllWaiters() throws Exception {
+		GradleProject animal = project("animal");
+		builder.setBuildDuration(1000);
+		
+		ArrayList<ModelPromise<FooModel>> promises = new ArrayList<ModelPromise<FooModel>>();
+		promises.add(getModelPromise(animal, FooModel.class));
+		builder.awaitBuildStarted();
+		for (int i = 0; i < 2; i++) {
+			promises.add(getModelPromise(animal, FooModel.class));
+		}
+		awaitCoalescedRequests(2); //All requests waiting for the build now.
+		//The first request runs the build, cancel it last.
+		for (int i = promises.size()-1; i >= 0; i--) {
+			promises.get(i).cancel();
+		}
+		for (ModelPromise<FooModel> promise : promises) {
+			try {
+				promise.join();
+				fail("Should have been canceled");
+			} catch (Throwable e) {
+				assertTrue("Expected cancelation but got: "+e, ExceptionUtil.isCancelation(e));
+			}
+		}
+		
+		FooModel model = mgr.getModel(animal, FooModel.class, new NullProgressMonitor());
+		assertEquals("Foo(animal)", model.getFoo());
+		assertEquals(2, builder.totalBuilds());
+	}
+	
+	/**
+	 * A request from outside the UI thread builds the model in the caller's thread. When that caller
+	 * cancels while others are waiting, the request is continued in the background for the others.
+	 */
+	public void testCancelingCallerThatBuilds() throws Exception {
+		GradleProject animal = project("animal");
+		builder.setBuildDuration(1000);
+		
+		ModelPromise<FooModel> canceled = getModelPromise(animal, FooModel.class);
+		builder.awaitBuildStarted();
+		ModelPromise<FooModel> waiting = getModelPromise(animal, FooModel.class);
+		awaitCoalescedRequests(1);
+		canceled.cancel();
+		try {
+			canceled.join();
+			fail("Should have been canceled");
+		} catch (Throwable e) {
+			assertTrue("Expected cancelation but got: "+e, ExceptionUtil.isCancelation(e));
+		}
+		assertEquals("Foo(animal)", waiting.join().getFoo());
+		assertEquals(2, builder.totalBuilds());
+	}
+	
+	private void awaitCoalescedRequests(int count) throws Exception {
+		long timeout = System.currentTimeMillis()+5000;
+		while (mgr.getCoalescedRequestCount()<count) {
+			assertTrue("Timed out waiting for "+count+" coalesced requests", System.currentTimeMillis()<timeout);
+			Thread.sleep(10);
+		}
+	}
+	
 	/**
 	 *  When multiple request for a single model come in quick succession only one 
 	 *  build should happen even if this build fails.
@@ -959,6 +1076,84 @@ public class GradleModelManagerTest extends GradleTest {
 		mgr.getModel(project("animal/bird/swallow"), BarModel.class, new NullProgressMonitor());
 	}
 	
+	/**
+	 * Builds for unrelated build families should not be serialized.
+	 */
+	public void testUnrelatedFamiliesBuildConcurrently() throws Exception {
+		useConcurrentBuilder(4, 1);
+		primeBuildFamilies();
+		builder.setBuildDuration(1000);
+		
+		ModelPromise<FooHierarchyModel> cow = getModelPromise(project("animal/mamal/cow"), FooHierarchyModel.class);
+		ModelPromise<FooHierarchyModel> john = getModelPromise(project("people/john"), FooHierarchyModel.class);
+		assertEquals("Foo(cow)", cow.join().getFoo());
+		assertEquals("Foo(john)", john.join().getFoo());
+		
+		assertEquals(2, builder.totalBuilds());
+		assertEquals(1, builder.count(project("animal"), FooHierarchyModel.class));
+		assertEquals(1, builder.count(project("people"), FooHierarchyModel.class));
+		assertEquals(2, builder.maxConcurrentBuilds());
+	}
+
+	/**
+	 * The global limit on concurrent builds applies to unrelated build families as well.
+	 */
+	public void testGlobalBuildLimit() throws Exception {
+		useConcurrentBuilder(1, 1);
+		primeBuildFamilies();
+		builder.setBuildDuration(500);
+		
+		ModelPromise<FooHierarchyModel> cow = getModelPromise(project("animal/mamal/cow"), FooHierarchyModel.class);
+		ModelPromise<FooHierarchyModel> john = getModelPromise(project("people/john"), FooHierarchyModel.class);
+		assertEquals("Foo(cow)", cow.join().getFoo());
+		assertEquals("Foo(john)", john.join().getFoo());
+		
+		assertEquals(2, builder.totalBuilds());
+		assertEquals(1, builder.maxConcurrentBuilds());
+	}
+	
+	/**
+	 * Single project models for projects that share a root are not in the same build family,
+	 * so only the per root limit keeps them from building concurrently.
+	 */
+	public void testPerRootBuildLimit() throws Exception {
+		useConcurrentBuilder(4, 1);
+		primeBuildFamilies();
+		builder.setBuildDuration(500);
+		
+		ModelPromise<FooModel> cow = getModelPromise(project("animal/mamal/cow"), FooModel.class);
+		ModelPromise<FooModel> dog = getModelPromise(project("animal/mamal/dog"), FooModel.class);
+		assertEquals("Foo(cow)", cow.join().getFoo());
+		assertEquals("Foo(dog)", dog.join().getFoo());
+		assertEquals(2, builder.totalBuilds());
+		assertEquals(1, builder.maxConcurrentBuilds());
+		
+		mgr.invalidate();
+		builder.reset();
+		useConcurrentBuilder(4, 2);
+		
+		cow = getModelPromise(project("animal/mamal/cow"), FooModel.class);
+		dog = getModelPromise(project("animal/mamal/dog"), FooModel.class);
+		assertEquals("Foo(cow)", cow.join().getFoo());
+		assertEquals("Foo(dog)", dog.join().getFoo());
+		assertEquals(2, builder.totalBuilds());
+		assertEquals(2, builder.maxConcurrentBuilds());
+	}
+	
+	public void testSizeEstimateIndependentOfSiblings() throws Exception {
+		//Links to projects aren't followed, so the estimate only covers the model of a single project.
+		long estimate = estimateWithSiblings(1);
+		assertTrue(estimate>0);
+		assertEquals(estimate, estimateWithSiblings(50));
+	}
+	
+	private long estimateWithSiblings(int siblings) throws Exception {
+		mgr = new GradleModelManager(builder);
+		gradleProjectSiblings = siblings;
+		mgr.getModel(project("people/john"), GradleProjectHolder.class, new NullProgressMonitor());
+		return mgr.getEstimatedCacheSizes().get(GradleProjectHolder.class);
+	}
+	
 	//TODO: if make 'slow request' which starts a build, then a concurrent fast request...
 	// the fast request should fail fast and not block during the build.
 		
@@ -997,6 +1192,26 @@ public class GradleModelManagerTest extends GradleTest {
 	 */
 	private Map<File, File> parentOverrides = new HashMap<File,File>();
 	
+	/**
+	 * Replace the model manager with one that builds via a {@link ConcurrentModelBuilder}
+	 * wrapping the mock builder.
+	 */
+	private void useConcurrentBuilder(int maxBuilds, int maxBuildsPerRoot) {
+		mgr = new GradleModelManager(new ConcurrentModelBuilder(builder, maxBuilds, maxBuildsPerRoot));
+	}
+	
+	/**
+	 * Build hierarchy models once so that build families are known. Without this
+	 * the first builds lock the whole world. Caches and build counts are
+	 * reset afterwards.
+	 */
+	private void primeBuildFamilies() throws Exception {
+		mgr.getModel(project("animal"), FooHierarchyModel.class, new NullProgressMonitor());
+		mgr.getModel(project("people"), FooHierarchyModel.class, new NullProgressMonitor());
+		mgr.invalidate();
+		builder.reset();
+	}
+	
 	/**
 	 * Request an asynchronously built model, returns a 'promise' of the model.
 	 */
@@ -1231,6 +1446,98 @@ public class GradleModelManagerTest extends GradleTest {
 		String getBar();
 	}
 	
+	/**
+	 * Like EclipseProject, a model with a link to a Gradle project.
+	 */
+	public interface GradleProjectHolder {
+		String getName();
+		org.gradle.tooling.model.GradleProject getGradleProject();
+	}
+	
+	public class GradleProjectHolderImpl extends MockModel implements GradleProjectHolder {
+		public GradleProjectHolderImpl(File loc) {
+			super(loc);
+		}
+
+		@Override
+		public String getName() {
+			return loc.getName();
+		}
+
+		@Override
+		public org.gradle.tooling.model.GradleProject getGradleProject() {
+			//The project is one of a number of siblings, each with a task.
+			List<Object> siblings = new ArrayList<Object>();
+			org.gradle.tooling.model.GradleProject parent = mockGradleProject(loc.getParentFile().getName(), null, siblings);
+			for (int i = 0; i < gradleProjectSiblings; i++) {
+				siblings.add(mockGradleProject(i==0 ? loc.getName() : loc.getName()+i, parent, new ArrayList<Object>()));
+			}
+			return (org.gradle.tooling.model.GradleProject) siblings.get(0);
+		}
+	}
+	
+	/**
+	 * Number of children of the parent of the Gradle project in {@link GradleProjectHolder} models.
+	 */
+	private int gradleProjectSiblings = 1;
+	
+	/**
+	 * Create a Gradle project with a single task.
+	 */
+	private static org.gradle.tooling.model.GradleProject mockGradleProject(final String name, 
+			final org.gradle.tooling.model.GradleProject parent, final List<Object> children) {
+		final List<Object> tasks = new ArrayList<Object>();
+		org.gradle.tooling.model.GradleProject project = (org.gradle.tooling.model.GradleProject) Proxy.newProxyInstance(
+				GradleModelManagerTest.class.getClassLoader(), 
+				new Class<?>[] { org.gradle.tooling.model.GradleProject.class }, 
+				new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						String m = method.getName();
+						if (m.equals("getName") || m.equals("getPath") || m.equals("toString")) {
+							return name;
+						} else if (m.equals("getParent")) {
+							return parent;
+						} else if (m.equals("getChildren")) {
+							return new ImmutableDomainObjectSet<Object>(children);
+						} else if (m.equals("getTasks")) {
+							return new ImmutableDomainObjectSet<Object>(tasks);
+						} else if (m.equals("equals")) {
+							return proxy==args[0];
+						} else if (m.equals("hashCode")) {
+							return System.identityHashCode(proxy);
+						} else if (method.getReturnType().equals(boolean.class)) {
+							return false;
+						}
+						return null;
+					}
+				});
+		tasks.add(mockGradleTask(name+":build", project));
+		return project;
+	}
+
+	private static GradleTask mockGradleTask(final String name, final org.gradle.tooling.model.GradleProject project) {
+		return (GradleTask) Proxy.newProxyInstance(
+				GradleModelManagerTest.class.getClassLoader(), 
+				new Class<?>[] { GradleTask.class }, 
+				new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						String m = method.getName();
+						if (m.equals("getName") || m.equals("getPath") || m.equals("toString")) {
+							return name;
+						} else if (m.equals("getProject")) {
+							return project;
+						} else if (m.equals("equals")) {
+							return proxy==args[0];
+						} else if (m.equals("hashCode")) {
+							return System.identityHashCode(proxy);
+						} else if (method.getReturnType().equals(boolean.class)) {
+							return false;
+						}
+						return null;
+					}
+				});
+	}
+	
 	public interface FooHierarchyModel extends HierarchicalEclipseProject {
 		String getFoo();
 	}
@@ -1257,9 +1564,39 @@ public class GradleModelManagerTest extends GradleTest {
 			buildTime = duration;
 		}
 
-		public void reset() {
+		public synchronized void reset() {
 			buildCounters = new HashMap<String, Integer>();
 			errors = new HashMap<String, Throwable>();
+			maxRunning = 0;
+		}
+		
+		private int running = 0; //number of builds currently executing
+		private int maxRunning = 0; //highest number of builds seen executing at the same time
+		private Semaphore started = new Semaphore(0); //a permit for each build that started
+		
+		private synchronized void buildStarted() {
+			running++;
+			maxRunning = Math.max(running, maxRunning);
+			started.release();
+		}
+		
+		/**
+		 * Wait for a build to start. Each build that started satisfies one call.
+		 */
+		public void awaitBuildStarted() throws InterruptedException {
+			assertTrue("Timed out waiting for a build to start", started.tryAcquire(5, TimeUnit.SECONDS));
+		}
+		
+		private synchronized void buildEnded() {
+			running--;
+		}
+		
+		/**
+		 * @return The highest number of builds that were executing at the same time since
+		 * the last reset.
+		 */
+		public synchronized int maxConcurrentBuilds() {
+			return maxRunning;
 		}
 
 		private long buildTime = 0; //to simulate that builds are 'slow'. Disabled by default. Must
@@ -1286,6 +1623,7 @@ public class GradleModelManagerTest extends GradleTest {
 		protected <T> T doBuild(GradleProject project, Class<T> requiredType, IProgressMonitor monitor) throws CoreException {
 			System.out.println(">> building "+project.getLocation().getName()+"::"+requiredType.getSimpleName());
 			incrementBuildCount(project, requiredType);
+			buildStarted();
 			monitor.beginTask("Building of type "+requiredType.getSimpleName()+" for '"+project.getDisplayName()+"'", 1);
 			try {
 				simulateBuildTime(monitor);
@@ -1297,6 +1635,7 @@ public class GradleModelManagerTest extends GradleTest {
 				throw ExceptionUtil.coreException("No such project: "+project.getLocation());
 			} finally {
 				System.out.println("<< building "+project.getLocation().getName()+"::"+requiredType.getSimpleName());
+				buildEnded();
 				monitor.done();
 			}
 		}
@@ -1363,6 +1702,8 @@ public class GradleModelManagerTest extends GradleTest {
 			return (T) new FooHierarchyModelImpl(loc);
 		} else if (type.equals(HierarchicalEclipseProject.class)) {
 			return (T) new VanillaHierarchyModel(loc);
+		} else if (type.equals(GradleProjectHolder.class)) {
+			return (T) new GradleProjectHolderImpl(loc);
 		}
 		throw ExceptionUtil.coreException("Unkown model type: "+type);
 	}
@@ -0,0 +1,250 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.springsource.ide.eclipse.gradle.core.modelmanager.test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.springsource.ide.eclipse.gradle.core.modelmanager.Lock;
+import org.springsource.ide.eclipse.gradle.core.modelmanager.LockManager;
+
+public class LockManagerTest extends TestCase {
+
+	private LockManager locks = new LockManager();
+
+	private static Set<String> keys(String... keys) {
+		return new HashSet<String>(Arrays.asList(keys));
+	}
+
+	public void testUncontended() throws Exception {
+		Lock a = locks.lock(keys("a", "b"));
+		Lock c = locks.lock(keys("c"));
+		a.release();
+		c.release();
+		assertNotNull(locks.lockAll(100));
+		assertEquals(3, locks.getAcquiredCount());
+		assertEquals(0, locks.getContendedCount());
+	}
+
+	public void testTimeout() throws Exception {
+		Lock a = locks.lock(keys("a"));
+		assertNull(locks.lock(keys("a", "b"), 100));
+		//The abandoned request should not block requests behind it.
+		Lock b = locks.lock(keys("b"), 100);
+		assertNotNull(b);
+		assertNull(locks.lockAll(100));
+		a.release();
+		b.release();
+		assertNotNull(locks.lockAll(100));
+		assertEquals(2, locks.getContendedCount());
+		assertTrue(locks.getWaitTime()>=150);
+	}
+
+	public void testTryLock() throws Exception {
+		Lock a = locks.lock(keys("a"));
+		assertNull(locks.tryLock(keys("a", "b")));
+		//The failed attempt doesn't hold on to 'b'
+		Lock b = locks.tryLock(keys("b"));
+		assertNotNull(b);
+		a.release();
+		b.release();
+		assertNotNull(locks.tryLock(keys("a", "b")));
+		assertEquals(0, locks.getContendedCount());
+	}
+
+	public void testFifo() throws Exception {
+		Lock a = locks.lock(keys("a"));
+		LockThread ab = new LockThread(keys("a", "b"));
+		ab.start();
+		ab.awaitWaiting();
+		//Request for 'b' must not overtake the earlier request for 'a' and 'b'
+		assertNull(locks.lock(keys("b"), 200));
+		//But unrelated requests can proceed
+		Lock c = locks.lock(keys("c"), 200);
+		assertNotNull(c);
+		c.release();
+		a.release();
+		ab.join(5000);
+		assertTrue(ab.acquired);
+	}
+
+	public void testInterrupt() throws Exception {
+		Lock a = locks.lock(keys("a"));
+		final Throwable[] error = new Throwable[1];
+		Thread waiter = new Thread() {
+			@Override
+			public void run() {
+				try {
+					locks.lock(keys("a"), 0);
+				} catch (Throwable e) {
+					error[0] = e;
+				}
+			}
+		};
+		waiter.start();
+		Thread.sleep(100);
+		waiter.interrupt();
+		waiter.join(5000);
+		assertTrue(error[0] instanceof InterruptedException);
+		a.release();
+		assertNotNull(locks.lock(keys("a"), 100));
+	}
+
+	public void testLockAllNotStarved() throws Exception {
+		//Threads taking turns locking two overlapping key sets, so that there is always
+		//someone holding a lock.
+		LockLoop[] loops = {
+				new LockLoop(keys("a", "b")),
+				new LockLoop(keys("b", "c")),
+				new LockLoop(keys("c", "a"))
+		};
+		for (LockLoop loop : loops) {
+			loop.start();
+		}
+		try {
+			Thread.sleep(100);
+			Lock world = locks.lockAll(5000);
+			assertNotNull("lockAll starved", world);
+			world.release();
+		} finally {
+			for (LockLoop loop : loops) {
+				loop.stop = true;
+				loop.join(5000);
+			}
+		}
+		for (LockLoop loop : loops) {
+			assertNull(loop.error);
+		}
+	}
+
+	/**
+	 * Many threads locking random overlapping key sets. Checks that no two threads ever hold the
+	 * same key and that all of them get to finish (i.e. there are no lost wakeups).
+	 */
+	public void testContentionStress() throws Exception {
+		final String[] pool = { "a", "b", "c", "d", "e", "f", "g", "h" };
+		final int THREADS = 16;
+		final int ITERATIONS = 500;
+		final Map<String, Thread> holders = new HashMap<String, Thread>();
+		final Throwable[] error = new Throwable[1];
+		Thread[] threads = new Thread[THREADS];
+		for (int i = 0; i < threads.length; i++) {
+			final Random random = new Random(i);
+			threads[i] = new Thread("locker-"+i) {
+				@Override
+				public void run() {
+					try {
+						for (int n = 0; n < ITERATIONS; n++) {
+							if (random.nextInt(50)==0) {
+								Lock world = locks.lockAll();
+								synchronized (holders) {
+									assertTrue("World locked while keys are held: "+holders, holders.isEmpty());
+								}
+								world.release();
+								continue;
+							}
+							Set<String> keys = new HashSet<String>();
+							for (int k = random.nextInt(3)+1; k > 0; k--) {
+								keys.add(pool[random.nextInt(pool.length)]);
+							}
+							Lock lock = locks.lock(keys);
+							synchronized (holders) {
+								for (String key : keys) {
+									Thread other = holders.put(key, this);
+									assertNull("Key "+key+" held by "+other, other);
+								}
+							}
+							Thread.yield();
+							synchronized (holders) {
+								for (String key : keys) {
+									holders.remove(key);
+								}
+							}
+							lock.release();
+						}
+					} catch (Throwable e) {
+						synchronized (holders) {
+							error[0] = e;
+						}
+					}
+				}
+			};
+		}
+		long start = System.currentTimeMillis();
+		for (Thread t : threads) {
+			t.start();
+		}
+		for (Thread t : threads) {
+			t.join(60000);
+			assertFalse("Deadlock or lost wakeup: "+t.getName()+" didn't finish", t.isAlive());
+		}
+		if (error[0]!=null) {
+			throw new Exception(error[0]);
+		}
+		System.out.println("Lock stress test: "+locks.getAcquiredCount()+" locks, "+locks.getContendedCount()
+				+" contended, waited "+locks.getWaitTime()+" ms in "+(System.currentTimeMillis()-start)+" ms");
+		assertEquals(THREADS*ITERATIONS, locks.getAcquiredCount());
+	}
+
+	private class LockThread extends Thread {
+		private final Set<String> keys;
+		volatile boolean acquired = false;
+
+		LockThread(Set<String> keys) {
+			this.keys = keys;
+		}
+
+		@Override
+		public void run() {
+			Lock lock = locks.lock(keys);
+			acquired = true;
+			lock.release();
+		}
+
+		void awaitWaiting() throws InterruptedException {
+			long end = System.currentTimeMillis()+5000;
+			while (locks.getContendedCount()==0 && System.currentTimeMillis()<end) {
+				Thread.sleep(10);
+			}
+			assertFalse(acquired);
+		}
+	}
+
+	private class LockLoop extends Thread {
+		private final Set<String> keys;
+		volatile boolean stop = false;
+		Throwable error = null;
+
+		LockLoop(Set<String> keys) {
+			this.keys = keys;
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (!stop) {
+					Lock lock = locks.lock(keys);
+					Thread.sleep(5);
+					lock.release();
+				}
+			} catch (Throwable e) {
+				error = e;
+			}
+		}
+	}
+
+}
@@ -17,6 +17,7 @@ import junit.framework.TestSuite;
 import org.apache.commons.io.FileUtils;
 import org.springsource.ide.eclipse.gradle.core.modelmanager.test.DefaultModelBuilderTest;
 import org.springsource.ide.eclipse.gradle.core.modelmanager.test.GradleModelManagerTest;
+import org.springsource.ide.eclipse.gradle.core.modelmanager.test.LockManagerTest;
 import org.springsource.ide.eclipse.gradle.core.test.util.GroovySanityTest;
 import org.springsource.ide.eclipse.gradle.core.test.util.ManagedTestSuite;
 import org.springsource.ide.eclipse.gradle.core.test.util.RefreshAllActionCoreTests;
@@ -43,9 +44,12 @@ public class AllGradleCoreTests extends ManagedTestSuite {
 		suite.addTestSuite(GroovySanityTest.class);
 		suite.addTestSuite(DefaultModelBuilderTest.class);
 		suite.addTestSuite(GradleModelManagerTest.class);
+		suite.addTestSuite(LockManagerTest.class);
 		suite.addTestSuite(GradleRefreshPreferencesTest.class);
 		suite.addTestSuite(ArrayEncoderTest.class);
 		suite.addTestSuite(TopoSortTest.class);
+		suite.addTestSuite(PublicationIndexTest.class);
+		suite.addTestSuite(ClasspathEntryPoolTest.class);
 		suite.addTestSuite(GradleProjectTest.class);
 		suite.addTestSuite(JarRemappingTests.class);
 		suite.addTestSuite(GradleImportTests.class);
@@ -10,13 +10,28 @@
  *******************************************************************************/
 package org.springsource.ide.eclipse.gradle.core.test;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.core.IClasspathEntry;
 import org.eclipse.jdt.core.IJavaProject;
+import org.gradle.tooling.model.eclipse.EclipseProject;
+import org.springsource.ide.eclipse.gradle.core.ClassPath;
 import org.springsource.ide.eclipse.gradle.core.GradleCore;
 import org.springsource.ide.eclipse.gradle.core.GradleProject;
+import org.springsource.ide.eclipse.gradle.core.classpathcontainer.ClassPathModel;
 import org.springsource.ide.eclipse.gradle.core.classpathcontainer.GradleClassPathContainer;
+import org.springsource.ide.eclipse.gradle.core.classpathcontainer.GradleDependencyComputer;
+import org.springsource.ide.eclipse.gradle.core.modelmanager.BuildResult;
+import org.springsource.ide.eclipse.gradle.core.modelmanager.PersistentModelStore;
+import org.springsource.ide.eclipse.gradle.core.modelmanager.ProjectBuildResult;
 import org.springsource.ide.eclipse.gradle.core.test.util.ACondition;
+import org.springsource.ide.eclipse.gradle.core.test.util.TestUtils;
 import org.springsource.ide.eclipse.gradle.core.wizards.GradleImportOperation;
 
 
@@ -47,6 +62,44 @@ public class ClasspathContainerTests extends GradleTest {
 //		};
 	}
 	
+	/**
+	 * Models restored from the persistent model store after a restart are proxies. Computing the
+	 * classpath from such a model should give the same entries as from the model they were saved from.
+	 */
+	public void testClasspathFromPersistedModel() throws Throwable {
+		String projectName = "bork";
+		simpleProject(projectName, 
+				"apply plugin: 'java'\n" + 
+				"dependencies {   \n" + 
+				"	compile files('libs/a.jar', 'libs/b.jar')\n" + 
+				"}");
+		final GradleProject gp = getGradleProject(projectName);
+		final EclipseProject model = gp.getModel(EclipseProject.class, new NullProgressMonitor());
+		
+		final File storeDir = TestUtils.createTempDirectory();
+		new PersistentModelStore(storeDir).save(EclipseProject.class, Collections.singletonList(
+				new ProjectBuildResult<EclipseProject>(gp, new BuildResult<EclipseProject>(EclipseProject.class, model))
+		));
+		final EclipseProject[] restored = new EclipseProject[1];
+		new ACondition() {
+			@Override
+			public boolean test() throws Exception {
+				//Models are saved in the background. A new store each time, a store loads its files only once.
+				PersistentModelStore.Models<EclipseProject> persisted = new PersistentModelStore(storeDir).load(gp, EclipseProject.class);
+				assertNotNull(persisted);
+				restored[0] = persisted.getModels().get(gp.getLocation());
+				return restored[0]!=null;
+			}
+		}.waitFor(10000);
+		
+		ClassPath classpath = new GradleDependencyComputer(gp).getClassPath(ClassPathModel.from(restored[0]));
+		List<String> jars = new ArrayList<String>();
+		for (IClasspathEntry e : classpath.getLibraryEntries()) {
+			jars.add(e.getPath().lastSegment());
+		}
+		assertEquals(Arrays.asList("a.jar", "b.jar"), jars);
+	}
+	
 	public void testDisableEnableDepManagement() throws Throwable {
 //		new InterruptEater() {
 //			@Override
@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.springsource.ide.eclipse.gradle.core.test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.jdt.core.IAccessRule;
+import org.eclipse.jdt.core.IClasspathAttribute;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.JavaCore;
+import org.springsource.ide.eclipse.gradle.core.classpathcontainer.ClasspathEntryPool;
+
+public class ClasspathEntryPoolTest extends TestCase {
+
+	private static final IAccessRule[] NO_ACCESS_RULES = new IAccessRule[0];
+
+	public void testSharing() throws Exception {
+		File jar = new File("/repo/org/demo/lib-1.0.jar");
+		File source = new File("/repo/org/demo/lib-1.0-sources.jar");
+		File javadoc = new File("/repo/org/demo/lib-1.0-javadoc.jar");
+
+		IClasspathEntry e1 = pooledEntry(jar, source, javadoc, false);
+		IClasspathEntry e2 = pooledEntry(new File(jar.getPath()), new File(source.getPath()), new File(javadoc.getPath()), false);
+		assertSame(e1, e2);
+		assertSame(e1.getPath(), ClasspathEntryPool.path(jar));
+
+		//Entries that differ in any attribute are not shared
+		assertNotSame(e1, pooledEntry(jar, source, javadoc, true));
+		assertNotSame(e1, pooledEntry(jar, null, javadoc, false));
+		assertNotSame(e1, pooledEntry(jar, source, null, false));
+		assertEquals(e1, pooledEntry(jar, source, javadoc, false));
+	}
+
+	/**
+	 * In a multi-project build the same third party jars are on the classpath of every project. Each project
+	 * has its own copy of the dependency {@link File}s, like the tooling models do, but the entries and
+	 * everything they refer to are shared.
+	 */
+	public void testSharedAcrossProjects() throws Exception {
+		final int PROJECTS = 5;
+		final int JARS = 20;
+
+		List<IClasspathEntry[]> containers = new ArrayList<IClasspathEntry[]>();
+		for (int p = 0; p < PROJECTS; p++) {
+			IClasspathEntry[] entries = new IClasspathEntry[JARS];
+			for (int j = 0; j < JARS; j++) {
+				entries[j] = pooledEntry(jar(j), source(j), javadoc(j), false);
+			}
+			containers.add(entries);
+		}
+
+		IClasspathEntry[] first = containers.get(0);
+		for (int j = 0; j < JARS; j++) {
+			assertEquals(new Path(jar(j).getAbsolutePath()), first[j].getPath());
+			if (j>0) {
+				assertNotSame(first[j-1], first[j]);
+			}
+		}
+		for (IClasspathEntry[] entries : containers) {
+			for (int j = 0; j < JARS; j++) {
+				assertSame(first[j], entries[j]);
+				assertSame(first[j].getPath(), ClasspathEntryPool.path(jar(j)));
+				assertSame(first[j].getSourceAttachmentPath(), ClasspathEntryPool.path(source(j)));
+				assertSame(first[j].getExtraAttributes()[0], ClasspathEntryPool.attribute(
+						IClasspathAttribute.JAVADOC_LOCATION_ATTRIBUTE_NAME, "jar:"+javadoc(j).toURI()+"!/"));
+			}
+		}
+	}
+
+	/**
+	 * Measures the heap used by the classpath containers of a large multi-project build, where the
+	 * same third party jars are on the classpath of every project, with and without the pool. The
+	 * numbers depend on the garbage collector, so they are only reported.
+	 */
+	public void testHeapReduction() throws Exception {
+		final int PROJECTS = 200;
+		final int JARS = 400;
+
+		long base = usedHeap();
+		List<IClasspathEntry[]> containers = new ArrayList<IClasspathEntry[]>();
+		for (int p = 0; p < PROJECTS; p++) {
+			IClasspathEntry[] entries = new IClasspathEntry[JARS];
+			for (int j = 0; j < JARS; j++) {
+				entries[j] = entry(jar(j), source(j), javadoc(j), false);
+			}
+			containers.add(entries);
+		}
+		long unpooled = usedHeap() - base;
+		assertNotSame(containers.get(0)[0], containers.get(PROJECTS-1)[0]);
+
+		containers = null;
+		base = usedHeap();
+		containers = new ArrayList<IClasspathEntry[]>();
+		for (int p = 0; p < PROJECTS; p++) {
+			IClasspathEntry[] entries = new IClasspathEntry[JARS];
+			for (int j = 0; j < JARS; j++) {
+				entries[j] = pooledEntry(jar(j), source(j), javadoc(j), false);
+			}
+			containers.add(entries);
+		}
+		long pooled = usedHeap() - base;
+		assertSame(containers.get(0)[0], containers.get(PROJECTS-1)[0]);
+
+		System.out.println(PROJECTS+" projects x "+JARS+" jars: unpooled "+unpooled/1024+" KB, pooled "+pooled/1024+" KB");
+	}
+
+	private static File jar(int j) {
+		return new File("/home/user/.gradle/caches/modules-2/files-2.1/org.thirdparty/lib"+j+"/1.0/lib"+j+"-1.0.jar");
+	}
+
+	private static File source(int j) {
+		return new File("/home/user/.gradle/caches/modules-2/files-2.1/org.thirdparty/lib"+j+"/1.0/lib"+j+"-1.0-sources.jar");
+	}
+
+	private static File javadoc(int j) {
+		return new File("/home/user/.gradle/caches/modules-2/files-2.1/org.thirdparty/lib"+j+"/1.0/lib"+j+"-1.0-javadoc.jar");
+	}
+
+	/**
+	 * Creates an entry the way Gradle classpath containers did before entries were pooled.
+	 */
+	private static IClasspathEntry entry(File jar, File source, File javadoc, boolean export) {
+		IPath sourcePath = source==null ? null : new Path(source.getAbsolutePath());
+		IClasspathAttribute[] attributes = javadoc==null ? new IClasspathAttribute[0] : new IClasspathAttribute[] {
+			JavaCore.newClasspathAttribute(IClasspathAttribute.JAVADOC_LOCATION_ATTRIBUTE_NAME, "jar:"+javadoc.toURI()+"!/")
+		};
+		return JavaCore.newLibraryEntry(new Path(jar.getAbsolutePath()), sourcePath, null, NO_ACCESS_RULES, attributes, export);
+	}
+
+	private static IClasspathEntry pooledEntry(File jar, File source, File javadoc, boolean export) {
+		IClasspathAttribute[] attributes = javadoc==null ? new IClasspathAttribute[0] : new IClasspathAttribute[] {
+			ClasspathEntryPool.attribute(IClasspathAttribute.JAVADOC_LOCATION_ATTRIBUTE_NAME, "jar:"+javadoc.toURI()+"!/")
+		};
+		return ClasspathEntryPool.entry(JavaCore.newLibraryEntry(ClasspathEntryPool.path(jar), ClasspathEntryPool.path(source),
+				null, NO_ACCESS_RULES, attributes, export));
+	}
+
+	private static long usedHeap() throws InterruptedException {
+		Runtime rt = Runtime.getRuntime();
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+			Thread.sleep(50);
+		}
+		return rt.totalMemory() - rt.freeMemory();
+	}
+
+}
@@ -0,0 +1,223 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.springsource.ide.eclipse.gradle.core.test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.gradle.tooling.model.GradleModuleVersion;
+import org.springsource.ide.eclipse.gradle.core.PublicationIndex;
+
+public class PublicationIndexTest extends TestCase {
+
+	private PublicationIndex index = new PublicationIndex();
+
+	private static IProject project(String name) {
+		return ResourcesPlugin.getWorkspace().getRoot().getProject(name);
+	}
+
+	private static GradleModuleVersion module(final String group, final String name, final String version) {
+		return new GradleModuleVersion() {
+			public String getGroup() {
+				return group;
+			}
+			public String getName() {
+				return name;
+			}
+			public String getVersion() {
+				return version;
+			}
+		};
+	}
+
+	private static List<String> modules(GradleModuleVersion... modules) {
+		List<String> keys = new ArrayList<String>();
+		for (GradleModuleVersion m : modules) {
+			keys.add(PublicationIndex.key(m.getGroup(), m.getName()));
+		}
+		return keys;
+	}
+
+	public void testLookup() throws Exception {
+		IProject a = project("a");
+		index.put(a, modules(module("org.demo", "a", "1.0"), module("org.demo", "a-api", "1.0")));
+		assertEquals(a, index.getProject(module("org.demo", "a", "2.0"))); //Versions don't matter
+		assertEquals(a, index.getProject(module("org.demo", "a-api", "1.0")));
+		assertNull(index.getProject(module("org.other", "a", "1.0")));
+		assertNull(index.getProject(null));
+	}
+
+	public void testReplaceAndRemove() throws Exception {
+		IProject a = project("a");
+		IProject b = project("b");
+		index.put(a, modules(module("org.demo", "shared", "1.0")));
+		index.put(b, modules(module("org.demo", "shared", "1.0"), module("org.demo", "b", "1.0")));
+		//First project to publish a module wins
+		assertEquals(a, index.getProject(module("org.demo", "shared", "1.0")));
+
+		index.remove(a);
+		assertEquals(b, index.getProject(module("org.demo", "shared", "1.0")));
+
+		index.put(b, modules(module("org.demo", "b", "1.0")));
+		assertNull(index.getProject(module("org.demo", "shared", "1.0")));
+		assertEquals(b, index.getProject(module("org.demo", "b", "1.0")));
+	}
+
+	public void testFirstIndexedWinsAfterRemove() throws Exception {
+		//Enough projects that hash order and insertion order are unlikely to agree.
+		List<IProject> projects = new ArrayList<IProject>();
+		for (int p = 0; p < 20; p++) {
+			IProject project = project("p"+(20-p));
+			projects.add(project);
+			index.put(project, modules(module("org.demo", "shared", "1.0"), module("org.demo", "p"+p, "1.0")));
+		}
+		//Indexing a project again doesn't change its place in the order.
+		index.put(projects.get(1), modules(module("org.demo", "p1", "1.0"), module("org.demo", "shared", "1.0")));
+
+		for (IProject project : projects) {
+			assertEquals(project, index.getProject(module("org.demo", "shared", "1.0")));
+			index.remove(project);
+		}
+		assertNull(index.getProject(module("org.demo", "shared", "1.0")));
+	}
+
+	/**
+	 * Compares the index with a linear scan over all projects' publications, the algorithm used
+	 * before there was a {@link PublicationIndex}, while projects are removed and indexed again.
+	 */
+	public void testAgreesWithScan() throws Exception {
+		final int PROJECTS = 30;
+		final int PUBLICATIONS = 3;
+		Map<IProject, List<GradleModuleVersion>> publications = new LinkedHashMap<IProject, List<GradleModuleVersion>>();
+		for (int p = 0; p < PROJECTS; p++) {
+			List<GradleModuleVersion> pubs = new ArrayList<GradleModuleVersion>();
+			for (int i = 0; i < PUBLICATIONS; i++) {
+				//Some modules are published by more than one project.
+				pubs.add(module("org.demo", "module"+(p*PUBLICATIONS+i)%(PROJECTS*2), "1.0"));
+			}
+			publications.put(project("p"+p), pubs);
+			index.put(project("p"+p), modules(pubs.toArray(new GradleModuleVersion[pubs.size()])));
+		}
+		List<GradleModuleVersion> jars = new ArrayList<GradleModuleVersion>();
+		for (int j = 0; j < PROJECTS*2; j++) {
+			jars.add(module("org.demo", "module"+j, "1.0"));
+		}
+		jars.add(module("org.thirdparty", "lib", "1.0"));
+		assertAgreesWithScan(publications, jars);
+
+		for (int p = 0; p < PROJECTS; p += 3) {
+			publications.remove(project("p"+p));
+			index.remove(project("p"+p));
+		}
+		assertAgreesWithScan(publications, jars);
+
+		for (Entry<IProject, List<GradleModuleVersion>> e : publications.entrySet()) {
+			e.getValue().remove(0);
+			index.put(e.getKey(), modules(e.getValue().toArray(new GradleModuleVersion[e.getValue().size()])));
+		}
+		assertAgreesWithScan(publications, jars);
+	}
+
+	/**
+	 * Compares the index with the linear scan over all projects' publications that used to be done
+	 * for every jar. Remapping the classpaths of all projects in a large workspace is simulated.
+	 * (The old approach also scanned the workspace for Gradle projects for every jar, that part
+	 * isn't included here.)
+	 */
+	public void testBenchmark() throws Exception {
+		final int PROJECTS = 300;
+		final int PUBLICATIONS = 3;
+		final int JARS = 200;
+		Map<IProject, List<GradleModuleVersion>> publications = new LinkedHashMap<IProject, List<GradleModuleVersion>>();
+		for (int p = 0; p < PROJECTS; p++) {
+			List<GradleModuleVersion> pubs = new ArrayList<GradleModuleVersion>();
+			for (int i = 0; i < PUBLICATIONS; i++) {
+				pubs.add(module("org.demo.group"+p, "module"+p+"-"+i, "1.0"));
+			}
+			publications.put(project("p"+p), pubs);
+			index.put(project("p"+p), modules(pubs.toArray(new GradleModuleVersion[pubs.size()])));
+		}
+		//Half of the jars are published by projects in the workspace, the others are third party jars.
+		List<GradleModuleVersion> jars = new ArrayList<GradleModuleVersion>();
+		for (int j = 0; j < JARS; j++) {
+			if (j%2==0) {
+				jars.add(module("org.demo.group"+(j*7%PROJECTS), "module"+(j*7%PROJECTS)+"-"+(j%PUBLICATIONS), "1.0"));
+			} else {
+				jars.add(module("org.thirdparty", "lib"+j, "1.0"));
+			}
+		}
+
+		//Warm up, and check that both approaches agree.
+		for (GradleModuleVersion jar : jars) {
+			assertEquals(scan(publications, jar), index.getProject(jar));
+		}
+
+		long start = System.nanoTime();
+		int found = 0;
+		for (int p = 0; p < PROJECTS; p++) {
+			for (GradleModuleVersion jar : jars) {
+				if (scan(publications, jar)!=null) {
+					found++;
+				}
+			}
+		}
+		long scanTime = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		int indexFound = 0;
+		for (int p = 0; p < PROJECTS; p++) {
+			for (GradleModuleVersion jar : jars) {
+				if (index.getProject(jar)!=null) {
+					indexFound++;
+				}
+			}
+		}
+		long indexTime = System.nanoTime() - start;
+
+		assertEquals(found, indexFound);
+		System.out.println("Remapping "+JARS+" jars in "+PROJECTS+" projects: scan "+scanTime/1000000+" ms, index "+indexTime/1000000+" ms");
+	}
+
+	private void assertAgreesWithScan(Map<IProject, List<GradleModuleVersion>> publications, List<GradleModuleVersion> jars) throws Exception {
+		for (GradleModuleVersion jar : jars) {
+			assertEquals(jar.getName(), scan(publications, jar), index.getProject(jar));
+		}
+	}
+
+	/**
+	 * The algorithm used before there was a {@link PublicationIndex}.
+	 */
+	private static IProject scan(Map<IProject, List<GradleModuleVersion>> publications, GradleModuleVersion dep) {
+		for (Entry<IProject, List<GradleModuleVersion>> e : publications.entrySet()) {
+			for (GradleModuleVersion pub : e.getValue()) {
+				if (equal(pub.getGroup(), dep.getGroup()) && equal(pub.getName(), dep.getName())) {
+					return e.getKey();
+				}
+			}
+		}
+		return null;
+	}
+
+	private static boolean equal(String x, String y) {
+		if (x==null) {
+			return x == y;
+		}
+		return x.equals(y);
+	}
+
+}
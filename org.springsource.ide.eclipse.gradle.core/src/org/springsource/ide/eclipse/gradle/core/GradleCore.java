@@ -14,6 +14,7 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.ResourcesPlugin;
@@ -29,15 +30,18 @@ import org.eclipse.jdt.core.IJavaProject;
 import org.gradle.tooling.model.ExternalDependency;
 import org.gradle.tooling.model.GradleModuleVersion;
 import org.gradle.tooling.model.eclipse.HierarchicalEclipseProject;
-import org.gradle.tooling.model.gradle.GradlePublication;
-import org.gradle.tooling.model.gradle.ProjectPublications;
 import org.osgi.framework.BundleContext;
 import org.osgi.service.prefs.BackingStoreException;
 import org.springsource.ide.eclipse.gradle.core.autorefresh.DependencyRefresher;
 import org.springsource.ide.eclipse.gradle.core.classpathcontainer.FastOperationFailedException;
+import org.springsource.ide.eclipse.gradle.core.modelmanager.BuildFingerprintService;
+import org.springsource.ide.eclipse.gradle.core.modelmanager.ConcurrentModelBuilder;
 import org.springsource.ide.eclipse.gradle.core.modelmanager.DefaultModelBuilder;
 import org.springsource.ide.eclipse.gradle.core.modelmanager.GradleModelManager;
-import org.springsource.ide.eclipse.gradle.core.modelmanager.ModelBuilder;
+import org.springsource.ide.eclipse.gradle.core.modelmanager.ModelManagerMonitor;
+import org.springsource.ide.eclipse.gradle.core.modelmanager.ModelStats;
+import org.springsource.ide.eclipse.gradle.core.modelmanager.PersistentModelStore;
+import org.springsource.ide.eclipse.gradle.core.modelmanager.ToolinApiUtils;
 import org.springsource.ide.eclipse.gradle.core.preferences.GradleAPIProperties;
 import org.springsource.ide.eclipse.gradle.core.preferences.GradlePreferences;
 import org.springsource.ide.eclipse.gradle.core.util.ExceptionUtil;
@@ -59,9 +63,12 @@ public class GradleCore extends Plugin {
 
 	private static GradleCore instance;
 
-	private static ModelBuilder modelBuilder = new DefaultModelBuilder();
+	private static ConcurrentModelBuilder modelBuilder = new ConcurrentModelBuilder(new DefaultModelBuilder());
 	private static GradleModelManager modelManager = new GradleModelManager(modelBuilder);
 	private static GradleProjectManager projectManager = new GradleProjectManager(modelManager);
+	private static ModelManagerMonitor monitor = new ModelManagerMonitor(modelManager);
+	private static PublicationIndex publicationIndex = new PublicationIndex(modelManager);
+	private static AtomicInteger mavenProjectsGeneration = new AtomicInteger();
 	
 	private GradlePreferences gradlePreferences = null;
 	private GradleAPIProperties properties;
@@ -76,6 +83,13 @@ public class GradleCore extends Plugin {
 		Assert.isTrue(instance==null);
 		GradleCore.context = bundleContext;
 		instance = this;
+		modelManager.setPersistentStore(new PersistentModelStore(getStateLocation().append("models").toFile()));
+		updateBatchBuilds();
+		try {
+			monitor.register();
+		} catch (Exception e) {
+			log(e);
+		}
 		DependencyRefresher.init();
 	}
 
@@ -84,6 +98,11 @@ public class GradleCore extends Plugin {
 	 * @see org.osgi.framework.BundleActivator#stop(org.osgi.framework.BundleContext)
 	 */
 	public void stop(BundleContext bundleContext) throws Exception {
+		try {
+			monitor.unregister();
+		} catch (Exception e) {
+			log(e);
+		}
 		instance = null;
 		GradleCore.context = null;
 		if (gradlePreferences!=null) {
@@ -92,6 +111,8 @@ public class GradleCore extends Plugin {
 		if (openCloseListeners!=null) {
 			ResourcesPlugin.getWorkspace().removeResourceChangeListener(openCloseListeners);
 		}
+		publicationIndex.dispose();
+		ToolinApiUtils.getConnectionPool().dispose();
 		super.stop(bundleContext);
 	}
 
@@ -128,9 +149,34 @@ public class GradleCore extends Plugin {
 		if (gradlePreferences==null) {
 			migrateLegacyPreferences(OLD_PLUGIN_ID, PLUGIN_ID);
 			gradlePreferences = new GradlePreferences(InstanceScope.INSTANCE.getNode(PLUGIN_ID));
+			updateBuildLimits();
+			updateModelCacheBudget();
+			updateBatchBuilds();
 		}
 		return gradlePreferences;
 	}
+	
+	/**
+	 * Called when preferences controlling the number of concurrent model builds have changed.
+	 */
+	public void updateBuildLimits() {
+		GradlePreferences prefs = getPreferences();
+		modelBuilder.setLimits(prefs.getMaxConcurrentBuilds(), prefs.getMaxConcurrentBuildsPerRoot());
+	}
+
+	/**
+	 * Called when the preference controlling batched model builds has changed.
+	 */
+	public void updateBatchBuilds() {
+		modelManager.setBatchBuilds(getPreferences().getBatchBuilds());
+	}
+
+	/**
+	 * Called when the preference controlling the memory budget for cached models has changed.
+	 */
+	public void updateModelCacheBudget() {
+		modelManager.setCacheBudget(getPreferences().getModelCacheSize()*1024L*1024L);
+	}
 
 	private void migrateLegacyPreferences(String oldPluginId, String pluginId) {
 		IEclipsePreferences oldPrefs = InstanceScope.INSTANCE.getNode(OLD_PLUGIN_ID);
@@ -151,6 +197,27 @@ public class GradleCore extends Plugin {
 		}
 	}
 
+	/**
+	 * @return A human readable report of the model manager's statistics.
+	 */
+	public static String dumpModelStats() {
+		return modelManager.dumpStats();
+	}
+
+	/**
+	 * @return Where the model manager records its statistics.
+	 */
+	public static ModelStats getModelStats() {
+		return modelManager.getStats();
+	}
+
+	/**
+	 * @return The service that tracks build fingerprints of root projects.
+	 */
+	public static BuildFingerprintService getFingerprintService() {
+		return modelManager.getFingerprintService();
+	}
+
 	public static GradleProject create(IProject project) {
 		return projectManager.getOrCreate(project);
 	}
@@ -212,51 +279,35 @@ public class GradleCore extends Plugin {
 	 * Callers should have a mechanism in place to populate the cache beforehand. 
 	 */
 	public static IProject getGradleProject(ExternalDependency gEntry) throws FastOperationFailedException {
-		Collection<GradleProject> projects = getGradleProjects();
-		//File file = gEntry.getFile();
-		FastOperationFailedException throwAtEnd = null;
+		GradleModuleVersion module;
 		try {
-			for (GradleProject gp : projects) {
-				IProject p = gp.getProject();
-				if (p!=null) { //only projects that exist in the workspace are interesting.
-					try {
-						ProjectPublications publications = gp.getPublications();
-						for (GradlePublication pub : publications.getPublications()) {
-							if (matches(pub.getId(), gEntry.getGradleModuleVersion())) {
-								return p;
-							}
-						}
-					} catch (FastOperationFailedException e) {
-						throwAtEnd = e;
-					}
-				}
-			}
+			module = gEntry.getGradleModuleVersion();
 		} catch (Throwable e) {
-			if (ExceptionUtil.isUnknownModelException(e)) {
-				//Ignore, it means this feature is not supported on older version of gradle.
-			} else {
-				GradleCore.log(e);
-			}
-		}
-		if (throwAtEnd!=null) {
-			throw throwAtEnd; //This is to let us distinguish normal 'null' value from 
-			                  //the case where the null value may be because of missing Gradle models
+			//Probably an older version of Gradle that doesn't provide this.
+			return null;
 		}
-		return null;
+		//Throws FastOperationFailedException to let us distinguish normal 'null' value from 
+		//the case where the null value may be because of missing Gradle models
+		return publicationIndex.getProject(module);
 	}
 
-	private static boolean matches(GradleModuleVersion publication, GradleModuleVersion dependency) {
-		//TODO: make matching algo configurable to some degree.
-		return equal(publication.getGroup(), dependency.getGroup())
-			&& equal(publication.getName(), dependency.getName());
-		//	&& equal(publication.getVersion(), dependency.getVersion());
+	/**
+	 * @return A number that changes whenever the outcome of remapping jars to workspace projects may have
+	 * changed, because projects were added, removed, opened or closed, their publications changed, or
+	 * M2E reported a change of the Maven projects in the workspace.
+	 */
+	public static int getWorkspaceGeneration() {
+		//Both counters only go up, so their sum changes whenever one of them does.
+		return publicationIndex.getGeneration() + mavenProjectsGeneration.get();
 	}
 
-	private static boolean equal(String x, String y) {
-		if (x==null) {
-			return x == y;
-		}
-		return x.equals(y);
+	/**
+	 * Called when M2E reports Maven projects were added, removed or changed. The coordinates of a
+	 * Maven project can change without any change Eclipse reports for the project itself, e.g. when
+	 * the version in its pom is edited.
+	 */
+	public static void mavenProjectsChanged() {
+		mavenProjectsGeneration.incrementAndGet();
 	}
 	
 	public synchronized void addOpenCloseListener(ProjectOpenCloseListener l) {
@@ -19,7 +19,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IFolder;
@@ -36,7 +35,6 @@ import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.SubProgressMonitor;
-import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.debug.core.ILaunchConfiguration;
 import org.eclipse.jdt.core.IClasspathEntry;
 import org.eclipse.jdt.core.IJavaProject;
@@ -66,10 +64,10 @@ import org.springsource.ide.eclipse.gradle.core.preferences.GradlePreferences;
 import org.springsource.ide.eclipse.gradle.core.preferences.GradleProjectPreferences;
 import org.springsource.ide.eclipse.gradle.core.util.ArgumentsCustomizerHelper;
 import org.springsource.ide.eclipse.gradle.core.util.ErrorHandler;
-import org.springsource.ide.eclipse.gradle.core.util.GradleRunnable;
+import org.springsource.ide.eclipse.gradle.core.util.ExceptionUtil;
 import org.springsource.ide.eclipse.gradle.core.util.IllegalClassPathEntryException;
-import org.springsource.ide.eclipse.gradle.core.util.JobUtil;
 import org.springsource.ide.eclipse.gradle.core.util.NatureUtils;
+import org.springsource.ide.eclipse.gradle.core.util.Promise;
 import org.springsource.ide.eclipse.gradle.core.wtp.WTPUtil;
 import org.springsource.ide.eclipse.gradle.toolingapi.GradleToolingApi;
 
@@ -114,10 +112,6 @@ public class GradleProject {
 
 	private IProject cachedProject;
 
-	private Map<Class<?>, Job> modelFetchingJobsCache = new ConcurrentHashMap<Class<?>, Job>();
-
-	private Job modelUpdateJob;
-
 	private GradleProjectPreferences preferences;
 	private GradleImportPreferences importPrefs;
 
@@ -151,6 +145,30 @@ public class GradleProject {
 		}
 	}
 
+	/**
+	 * Like {@link #refreshDependencies(IProgressMonitor)} but for a number of projects at once. The
+	 * changed classpath containers of all the projects are passed on to JDT in a single batch
+	 * (see {@link GradleClassPathContainer#notifyJDT(Collection, IProgressMonitor)}).
+	 */
+	public static void refreshDependencies(Collection<GradleProject> projects, IProgressMonitor monitor) throws CoreException {
+		monitor.beginTask("Refresh dependencies", 2*projects.size());
+		try {
+			List<GradleClassPathContainer> containers = new ArrayList<GradleClassPathContainer>(projects.size());
+			for (GradleProject gp : projects) {
+				if (gp.getProject()!=null) {
+					gp.refreshContainerExported(new SubProgressMonitor(monitor, 1));
+					GradleClassPathContainer container = gp.getClassPathcontainer();
+					if (container!=null) {
+						containers.add(container);
+					}
+				}
+			}
+			GradleClassPathContainer.notifyJDT(containers, new SubProgressMonitor(monitor, projects.size()));
+		} finally {
+			monitor.done();
+		}
+	}
+
 	public boolean isDependencyManaged() {
 		IJavaProject jp = getJavaProject();
 		if (jp!=null) {
@@ -168,14 +186,7 @@ public class GradleProject {
 		try {
 			IProject project = getProject();
 			if (project != null) {
-				boolean shouldExport = GradleCore.getInstance().getPreferences().isExportDependencies();
-				boolean isExported = GradleClassPathContainer.isExported(getJavaProject());
-				if (shouldExport!=isExported) {
-					GradleClassPathContainer container = getClassPathcontainer();
-					if (container!=null) {
-						container.setExported(shouldExport, new SubProgressMonitor(monitor, 1));
-					}
-				}
+				refreshContainerExported(new SubProgressMonitor(monitor, 1));
 				//TODO: the requestUpdateFor is asynchronous... make it synchronous!
 				GradleClasspathContainerInitializer.requestUpdateFor(project, false);
 			}
@@ -184,6 +195,25 @@ public class GradleProject {
 		}
 	}
 
+	/**
+	 * Makes the classpath container's exported flag agree with the preferences.
+	 */
+	private void refreshContainerExported(IProgressMonitor monitor) throws CoreException {
+		monitor.beginTask("Refresh Classpath Container export", 1);
+		try {
+			boolean shouldExport = GradleCore.getInstance().getPreferences().isExportDependencies();
+			boolean isExported = GradleClassPathContainer.isExported(getJavaProject());
+			if (shouldExport!=isExported) {
+				GradleClassPathContainer container = getClassPathcontainer();
+				if (container!=null) {
+					container.setExported(shouldExport, new SubProgressMonitor(monitor, 1));
+				}
+			}
+		} finally {
+			monitor.done();
+		}
+	}
+
 	/**
 	 * Reconfigures the project's source folders in Java classpath based on current gradle model.
 	 * (Note that this doesn't force the gradle model itself to be updated!)
@@ -320,8 +350,10 @@ public class GradleProject {
 	/**
 	 * @param conf May be null in contexts where there is no launch configuration (e.g. build model operations, or tasks executed for an import
 	 * rather than directly by the user). 
+	 * @param extraProgramArgs Arguments added to the program arguments for this operation only, e.g. project properties that
+	 * parameterize a model build.
 	 */
-	public void configureOperation(LongRunningOperation gradleOp, ILaunchConfiguration conf) {
+	public void configureOperation(LongRunningOperation gradleOp, ILaunchConfiguration conf, String... extraProgramArgs) {
 		try {
 			GradleProjectPreferences projectPrefs = getProjectPreferences();
 			File javaHome = projectPrefs.getJavaHome();
@@ -335,6 +367,9 @@ public class GradleProject {
 			}
 			ArgumentsCustomizerHelper pgmArgs = new ArgumentsCustomizerHelper(projectPrefs.getProgramArgs());
 			customizeProgramArguments(pgmArgs, this);
+			for (String arg : extraProgramArgs) {
+				pgmArgs.add(arg);
+			}
 			if (pgmArgs.hasArguments()) {
 				gradleOp.withArguments(pgmArgs.getArguments());
 			}
@@ -433,6 +468,14 @@ public class GradleProject {
 			if (repo!=null && repo.exists()) {
 				jvmArgs.add("-Dorg.springsource.ide.eclipse.gradle.toolingApiRepo=" + repo.getAbsolutePath());
 				jvmArgs.add("-Dorg.springsource.ide.eclipse.gradle.toolingApiEquivalentBinaryVersion=latest.integration");
+				GradlePreferences prefs = GradleCore.getInstance().getPreferences();
+				if (prefs.getSourcesOnDemand()) {
+					jvmArgs.add("-Dorg.springsource.ide.eclipse.gradle.toolingApiSourcesOnDemand=true");
+				}
+				if (prefs.getRemapJarsToGradleProjects()) {
+					//Binary equivalents are only used to remap project dependencies to jars.
+					jvmArgs.add("-Dorg.springsource.ide.eclipse.gradle.toolingApiResolveExternalEquivalents=true");
+				}
 			}
 		}
 	}
@@ -576,29 +619,26 @@ public class GradleProject {
 		return mgr.getModel(this, type, mon);
 	}
 	
-	public <T> T requestModel(final Class<T> type) throws CoreException, FastOperationFailedException {
+	/**
+	 * Get a model without blocking. See {@link GradleModelManager#getModelAsync(GradleProject, Class)}.
+	 */
+	public <T> Promise<T> getModelAsync(Class<T> type) {
+		return mgr.getModelAsync(this, type);
+	}
+	
+	/**
+	 * Like getModel but when the model isn't available right away a background build is
+	 * started so the model will be available in the future.
+	 */
+	public <T> T requestModel(Class<T> type) throws CoreException, FastOperationFailedException {
+		Promise<T> model = getModelAsync(type);
+		if (!model.isDone()) {
+			throw new FastOperationFailedException();
+		}
 		try {
-			return mgr.getModel(this, type);
-		} catch (FastOperationFailedException e) {
-			//TODO: looks like race condition. Yes this map is synchronized, but what is stopping two
-			// separate threads from getting here at the same time and both putting a new job in 
-			// because they find that modelFetchingJobsCache.get(type)==null???
-			Job job = modelFetchingJobsCache.get(type);
-			if (job == null) {
-				modelFetchingJobsCache.put(type, JobUtil.schedule(
-						JobUtil.NO_RULE,
-						new GradleRunnable("Obtaining Gradle model: "
-								+ type.getName()) {
-
-							@Override
-							public void doit(IProgressMonitor mon)
-									throws Exception {
-								mgr.getModel(GradleProject.this, type, mon);
-								modelFetchingJobsCache.remove(type);
-							}
-						}));
-			}
-			throw e;
+			return model.join();
+		} catch (Exception e) {
+			throw ExceptionUtil.coreException(e);
 		}
 	}
 	
@@ -627,32 +667,7 @@ public class GradleProject {
 	 * @throws CoreException 
 	 */
 	public EclipseProject requestGradleModel() throws FastOperationFailedException, CoreException {
-		try {
-			return getGradleModel();
-		} catch (FastOperationFailedException e) {
-			scheduleModelUpdate();
-			throw e;
-		}
-	}
-
-	private synchronized void scheduleModelUpdate() {
-		if (modelUpdateJob==null) {
-			//If not null, another request for the same model is already active so no need to schedule again.
-			modelUpdateJob = JobUtil.schedule(JobUtil.NO_RULE, new GradleRunnable("Build Gradle Model for "+getDisplayName()) {
-				@Override
-				public void doit(IProgressMonitor mon) throws Exception {
-					try {
-						getGradleModel(mon);
-					} finally {
-						finishedModelUpdateJob();
-					}
-				}
-			});
-		}
-	}
-	
-	private synchronized void finishedModelUpdateJob() {
-		modelUpdateJob = null;
+		return requestModel(EclipseProject.class);
 	}
 
 	public EclipseProject getGradleModel(IProgressMonitor monitor) throws OperationCanceledException, CoreException {
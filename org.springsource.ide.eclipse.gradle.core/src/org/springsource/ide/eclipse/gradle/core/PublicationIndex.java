@@ -0,0 +1,344 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.springsource.ide.eclipse.gradle.core;
+
+import io.pivotal.tooling.model.eclipse.StsEclipseProject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.gradle.tooling.model.GradleModuleVersion;
+import org.gradle.tooling.model.gradle.GradlePublication;
+import org.gradle.tooling.model.gradle.ProjectPublications;
+import org.springsource.ide.eclipse.gradle.core.classpathcontainer.FastOperationFailedException;
+import org.springsource.ide.eclipse.gradle.core.modelmanager.GradleModelManager;
+import org.springsource.ide.eclipse.gradle.core.modelmanager.IGradleModelListener;
+import org.springsource.ide.eclipse.gradle.core.util.ExceptionUtil;
+
+/**
+ * Index of the modules published by the Gradle projects in the workspace, used to remap
+ * jar dependencies to workspace projects. Modules are matched by group and name only.
+ * <p>
+ * The index is populated from the {@link ProjectPublications} models in the model cache and
+ * is updated whenever a new publications model is set. When the custom tooling model is used,
+ * the publications are taken from the {@link StsEclipseProject} models instead. Those are built
+ * for an entire project hierarchy at once, so no separate builds are needed to get publications.
+ * <p>
+ * The workspace is only scanned for Gradle projects again after projects were added, removed,
+ * opened or closed.
+ */
+public class PublicationIndex {
+
+	private static final boolean DEBUG = false;
+
+	private static void debug(String string) {
+		if (DEBUG) {
+			System.out.println("PublicationIndex: "+string);
+		}
+	}
+
+	private final GradleModelManager modelManager;
+	private boolean listening = false;
+
+	/**
+	 * True if the workspace needs to be scanned for Gradle projects before the index can be used.
+	 */
+	private boolean stale;
+
+	/**
+	 * Modules published by each project whose publications are known, in the order the projects were indexed.
+	 */
+	private Map<IProject, List<String>> published = new LinkedHashMap<IProject, List<String>>();
+
+	/**
+	 * The project that publishes a given module.
+	 */
+	private Map<String, IProject> index = new HashMap<String, IProject>();
+
+	/**
+	 * Gradle projects in the workspace whose publications models are not in the cache yet.
+	 */
+	private Set<IProject> unknown = new HashSet<IProject>();
+
+	/**
+	 * Incremented whenever projects may have been added, removed, opened or closed, and whenever the
+	 * publications of a project change.
+	 */
+	private int generation = 0;
+
+	private final IGradleModelListener modelListener = new IGradleModelListener() {
+		public <T> void modelChanged(GradleProject project, Class<T> type, T model) {
+			if (model!=null) {
+				IProject p = project.getProject();
+				if (p!=null) {
+					if (ProjectPublications.class.equals(type)) {
+						put(p, getModules((ProjectPublications) model));
+					} else if (StsEclipseProject.class.equals(type)) {
+						put(p, getModules(((StsEclipseProject) model).getPublications()));
+					}
+				}
+			}
+		}
+	};
+
+	private final IResourceChangeListener resourceListener = new IResourceChangeListener() {
+		public void resourceChanged(IResourceChangeEvent event) {
+			IResourceDelta delta = event.getDelta();
+			if (delta!=null) {
+				for (IResourceDelta projectDelta : delta.getAffectedChildren()) {
+					if (projectDelta.getKind()!=IResourceDelta.CHANGED
+							|| (projectDelta.getFlags() & (IResourceDelta.OPEN | IResourceDelta.DESCRIPTION))!=0) {
+						markStale();
+						return;
+					}
+				}
+			}
+		}
+	};
+
+	/**
+	 * Create an index of the projects in the workspace, kept up-to-date with the models set in
+	 * the given model manager.
+	 */
+	public PublicationIndex(GradleModelManager modelManager) {
+		this.modelManager = modelManager;
+		this.stale = true;
+	}
+
+	/**
+	 * Create an index that isn't connected to the workspace. Its contents is only changed by
+	 * calling {@link #put(IProject, List)} and {@link #remove(IProject)}.
+	 */
+	public PublicationIndex() {
+		this.modelManager = null;
+		this.stale = false;
+	}
+
+	/**
+	 * Find the project that publishes a given module.
+	 *
+	 * @return The project or null if no project in the workspace publishes the module.
+	 * @throws FastOperationFailedException if there's no project publishing the module as far as
+	 *    we know, but the publications of some projects are not known yet.
+	 */
+	public synchronized IProject getProject(GradleModuleVersion module) throws FastOperationFailedException {
+		ensureListening();
+		if (stale) {
+			rescan();
+		}
+		if (module==null) {
+			return null;
+		}
+		IProject project = index.get(key(module.getGroup(), module.getName()));
+		if (project!=null) {
+			return project;
+		}
+		if (!unknown.isEmpty()) {
+			//Some models may have been built (or failed to build) since we last looked.
+			for (IProject p : new ArrayList<IProject>(unknown)) {
+				index(GradleCore.create(p), p);
+			}
+			project = index.get(key(module.getGroup(), module.getName()));
+			if (project!=null) {
+				return project;
+			}
+			if (!unknown.isEmpty()) {
+				throw new FastOperationFailedException("Publications of "+unknown.size()+" projects are not known yet");
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Set the modules published by a project, replacing any previously indexed publications of that project.
+	 * If more than one project publishes the same module, the project that was indexed first wins.
+	 */
+	public synchronized void put(IProject project, List<String> modules) {
+		List<String> old = published.get(project);
+		if (!modules.equals(old)) {
+			generation++;
+		}
+		unknown.remove(project);
+		//A project that was indexed before keeps its place in the order.
+		published.put(project, modules);
+		if (old!=null) {
+			for (String module : old) {
+				if (index.get(module)==project && !modules.contains(module)) {
+					reassign(module);
+				}
+			}
+		}
+		for (String module : modules) {
+			if (!index.containsKey(module)) {
+				index.put(module, project);
+			}
+		}
+	}
+
+	/**
+	 * Forget about the publications of a project.
+	 */
+	public synchronized void remove(IProject project) {
+		if (unindex(project)) {
+			generation++;
+		}
+	}
+
+	/**
+	 * Changes to the workspace projects and their publications can change how jars are remapped to
+	 * projects. Clients that keep the outcome of remapping can compare generations to find out whether
+	 * it may have changed.
+	 *
+	 * @return A number that changes whenever projects may have been added, removed, opened or
+	 *    closed, or the publications of a project changed.
+	 */
+	public synchronized int getGeneration() {
+		ensureListening();
+		return generation;
+	}
+
+	/**
+	 * @return true if the project's publications were indexed.
+	 */
+	private boolean unindex(IProject project) {
+		unknown.remove(project);
+		List<String> modules = published.remove(project);
+		if (modules!=null) {
+			for (String module : modules) {
+				if (index.get(module)==project) {
+					reassign(module);
+				}
+			}
+		}
+		return modules!=null;
+	}
+
+	/**
+	 * Called when the project a module is indexed to no longer publishes it. Another project may publish
+	 * it as well, the first of those that was indexed wins.
+	 */
+	private void reassign(String module) {
+		index.remove(module);
+		for (Map.Entry<IProject, List<String>> e : published.entrySet()) {
+			if (e.getValue().contains(module)) {
+				index.put(module, e.getKey());
+				break;
+			}
+		}
+	}
+
+	public static String key(String group, String name) {
+		return group+":"+name;
+	}
+
+	public static List<String> getModules(ProjectPublications publications) {
+		List<String> modules = new ArrayList<String>();
+		for (GradlePublication pub : publications.getPublications()) {
+			GradleModuleVersion id = pub.getId();
+			modules.add(key(id.getGroup(), id.getName()));
+		}
+		return modules;
+	}
+
+	public static List<String> getModules(Iterable<? extends GradleModuleVersion> publications) {
+		List<String> modules = new ArrayList<String>();
+		for (GradleModuleVersion id : publications) {
+			modules.add(key(id.getGroup(), id.getName()));
+		}
+		return modules;
+	}
+
+	/**
+	 * Get the modules published by a project from the model cache.
+	 */
+	private static List<String> getModules(GradleProject gp) throws FastOperationFailedException, CoreException {
+		if (gp.useCustomToolingModel()) {
+			return getModules(gp.getModel(StsEclipseProject.class).getPublications());
+		}
+		return getModules(gp.getPublications());
+	}
+
+	private synchronized void markStale() {
+		stale = true;
+		generation++;
+	}
+
+	/**
+	 * Determine which Gradle projects are in the workspace. Publications of projects we already
+	 * know about are retained, the others are looked up in the model cache.
+	 */
+	private void rescan() {
+		debug("rescan");
+		Set<IProject> projects = new HashSet<IProject>();
+		for (GradleProject gp : GradleCore.getGradleProjects()) {
+			IProject p = gp.getProject();
+			if (p!=null) {
+				projects.add(p);
+				if (!published.containsKey(p) && !unknown.contains(p)) {
+					index(gp, p);
+				}
+			}
+		}
+		for (IProject p : new ArrayList<IProject>(published.keySet())) {
+			if (!projects.contains(p)) {
+				remove(p);
+			}
+		}
+		unknown.retainAll(projects);
+		stale = false;
+	}
+
+	private void index(GradleProject gp, IProject p) {
+		try {
+			put(p, getModules(gp));
+		} catch (FastOperationFailedException e) {
+			unknown.add(p);
+		} catch (Throwable e) {
+			if (!ExceptionUtil.isUnknownModelException(e)) {
+				//Unknown model means this Gradle version doesn't support publications, that's not an error.
+				GradleCore.log(e);
+			}
+			put(p, new ArrayList<String>());
+		}
+	}
+
+	private void ensureListening() {
+		if (!listening && modelManager!=null) {
+			listening = true;
+			modelManager.addListener(modelListener);
+			ResourcesPlugin.getWorkspace().addResourceChangeListener(resourceListener, IResourceChangeEvent.POST_CHANGE);
+		}
+	}
+
+	public synchronized void dispose() {
+		if (listening) {
+			listening = false;
+			modelManager.removeListener(modelListener);
+			ResourcesPlugin.getWorkspace().removeResourceChangeListener(resourceListener);
+		}
+		published.clear();
+		index.clear();
+		unknown.clear();
+		stale = modelManager!=null;
+	}
+
+}
@@ -57,6 +57,7 @@ public class TaskUtil {
 
 	public static void execute(GradleProject project, ILaunchConfiguration conf, Collection<String> taskList, final IProgressMonitor mon, final PrintStream out, PrintStream err) throws CoreException {
 		mon.beginTask("Executing tasks", 90);
+		ProjectConnection conn = null;
 		try {
 			BuildLauncher build;
 			Job.getJobManager().beginRule(JobUtil.LIGHT_RULE, new SubProgressMonitor(mon, 5));
@@ -64,7 +65,7 @@ public class TaskUtil {
 			try {
 //				project = project.getRootProject(); //Workaround for bug http://issues.gradle.org/browse/GRADLE-1765
 				// is ok to go via root, since task path strings are 'absolute' anyway.
-				ProjectConnection conn = ToolinApiUtils.getGradleConnector(project, new SubProgressMonitor(mon, 5));
+				conn = ToolinApiUtils.getGradleConnector(project, new SubProgressMonitor(mon, 5));
 				//cumulative work: 10%
 
 				build = conn.newBuild();
@@ -136,6 +137,7 @@ public class TaskUtil {
 //		} catch (FastOperationFailedException e) {
 //			throw ExceptionUtil.coreException(e);
 		} finally {
+			ToolinApiUtils.releaseConnection(conn);
 			mon.done();
 		}
 	}
@@ -21,6 +21,8 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.SubProgressMonitor;
 import org.springsource.ide.eclipse.gradle.core.GradleCore;
 import org.springsource.ide.eclipse.gradle.core.GradleProject;
+import org.springsource.ide.eclipse.gradle.core.classpathcontainer.FastOperationFailedException;
+import org.springsource.ide.eclipse.gradle.core.modelmanager.BuildFingerprintService.Refresh;
 import org.springsource.ide.eclipse.gradle.core.util.Continuation;
 import org.springsource.ide.eclipse.gradle.core.util.ErrorHandler;
 import org.springsource.ide.eclipse.gradle.core.util.JobUtil;
@@ -38,16 +40,26 @@ import org.springsource.ide.eclipse.gradle.core.util.NullJoinable;
 public class RefreshAllActionCore {
 
 	/**
-	 * Exposes what this UI action does through an easy to call static method.
+	 * Exposes what this UI action does through an easy to call static method. The models of all
+	 * the projects are rebuilt.
 	 * @return The job that was scheduled, or null if no job was scheduled.
 	 */
 	public static Joinable<Void> callOn(final List<IProject> projects) throws CoreException {
+		return callOn(projects, true);
+	}
+
+	/**
+	 * Like {@link #callOn(List)}. Models of projects whose build inputs haven't changed since they
+	 * were last built are reused rather than rebuilt, unless 'force' is true. Refreshes the user 
+	 * asked for should be forced.
+	 */
+	public static Joinable<Void> callOn(final List<IProject> projects, boolean force) throws CoreException {
 		if (!projects.isEmpty()) {
 			List<GradleProject> gradleProjects = new ArrayList<GradleProject>(projects.size());
 			for (IProject p : projects) {
 				gradleProjects.add(GradleCore.create(p));
 			}
-			return refreshProjects(gradleProjects);
+			return refreshProjects(gradleProjects, force);
 		}
 		return new NullJoinable<Void>();
 	}
@@ -55,7 +67,7 @@ public class RefreshAllActionCore {
 	/**
 	 * Refresh a list of projects. Executes re-import operation for batches of interdependent projects.
 	 */
-	private static Joinable<Void> refreshProjects(final List<GradleProject> projects) throws CoreException {
+	private static Joinable<Void> refreshProjects(final List<GradleProject> projects, final boolean force) throws CoreException {
 		final String jobName = getName(projects);
 		final ErrorHandler eh = ErrorHandler.forRefreshAll();
 		if (!projects.isEmpty()) {
@@ -65,8 +77,13 @@ public class RefreshAllActionCore {
 				public void doit(Continuation<Void> cont, IProgressMonitor monitor) throws Exception {
 					monitor.beginTask(jobName, 1+projects.size()*2);
 					try {
+						Refresh refresh = GradleCore.getFingerprintService().startRefresh(force);
 						for (GradleProject p : projects) {
-							p.invalidateGradleModel();
+							if (refresh.isUnchanged(p) && hasGradleModel(p)) {
+								refresh.reused(p);
+							} else {
+								p.invalidateGradleModel();
+							}
 							monitor.worked(1);
 						}
 						for (GradleProject p : projects) {
@@ -103,6 +120,17 @@ public class RefreshAllActionCore {
 		return new NullJoinable<Void>();
 	}
 	
+	private static boolean hasGradleModel(GradleProject p) {
+		try {
+			return p.getGradleModel()!=null;
+		} catch (FastOperationFailedException e) {
+			return false;
+		} catch (CoreException e) {
+			//Failed builds are cached too. Those should be retried.
+			return false;
+		}
+	}
+
 	private static String getName(List<GradleProject> projects) {
 		if (projects.size()>1) {
 			return "multiple projects";
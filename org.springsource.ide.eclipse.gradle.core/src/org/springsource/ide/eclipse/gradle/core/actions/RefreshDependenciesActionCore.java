@@ -21,6 +21,8 @@ import org.eclipse.core.runtime.SubProgressMonitor;
 import org.springsource.ide.eclipse.gradle.core.GradleCore;
 import org.springsource.ide.eclipse.gradle.core.GradleProject;
 import org.springsource.ide.eclipse.gradle.core.classpathcontainer.ClassPathModel;
+import org.springsource.ide.eclipse.gradle.core.classpathcontainer.FastOperationFailedException;
+import org.springsource.ide.eclipse.gradle.core.modelmanager.BuildFingerprintService.Refresh;
 import org.springsource.ide.eclipse.gradle.core.util.Continuation;
 import org.springsource.ide.eclipse.gradle.core.util.JobUtil;
 import org.springsource.ide.eclipse.gradle.core.util.Joinable;
@@ -36,8 +38,12 @@ public class RefreshDependenciesActionCore {
 
 	/**
 	 * Exposes what this UI action does through an easy to call static method.
+	 * <p>
+	 * Models of projects whose build inputs haven't changed since they were last built are
+	 * reused rather than rebuilt, unless 'force' is true. Refreshes the user asked for should
+	 * be forced.
 	 */
-	private static void callOn(final IProjectProvider _projects, Continuation<Void> cont) {
+	private static void callOn(final IProjectProvider _projects, final boolean force, Continuation<Void> cont) {
 		final int BIG_WORK = 10000;
 		JobUtil.schedule(JobUtil.LIGHT_RULE, new Continuable("Refresh project models", BIG_WORK, cont) {
 			@Override
@@ -46,9 +52,14 @@ public class RefreshDependenciesActionCore {
 				if (!projects.isEmpty()) {
 					int workUnit = BIG_WORK / projects.size() / 2;
 					final List<GradleProject> gps = new ArrayList<GradleProject>(projects.size());
+					Refresh refresh = GradleCore.getFingerprintService().startRefresh(force);
 					for (IProject p : projects) {
 						GradleProject gp = GradleCore.create(p);
-						gp.invalidateGradleModel();
+						if (refresh.isUnchanged(gp) && hasClassPathModel(gp)) {
+							refresh.reused(gp);
+						} else {
+							gp.invalidateGradleModel();
+						}
 						gps.add(gp);
 						monitor.worked(workUnit);
 					}
@@ -58,9 +69,7 @@ public class RefreshDependenciesActionCore {
 					JobUtil.schedule(new Continuable("Refresh project dependencies", projects.size(), cont) {
 						@Override
 						public void doit(Continuation<Void> cont, IProgressMonitor monitor) throws Exception {
-							for (GradleProject gp : gps) {
-								gp.refreshDependencies(new SubProgressMonitor(monitor, 1));
-							}
+							GradleProject.refreshDependencies(gps, new SubProgressMonitor(monitor, gps.size()));
 							cont.apply(null);
 						}
 					});
@@ -69,12 +78,32 @@ public class RefreshDependenciesActionCore {
 		});
 	}
 
+	private static boolean hasClassPathModel(GradleProject gp) {
+		try {
+			return ClassPathModel.getClassPathModel(gp)!=null;
+		} catch (FastOperationFailedException e) {
+			return false;
+		} catch (CoreException e) {
+			//Failed builds are cached too. Those should be retried.
+			return false;
+		}
+	}
+
 	/**
 	 * A convenience method that wraps the callback-style method so it returns a 'Joinable' instead.
+	 * The models of all the projects are rebuilt.
 	 */
 	public static Joinable<Void> callOn(List<IProject> asList) {
+		return callOn(asList, true);
+	}
+
+	/**
+	 * Like {@link #callOn(List)} but, if 'force' is true, rebuilds the models of all the projects
+	 * even if their build inputs haven't changed.
+	 */
+	public static Joinable<Void> callOn(List<IProject> asList, boolean force) {
 		JoinableContinuation<Void> k = new JoinableContinuation<Void>();
-		callOn(IProjectProvider.from(asList), k);
+		callOn(IProjectProvider.from(asList), force, k);
 		return k;
 	}
 
@@ -83,13 +112,13 @@ public class RefreshDependenciesActionCore {
 	 */
 	public static void synchCallOn(IProject p) throws Exception {
 		JoinableContinuation<Void> k = new JoinableContinuation<Void>();
-		callOn(IProjectProvider.from(Arrays.asList(p)), k);
+		callOn(IProjectProvider.from(Arrays.asList(p)), true, k);
 		k.join();
 	}
 
-	public static Joinable<Void> callOn(IProjectProvider projects) {
+	public static Joinable<Void> callOn(IProjectProvider projects, boolean force) {
 		JoinableContinuation<Void> k = new JoinableContinuation<Void>();
-		callOn(projects, k);
+		callOn(projects, force, k);
 		return k;
 	}
 
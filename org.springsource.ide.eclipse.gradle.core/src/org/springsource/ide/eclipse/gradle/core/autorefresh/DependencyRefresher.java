@@ -97,12 +97,14 @@ public class DependencyRefresher implements IDirtyProjectListener {
 					//We want to make sure it fetches the list of projects only when it actually runs
 					//This is to avoid that some additional dirty projects got added since then.
 					//That would cause additional refreshes being triggered.
+					//Not forced: this refresh is triggered by changes to .gradle files, but not every change
+					// (e.g. saving a file without changing it) affects the models.
 					RefreshDependenciesActionCore.callOn(new IProjectProvider() {
 						@Override
 						public List<IProject> get() {
 							return getAndClearDirties();
 						}
-					});
+					}, false);
 				}
 			} finally {
 				mon.done();
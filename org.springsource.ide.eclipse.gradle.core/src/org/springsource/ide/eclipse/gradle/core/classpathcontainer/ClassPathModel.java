@@ -69,15 +69,15 @@ public abstract class ClassPathModel {
 	
 
 	
-	////////////////// implementation cruft below ////////////////////////////////
-	
-	private static ClassPathModel from(StsEclipseProject model) {
+	public static ClassPathModel from(StsEclipseProject model) {
 		return new CustomClassPathModel(model);
 	}
 
-	private static ClassPathModel from(EclipseProject model) {
+	public static ClassPathModel from(EclipseProject model) {
 		return new LegacyClassPathModel(model);
 	}
+	
+	////////////////// implementation cruft below ////////////////////////////////
 
 	private static class LegacyClassPathModel extends ClassPathModel {
 
@@ -0,0 +1,211 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.springsource.ide.eclipse.gradle.core.classpathcontainer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.jdt.core.IAccessRule;
+import org.eclipse.jdt.core.IClasspathAttribute;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.JavaCore;
+
+/**
+ * Encodes the entries of a {@link GradleClassPathContainer} so they can be persisted across
+ * sessions in the {@link org.springsource.ide.eclipse.gradle.core.GradleSaveParticipant} store.
+ * <p>
+ * The encoded form is a compressed byte array starting with a format version. Data in any other
+ * format (e.g. written by an older version of the plugin) is not decoded, the entries are then simply
+ * recomputed from the Gradle model.
+ */
+class ClasspathEntryCodec {
+
+	private static final boolean DEBUG = false;
+
+	private static void debug(String string) {
+		if (DEBUG) {
+			System.out.println("ClasspathEntryCodec: "+string);
+		}
+	}
+
+	/**
+	 * Must be changed whenever the format changes.
+	 */
+	private static final int FORMAT_VERSION = 1;
+
+	/**
+	 * @return Encoded entries, or null if the entries can't be encoded.
+	 */
+	static Serializable encode(IClasspathEntry[] entries) {
+		if (entries==null) {
+			return null;
+		}
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes));
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(entries.length);
+			for (IClasspathEntry e : entries) {
+				if (!write(e, out)) {
+					debug("Can't encode "+e);
+					return null;
+				}
+			}
+			out.close();
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			//Can't really happen, we are writing to memory.
+			debug("Encoding failed: "+e);
+			return null;
+		}
+	}
+
+	/**
+	 * @return Decoded entries, or null if the data is not in the current format.
+	 */
+	static IClasspathEntry[] decode(Serializable encoded) {
+		if (!(encoded instanceof byte[])) {
+			return null;
+		}
+		try {
+			DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream((byte[]) encoded)));
+			try {
+				if (in.readInt()!=FORMAT_VERSION) {
+					debug("Unsupported format");
+					return null;
+				}
+				IClasspathEntry[] entries = new IClasspathEntry[in.readInt()];
+				for (int i = 0; i < entries.length; i++) {
+					entries[i] = read(in);
+					if (entries[i]==null) {
+						return null;
+					}
+				}
+				return entries;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			debug("Decoding failed: "+e);
+			return null;
+		}
+	}
+
+	private static boolean write(IClasspathEntry e, DataOutputStream out) throws IOException {
+		int kind = e.getEntryKind();
+		switch (kind) {
+		case IClasspathEntry.CPE_LIBRARY:
+		case IClasspathEntry.CPE_VARIABLE:
+			out.writeByte(kind);
+			writePath(e.getPath(), out);
+			writePath(e.getSourceAttachmentPath(), out);
+			writePath(e.getSourceAttachmentRootPath(), out);
+			break;
+		case IClasspathEntry.CPE_PROJECT:
+			out.writeByte(kind);
+			writePath(e.getPath(), out);
+			out.writeBoolean(e.combineAccessRules());
+			break;
+		case IClasspathEntry.CPE_CONTAINER:
+			out.writeByte(kind);
+			writePath(e.getPath(), out);
+			break;
+		default:
+			//Source entries never appear in the container.
+			return false;
+		}
+		out.writeBoolean(e.isExported());
+		IAccessRule[] rules = e.getAccessRules();
+		out.writeInt(rules.length);
+		for (IAccessRule rule : rules) {
+			writePath(rule.getPattern(), out);
+			out.writeInt(rule.getKind() | (rule.ignoreIfBetter() ? IAccessRule.IGNORE_IF_BETTER : 0));
+		}
+		IClasspathAttribute[] attributes = e.getExtraAttributes();
+		out.writeInt(attributes.length);
+		for (IClasspathAttribute a : attributes) {
+			out.writeUTF(a.getName());
+			out.writeUTF(a.getValue());
+		}
+		return true;
+	}
+
+	private static IClasspathEntry read(DataInputStream in) throws IOException {
+		int kind = in.readByte();
+		IPath path = readPath(in);
+		IPath sourcePath = null;
+		IPath sourceRoot = null;
+		boolean combineAccessRules = false;
+		switch (kind) {
+		case IClasspathEntry.CPE_LIBRARY:
+		case IClasspathEntry.CPE_VARIABLE:
+			sourcePath = readPath(in);
+			sourceRoot = readPath(in);
+			break;
+		case IClasspathEntry.CPE_PROJECT:
+			combineAccessRules = in.readBoolean();
+			break;
+		case IClasspathEntry.CPE_CONTAINER:
+			break;
+		default:
+			return null;
+		}
+		boolean exported = in.readBoolean();
+		IAccessRule[] rules = new IAccessRule[in.readInt()];
+		for (int i = 0; i < rules.length; i++) {
+			IPath pattern = readPath(in);
+			rules[i] = JavaCore.newAccessRule(pattern, in.readInt());
+		}
+		IClasspathAttribute[] attributes = new IClasspathAttribute[in.readInt()];
+		for (int i = 0; i < attributes.length; i++) {
+			String name = in.readUTF();
+			attributes[i] = ClasspathEntryPool.attribute(name, in.readUTF());
+		}
+		IClasspathEntry entry;
+		switch (kind) {
+		case IClasspathEntry.CPE_LIBRARY:
+			entry = JavaCore.newLibraryEntry(path, sourcePath, sourceRoot, rules, attributes, exported);
+			break;
+		case IClasspathEntry.CPE_VARIABLE:
+			entry = JavaCore.newVariableEntry(path, sourcePath, sourceRoot, rules, attributes, exported);
+			break;
+		case IClasspathEntry.CPE_PROJECT:
+			entry = JavaCore.newProjectEntry(path, rules, combineAccessRules, attributes, exported);
+			break;
+		default:
+			entry = JavaCore.newContainerEntry(path, rules, attributes, exported);
+		}
+		return ClasspathEntryPool.entry(entry);
+	}
+
+	private static void writePath(IPath path, DataOutputStream out) throws IOException {
+		out.writeBoolean(path!=null);
+		if (path!=null) {
+			out.writeUTF(path.toPortableString());
+		}
+	}
+
+	private static IPath readPath(DataInputStream in) throws IOException {
+		if (in.readBoolean()) {
+			return ClasspathEntryPool.path(Path.fromPortableString(in.readUTF()));
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.springsource.ide.eclipse.gradle.core.classpathcontainer;
+
+import java.io.File;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.jdt.core.IClasspathAttribute;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.JavaCore;
+import org.springsource.ide.eclipse.gradle.core.util.WeakInterner;
+
+/**
+ * Workspace-wide pool of the paths, attributes and classpath entries put into Gradle classpath containers.
+ * <p>
+ * In a large multi-project build the same jars appear on the classpaths of many projects. Without the pool,
+ * every container holds its own copy of each entry. Entries are matched on all their attributes (path,
+ * source attachment, access rules, extra attributes, exported flag), so projects with different settings
+ * still get entries of their own.
+ */
+public class ClasspathEntryPool {
+
+	private static final WeakInterner<IPath> paths = new WeakInterner<IPath>();
+	private static final WeakInterner<IClasspathAttribute> attributes = new WeakInterner<IClasspathAttribute>();
+	private static final WeakInterner<IClasspathEntry> entries = new WeakInterner<IClasspathEntry>();
+
+	public static IPath path(File file) {
+		if (file==null) {
+			return null;
+		}
+		return paths.intern(new Path(file.getAbsolutePath()));
+	}
+
+	public static IPath path(IPath path) {
+		return paths.intern(path);
+	}
+
+	public static IClasspathAttribute attribute(String name, String value) {
+		return attributes.intern(JavaCore.newClasspathAttribute(name, value));
+	}
+
+	/**
+	 * @return A shared entry equal to the given entry. To share as much as possible, the given entry
+	 *    should be created from pooled paths and attributes.
+	 */
+	public static IClasspathEntry entry(IClasspathEntry entry) {
+		return entries.intern(entry);
+	}
+
+	/**
+	 * @return Number of distinct entries in the pool.
+	 */
+	public static int size() {
+		return entries.size();
+	}
+
+}
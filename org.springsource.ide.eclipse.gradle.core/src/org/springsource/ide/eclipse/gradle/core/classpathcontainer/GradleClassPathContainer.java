@@ -11,9 +11,16 @@
 package org.springsource.ide.eclipse.gradle.core.classpathcontainer;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 
 import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IWorkspaceRunnable;
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
@@ -28,7 +35,6 @@ import org.eclipse.jdt.core.IClasspathEntry;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.JavaModelException;
-import org.eclipse.jdt.internal.core.JavaProject;
 import org.springsource.ide.eclipse.gradle.core.ClassPath;
 import org.springsource.ide.eclipse.gradle.core.GradleCore;
 import org.springsource.ide.eclipse.gradle.core.GradleProject;
@@ -91,6 +97,18 @@ public class GradleClassPathContainer implements IClasspathContainer /*, Cloneab
 	private ClassPathModel oldModel = null;
 	private IClasspathEntry[] persistedEntries;
 	private IRefreshListener refreshListener;
+
+	/**
+	 * Set once a background refresh was requested to replace entries restored from the
+	 * previous session. Avoids requesting it over and over while JDT keeps asking for entries.
+	 */
+	private boolean restoreRefreshRequested = false;
+
+	/**
+	 * Entries most recently returned by {@link #getClasspathEntries()}, i.e. the entries JDT
+	 * currently has, as far as we know.
+	 */
+	private IClasspathEntry[] jdtEntries = null;
 	
 	private static ProjectOpenCloseListener openCloseListener;
 	
@@ -114,6 +132,10 @@ public class GradleClassPathContainer implements IClasspathContainer /*, Cloneab
 		this.path = path;
 	}
 
+	GradleProject getProject() {
+		return project;
+	}
+
 	/**
 	 * Request an asynchronous update of this class path container. This causes the class path container to
 	 * return to uninitialised state and ensures a job is scheduled to initialise it later.
@@ -131,12 +153,17 @@ public class GradleClassPathContainer implements IClasspathContainer /*, Cloneab
 			public void doit(IProgressMonitor monitor) throws Exception {
 				monitor.beginTask("Initializing Gradle Classpath Container", IProgressMonitor.UNKNOWN);
 				try {
-					ClassPathModel.getClassPathModel(project, monitor); // Forces initialisation of the model.
-					JobUtil.withRule(JobUtil.buildRule(), monitor, 1, new GradleRunnable("Set classpath "+project.getDisplayName()) {
-						public void doit(IProgressMonitor mon) throws Exception {
-							notifyJDT();
-						}
-					});
+					ClassPathModel model = ClassPathModel.getClassPathModel(project, monitor); // Forces initialisation of the model.
+					if (entriesChanged(model)) {
+						JobUtil.withRule(JobUtil.buildRule(), monitor, 1, new GradleRunnable("Set classpath "+project.getDisplayName()) {
+							public void doit(IProgressMonitor mon) throws Exception {
+								notifyJDT();
+							}
+						});
+					} else {
+						debug("Entries unchanged, not notifying JDT");
+						notifyRefreshListener();
+					}
 				} catch (Exception e) {
 					throw ExceptionUtil.coreException(e);
 				} finally {
@@ -153,35 +180,43 @@ public class GradleClassPathContainer implements IClasspathContainer /*, Cloneab
 		ensureOpenCloseListener();
 		GradleDependencyComputer dependencyComputer = project.getDependencyComputer();
 		debug("getClassPathEntries called");
+		boolean modelPending = false;
 		try {
 			ClassPathModel gradleModel = ClassPathModel.getClassPathModel(project);
 			if (gradleModel!=null) {
 				if (oldModel==gradleModel) {
 					IClasspathEntry[] persisted = getPersistedEntries();
 					if (persisted!=null) {
-						return persisted;
+						return jdtEntries = persisted;
 					}
 				}
 				IClasspathEntry[] entries;
 					entries = dependencyComputer.getClassPath(gradleModel).toArray();
 					setPersistedEntries(entries);
 					oldModel = gradleModel;
-					return entries;
+					return jdtEntries = entries;
 			}
 		} catch (CoreException e) {
 			GradleCore.log(e);
 		} catch (FastOperationFailedException e) {
 			debug("Failed to quickly get Gradle model");
+			modelPending = true;
 		}
 		//We reach here if we could not quickly get the container contents from Gradle we have one more thing to try
 		IClasspathEntry[] persistedEntries = getPersistedEntries();
 		if (persistedEntries!=null) {
+			if (modelPending && !restoreRefreshRequested) {
+				//Entries from the previous session let JDT get going right away. They are
+				//replaced in the background, if the model turns out to be different.
+				restoreRefreshRequested = true;
+				StartupContainerInitializer.request(this);
+			}
 			debug("returning "+persistedEntries.length+" entries");
-			return persistedEntries;
+			return jdtEntries = persistedEntries;
 		}
 		debug("Returning *empty* list of entries");
-		requestUpdate(false);
-		return new IClasspathEntry[] {
+		StartupContainerInitializer.request(this);
+		return jdtEntries = new IClasspathEntry[] {
 		};
 	}
 	
@@ -264,6 +299,84 @@ public class GradleClassPathContainer implements IClasspathContainer /*, Cloneab
 		return false;
 	}
 
+	/**
+	 * Computes the entries for a freshly built model and compares them with the entries
+	 * JDT already has (which may have been restored from the previous session).
+	 *
+	 * @return true if JDT needs to be told about the new entries.
+	 */
+	private synchronized boolean entriesChanged(ClassPathModel model) {
+		IClasspathEntry[] known = jdtEntries;
+		IClasspathEntry[] entries = project.getDependencyComputer().getClassPath(model).toArray();
+		setPersistedEntries(entries);
+		oldModel = model;
+		return known==null || !Arrays.equals(known, entries);
+	}
+
+	/**
+	 * Recomputes the entries from the model in the cache, without building it.
+	 *
+	 * @return true if JDT needs to be told about the new entries.
+	 */
+	private synchronized boolean recomputeEntries() {
+		try {
+			ClassPathModel model = ClassPathModel.getClassPathModel(project);
+			if (model!=null) {
+				return entriesChanged(model);
+			}
+		} catch (FastOperationFailedException e) {
+			//No model yet. Let JDT ask again, it will get the persisted entries and an update gets scheduled.
+		} catch (CoreException e) {
+			//The model build failed, so there's nothing new to tell JDT about.
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Recomputes the entries of a number of containers and tells JDT about all the ones whose
+	 * entries changed in a single workspace operation. This way a refresh of many projects produces
+	 * a single Java delta and build rather than one per project. Containers with unchanged entries
+	 * are skipped.
+	 */
+	public static void notifyJDT(Collection<GradleClassPathContainer> containers, IProgressMonitor mon) throws CoreException {
+		mon.beginTask("Update classpath containers", containers.size()+1);
+		try {
+			final Map<IPath, List<IJavaProject>> changed = new LinkedHashMap<IPath, List<IJavaProject>>();
+			for (GradleClassPathContainer container : containers) {
+				JobUtil.checkCanceled(mon);
+				IJavaProject jp = container.project.getJavaProject();
+				if (jp!=null && container.recomputeEntries()) {
+					List<IJavaProject> projects = changed.get(container.path);
+					if (projects==null) {
+						changed.put(container.path, projects = new ArrayList<IJavaProject>());
+					}
+					projects.add(jp);
+				}
+				mon.worked(1);
+			}
+			if (!changed.isEmpty()) {
+				debug("notifyJDT: "+changed.values());
+				JavaCore.run(new IWorkspaceRunnable() {
+					public void run(IProgressMonitor mon) throws CoreException {
+						for (Entry<IPath, List<IJavaProject>> e : changed.entrySet()) {
+							List<IJavaProject> projects = e.getValue();
+							JavaCore.setClasspathContainer(e.getKey(),
+									projects.toArray(new IJavaProject[projects.size()]),
+									new IClasspathContainer[projects.size()], // All null: makes JDT get our class path initialiser to run again.
+									mon);
+						}
+					}
+				}, JobUtil.buildRule(), new SubProgressMonitor(mon, 1));
+			}
+			for (GradleClassPathContainer container : containers) {
+				container.notifyRefreshListener();
+			}
+		} finally {
+			mon.done();
+		}
+	}
+
 	/**
 	 * Poke JDT when the container became fully initialised.
 	 */
@@ -315,6 +428,14 @@ public class GradleClassPathContainer implements IClasspathContainer /*, Cloneab
 	}
 	
 
+	/**
+	 * Sets the sources and javadoc fetched for some jars, and ensures the entries for these jars will
+	 * be recomputed next time around.
+	 */
+	synchronized void setAttachments(Map<IPath, SourcesOnDemand.Attachments> attachments) {
+		project.getDependencyComputer().setAttachments(attachments);
+	}
+
 	/**
 	 * Ensures that entries will be recomputed next time around
 	 */
@@ -443,28 +564,11 @@ public class GradleClassPathContainer implements IClasspathContainer /*, Cloneab
 	}
 
 	private IClasspathEntry[] decode(Serializable serializable) {
-//		JavaProject jp = (JavaProject) project.getJavaProject();
-//		if (serializable!=null) {
-//			String[] encoded = (String[]) serializable;
-//			IClasspathEntry[] decoded = new IClasspathEntry[encoded.length];
-//			for (int i = 0; i < decoded.length; i++) {
-//				decoded[i] = jp.decodeClasspathEntry(encoded[i]);
-//			}
-//			return decoded;
-//		}
-		return null;
+		return ClasspathEntryCodec.decode(serializable);
 	}
 	
 	private Serializable encode(IClasspathEntry[] entries) {
-		JavaProject jp = (JavaProject) project.getJavaProject();
-		if (entries!=null) {
-			String[] encoded = new String[entries.length];
-			for (int i = 0; i < encoded.length; i++) {
-				encoded[i] = jp.encodeClasspathEntry(entries[i]);
-			}
-			return encoded;
-		}
-		return null;
+		return ClasspathEntryCodec.encode(entries);
 	}
 
 	/**
@@ -12,24 +12,30 @@ package org.springsource.ide.eclipse.gradle.core.classpathcontainer;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.IPath;
-import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.jdt.core.IClasspathAttribute;
 import org.eclipse.jdt.core.IClasspathEntry;
 import org.eclipse.jdt.core.JavaCore;
-import org.eclipse.jdt.internal.core.ClasspathAttribute;
 import org.eclipse.jdt.internal.core.ClasspathEntry;
 import org.gradle.tooling.model.ExternalDependency;
+import org.gradle.tooling.model.GradleModuleVersion;
 import org.gradle.tooling.model.eclipse.EclipseProjectDependency;
 import org.springsource.ide.eclipse.gradle.core.ClassPath;
 import org.springsource.ide.eclipse.gradle.core.GradleCore;
 import org.springsource.ide.eclipse.gradle.core.GradleProject;
 import org.springsource.ide.eclipse.gradle.core.m2e.M2EUtils;
+import org.springsource.ide.eclipse.gradle.core.preferences.GradlePreferences;
 import org.springsource.ide.eclipse.gradle.core.util.WorkspaceUtil;
 import org.springsource.ide.eclipse.gradle.core.wtp.WTPUtil;
 
@@ -52,6 +58,69 @@ public class GradleDependencyComputer {
 	private GradleProject project;
 	private ClassPath classpath; // computed classpath or null if not yet computed.
 	private ClassPathModel classpathModel; // The model that was used to compute the current classpath. We use this to check if we need to recompute the classpath.
+	private List<Object> signature; // Describes the dependencies in classpathModel. If a new model has the same signature the classpath doesn't change.
+	private List<Object> settings; // Preferences that were used to compute the current classpath.
+	private int workspaceGeneration; // Workspace state the current classpath was computed in, see GradleCore.getWorkspaceGeneration().
+
+	/**
+	 * Entries computed for the jar dependencies in the current model. When the model changes,
+	 * these are reused for the dependencies that didn't change, rather than asking M2E, the Gradle
+	 * publications models and WTP about them all over again.
+	 */
+	private Map<DependencyKey, IClasspathEntry> jarEntries = new HashMap<DependencyKey, IClasspathEntry>();
+
+	/**
+	 * Sources and javadoc fetched for jars that the model has none for, see {@link SourcesOnDemand}.
+	 */
+	private Map<IPath, SourcesOnDemand.Attachments> attachments = new HashMap<IPath, SourcesOnDemand.Attachments>();
+
+	/**
+	 * Identifies a dependency by all the things that determine the classpath entry computed for it.
+	 */
+	private static class DependencyKey {
+		private final File file;
+		private final File source;
+		private final File javadoc;
+		private final String module;
+
+		DependencyKey(ExternalDependency dep) {
+			this.file = dep.getFile();
+			this.source = dep.getSource();
+			this.javadoc = dep.getJavadoc();
+			this.module = getModule(dep);
+		}
+
+		private static String getModule(ExternalDependency dep) {
+			try {
+				GradleModuleVersion mv = dep.getGradleModuleVersion();
+				if (mv!=null) {
+					return mv.getGroup()+":"+mv.getName()+":"+mv.getVersion();
+				}
+			} catch (Throwable e) {
+				//Older versions of Gradle don't provide this.
+			}
+			return null;
+		}
+
+		@Override
+		public int hashCode() {
+			return file==null ? 0 : file.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj instanceof DependencyKey) {
+				DependencyKey other = (DependencyKey) obj;
+				return equal(file, other.file) && equal(source, other.source) 
+						&& equal(javadoc, other.javadoc) && equal(module, other.module);
+			}
+			return false;
+		}
+
+		private static boolean equal(Object a, Object b) {
+			return a==null ? b==null : a.equals(b);
+		}
+	}
 	
 	public GradleDependencyComputer(GradleProject project) {
 		this.project = project;
@@ -60,16 +129,32 @@ public class GradleDependencyComputer {
 	}
 	
 	private void addJarEntry(IPath jarPath, ExternalDependency gEntry, boolean export) {
+		classpath.add(createJarEntry(jarPath, gEntry, export));
+	}
+
+	private IClasspathEntry createJarEntry(IPath jarPath, ExternalDependency gEntry, boolean export) {
 		// Get the location of a source jar, if any.
 		IPath sourceJarPath = null;
 		File sourceJarFile = gEntry.getSource();
+		File javaDoc = gEntry.getJavadoc();
+		if (sourceJarFile==null && SourcesOnDemand.isEnabled()) {
+			//The model was built without sources, they are fetched when JDT first asks for them.
+			SourcesOnDemand.Attachments fetched = attachments.get(jarPath);
+			if (fetched!=null) {
+				sourceJarFile = fetched.source;
+				if (javaDoc==null) {
+					javaDoc = fetched.javadoc;
+				}
+			} else {
+				registerMissingSources(jarPath, gEntry);
+			}
+		}
 		if (sourceJarFile!=null) {
-			sourceJarPath = new Path(sourceJarFile.getAbsolutePath());
+			sourceJarPath = ClasspathEntryPool.path(sourceJarFile);
 		}
 
 		//Get the location of Java doc attachement, if any
 		List<IClasspathAttribute> extraAttributes = new ArrayList<IClasspathAttribute>();
-		File javaDoc = gEntry.getJavadoc();
 		if (javaDoc!=null) {
 			//Example of what it looks like in the eclipse .classpath file:
 			//<attributes>
@@ -80,37 +165,126 @@ public class GradleDependencyComputer {
 				//Assume its a jar or zip containing the docs
 				jdoc = "jar:"+jdoc+"!/";
 			}
-			IClasspathAttribute javaDocAttribute = new ClasspathAttribute(IClasspathAttribute.JAVADOC_LOCATION_ATTRIBUTE_NAME, jdoc);
+			IClasspathAttribute javaDocAttribute = ClasspathEntryPool.attribute(IClasspathAttribute.JAVADOC_LOCATION_ATTRIBUTE_NAME, jdoc);
 			extraAttributes.add(javaDocAttribute);
 		}
 		
 		WTPUtil.excludeFromDeployment(project.getJavaProject(), jarPath, extraAttributes);
 
 
-		//Create classpath entry with all this info
-		IClasspathEntry newLibraryEntry = JavaCore.newLibraryEntry(
+		//Create classpath entry with all this info. The same jars tend to be on the classpath of many projects, 
+		//so the entry is shared with other projects if they have an identical one.
+		IClasspathEntry newLibraryEntry = ClasspathEntryPool.entry(JavaCore.newLibraryEntry(
 				jarPath, 
 				sourceJarPath, 
 				null, 
 				ClasspathEntry.NO_ACCESS_RULES, 
 				extraAttributes.toArray(new IClasspathAttribute[extraAttributes.size()]), 
-				export);
-		classpath.add(newLibraryEntry);
+				export));
 		if (newLibraryEntry.toString().contains("unresolved dependency")) {
 			debug("entry: "+newLibraryEntry);
 		}
+		return newLibraryEntry;
 	}
 	
+	private void registerMissingSources(IPath jarPath, ExternalDependency gEntry) {
+		String module = DependencyKey.getModule(gEntry);
+		if (module!=null) {
+			SourcesOnDemand.register(project, jarPath, module);
+		}
+	}
+
 	public ClassPath getClassPath(ClassPathModel gradleModel) {
-		if (classpath==null || !gradleModel.equals(this.classpathModel)) {
-			this.classpathModel = gradleModel;
-			classpath = computeEntries();
+		GradlePreferences prefs = GradleCore.getInstance().getPreferences();
+		List<Object> settings = Arrays.<Object>asList(
+				prefs.isExportDependencies(), 
+				prefs.getRemapJarsToMavenProjects(), 
+				prefs.getRemapJarsToGradleProjects(),
+				project.getProjectPreferences().getEnableClasspathEntrySorting(),
+				prefs.getDeploymentExclusions(),
+				prefs.getSourcesOnDemand()
+		);
+		if (!settings.equals(this.settings)) {
+			clearPersistedEntries();
+			attachments.clear();
+			this.settings = settings;
+		}
+		int workspaceGeneration = GradleCore.getWorkspaceGeneration();
+		if (workspaceGeneration!=this.workspaceGeneration) {
+			//Whether project dependencies are in the workspace, and whether jars are remapped to projects,
+			// isn't part of the signature or the entry keys.
+			classpath = null;
+			if (prefs.getRemapJarsToMavenProjects() || prefs.getRemapJarsToGradleProjects()) {
+				clearRemappableEntries();
+			}
+			this.workspaceGeneration = workspaceGeneration;
 		}
+		if (classpath!=null && gradleModel.equals(this.classpathModel)) {
+			return classpath;
+		}
+		List<Object> signature = getSignature(gradleModel);
+		this.classpathModel = gradleModel;
+		if (classpath!=null && signature.equals(this.signature)) {
+			debug("model changed, but its dependencies didn't");
+			return classpath;
+		}
+		this.signature = signature;
+		classpath = computeEntries();
 		return classpath;
 	}
+
+	/**
+	 * Describes the dependencies of a model. Models with the same signature produce the same classpath.
+	 */
+	private static List<Object> getSignature(ClassPathModel model) {
+		List<Object> signature = new ArrayList<Object>();
+		for (ExternalDependency dep : model.getClasspath()) {
+			signature.add(new DependencyKey(dep));
+		}
+		for (EclipseProjectDependency dep : model.getProjectDependencies()) {
+			signature.add(dep.getPath());
+			ExternalDependency external = ClassPathModel.getExternalEquivalent(dep);
+			signature.add(external==null ? null : new DependencyKey(external));
+		}
+		return signature;
+	}
 	
+	/**
+	 * Ensures the classpath is fully recomputed next time around, for example because projects
+	 * that jars may be remapped to were opened or closed.
+	 */
 	public void clearPersistedEntries() {
 		classpath=null;
+		jarEntries.clear();
+	}
+	
+	/**
+	 * Forgets the entries of jars that were remapped to projects, or could be. Only jars that belong to
+	 * a module can be remapped, the entries of other jars are kept.
+	 */
+	private void clearRemappableEntries() {
+		Iterator<Map.Entry<DependencyKey, IClasspathEntry>> entries = jarEntries.entrySet().iterator();
+		while (entries.hasNext()) {
+			Map.Entry<DependencyKey, IClasspathEntry> e = entries.next();
+			if (e.getKey().module!=null || e.getValue().getEntryKind()==IClasspathEntry.CPE_PROJECT) {
+				entries.remove();
+			}
+		}
+	}
+
+	/**
+	 * Sets the sources and javadoc fetched for some jars (see {@link SourcesOnDemand}), and ensures the
+	 * entries of these jars are recomputed next time around. Entries computed for other jars are kept.
+	 */
+	void setAttachments(Map<IPath, SourcesOnDemand.Attachments> fetched) {
+		attachments.putAll(fetched);
+		classpath=null;
+		Iterator<IClasspathEntry> entries = jarEntries.values().iterator();
+		while (entries.hasNext()) {
+			if (fetched.containsKey(entries.next().getPath())) {
+				entries.remove();
+			}
+		}
 	}
 	
 	private ClassPath computeEntries() {
@@ -120,34 +294,69 @@ public class GradleDependencyComputer {
 			classpath = new ClassPath(project);
 			boolean export = GradleCore.getInstance().getPreferences().isExportDependencies(); //TODO: maybe should be project preference?
 			boolean missingPublicationsModels = false;
+			Map<DependencyKey, IClasspathEntry> oldJarEntries = jarEntries;
+			jarEntries = new HashMap<DependencyKey, IClasspathEntry>();
+			int reused = 0;
+			boolean sourcesOnDemand = SourcesOnDemand.isEnabled();
+			if (sourcesOnDemand) {
+				//Jars without sources are registered again below.
+				SourcesOnDemand.forget(project);
+			}
+			Set<IPath> jars = new HashSet<IPath>();
 			
-			for (ExternalDependency gEntry : classpathModel.getClasspath()) {
+			//Iterate rather than copy with toArray, which models restored from disk may not support.
+			List<ExternalDependency> dependencies = new ArrayList<ExternalDependency>();
+			for (ExternalDependency dep : classpathModel.getClasspath()) {
+				dependencies.add(dep);
+			}
+			IProject[] mavenProjects = null;
+			if (GradleCore.getInstance().getPreferences().getRemapJarsToMavenProjects()) {
+				mavenProjects = M2EUtils.getMavenProjects(dependencies);
+			}
+			for (int i = 0; i < dependencies.size(); i++) {
+				ExternalDependency gEntry = dependencies.get(i);
 				// Get the location of the jar itself
 				File file = gEntry.getFile();
-				IPath jarPath = new Path(file.getAbsolutePath()); 
+				IPath jarPath = ClasspathEntryPool.path(file); 
 				if (jarPath.lastSegment()!=null && jarPath.lastSegment().endsWith(".jar")) {
-					boolean remapped = false;
-					if (GradleCore.getInstance().getPreferences().getRemapJarsToMavenProjects()) {	
-						IProject projectDep = M2EUtils.getMavenProject(gEntry);
-						if (projectDep!=null && projectDep.isAccessible()) {
-							addProjectDependency(projectDep, export);
-							remapped = true;
+					jars.add(jarPath);
+					DependencyKey key = new DependencyKey(gEntry);
+					IClasspathEntry entry = oldJarEntries.get(key);
+					if (entry!=null) {
+						reused++;
+						if (sourcesOnDemand && entry.getEntryKind()==IClasspathEntry.CPE_LIBRARY
+								&& entry.getSourceAttachmentPath()==null && !attachments.containsKey(jarPath)) {
+							registerMissingSources(jarPath, gEntry);
 						}
-					}
-					if (!remapped && GradleCore.getInstance().getPreferences().getRemapJarsToGradleProjects()) {
-						try {
-							IProject projectDep = GradleCore.getGradleProject(gEntry);
-							if (projectDep!=null) {
-								addProjectDependency(projectDep, export);
-								remapped = true;
+					} else {
+						boolean cacheable = true;
+						if (mavenProjects!=null) {	
+							IProject projectDep = mavenProjects[i];
+							if (projectDep!=null && projectDep.isAccessible()) {
+								entry = createProjectDependency(projectDep, export);
 							}
-						} catch (FastOperationFailedException e) {
-							missingPublicationsModels = true;
+						}
+						if (entry==null && GradleCore.getInstance().getPreferences().getRemapJarsToGradleProjects()) {
+							try {
+								IProject projectDep = GradleCore.getGradleProject(gEntry);
+								if (projectDep!=null) {
+									entry = createProjectDependency(projectDep, export);
+								}
+							} catch (FastOperationFailedException e) {
+								missingPublicationsModels = true;
+								cacheable = false; //Remapping may turn out differently once the models are there.
+							}
+						}
+						if (entry==null) {
+							entry = createJarEntry(jarPath, gEntry, export);
+						}
+						if (!cacheable) {
+							classpath.add(entry);
+							continue;
 						}
 					}
-					if (!remapped) {
-						addJarEntry(jarPath, gEntry, export);
-					}
+					jarEntries.put(key, entry);
+					classpath.add(entry);
 				} else {
 					//'non jar' entries may happen when project has a dependency on a sourceSet's output folder.
 					//See http://issues.gradle.org/browse/GRADLE-1766
@@ -190,7 +399,7 @@ public class GradleDependencyComputer {
 					if (external!=null) {
 						// replace the project dependency with a binary build of the project
 						debug("Remapping project '"+gproject.getDisplayName()+" => "+external.getFile());
-						addJarEntry(new Path(external.getFile().getAbsolutePath()), external, export);
+						addJarEntry(ClasspathEntryPool.path(external.getFile()), external, export);
 					} else {
 						debug("Remapping project '"+gproject.getDisplayName()+" FAILED");
 						markers.reportError("Remapping project '"+gproject.getDisplayName()+" to jar dependency failed, make sure to publish a jar to a location where it can be resolved.");
@@ -201,6 +410,8 @@ public class GradleDependencyComputer {
 				}
 			}
 			
+			attachments.keySet().retainAll(jars);
+			debug("reused "+reused+" of "+jarEntries.size()+" jar entries");
 			if (missingPublicationsModels) {
 				//We have produced a 'best effort' classpath but some model info was missing so schedule a more
 				// complete refresh that will build these models in background (this is slow, so we can not do it here).
@@ -214,8 +425,12 @@ public class GradleDependencyComputer {
 	}
 
 	private void addProjectDependency(IProject projectDep, boolean export) {
+		classpath.add(createProjectDependency(projectDep, export));
+	}
+
+	private IClasspathEntry createProjectDependency(IProject projectDep, boolean export) {
 		Assert.isNotNull(projectDep);
-		classpath.add(JavaCore.newProjectEntry(projectDep.getFullPath(), export));
+		return ClasspathEntryPool.entry(JavaCore.newProjectEntry(projectDep.getFullPath(), export));
 	}
 
 }
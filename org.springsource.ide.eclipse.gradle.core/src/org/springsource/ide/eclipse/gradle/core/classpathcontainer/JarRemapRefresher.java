@@ -10,7 +10,11 @@
  *******************************************************************************/
 package org.springsource.ide.eclipse.gradle.core.classpathcontainer;
 
+import io.pivotal.tooling.model.eclipse.StsEclipseProject;
+
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.Platform;
@@ -41,6 +45,9 @@ import org.springsource.ide.eclipse.gradle.core.util.JobUtil;
  * This refresh is also triggered directly from a project open/close
  * listener to perform 'quick' recomputation of classpath with updated 
  * remappings, but without refreshing model caches.
+ * <p>
+ * When the custom tooling model is used, the publications are part of the
+ * (already cached) project models, so no publications models are built.
  * 
  * @author Kris De Volder
  */
@@ -95,7 +102,13 @@ public class JarRemapRefresher {
 							for (GradleProject p : projects) {
 								JobUtil.checkCanceled(mon);
 								try {
-									p.getPublications(new SubProgressMonitor(mon, 1));
+									if (p.useCustomToolingModel()) {
+										//The custom model carries the publications and is built for a whole
+										//hierarchy at once. So this builds at most once per hierarchy.
+										p.getModel(StsEclipseProject.class, new SubProgressMonitor(mon, 1));
+									} else {
+										p.getPublications(new SubProgressMonitor(mon, 1));
+									}
 								} catch (Throwable e) {
 									if (ExceptionUtil.isUnknownModelException(e)) {
 										//ignore
@@ -107,17 +120,17 @@ public class JarRemapRefresher {
 						}
 						
 						mon.subTask("Updating classpaths");
-						JobUtil.withRule(JobUtil.buildRule(), mon, 1, new GradleRunnable("Refresh Gradle Classpath Containers") {
+						JobUtil.withRule(JobUtil.buildRule(), mon, projects.size()+1, new GradleRunnable("Refresh Gradle Classpath Containers") {
 							public void doit(IProgressMonitor mon) throws Exception {
+								List<GradleClassPathContainer> containers = new ArrayList<GradleClassPathContainer>(projects.size());
 								for (GradleProject p : projects) {
 									GradleClassPathContainer classpath = p.getClassPathcontainer();
 									if (classpath!=null) {
-										mon.subTask("Refresh "+p.getName());
 										classpath.clearPersistedEntries();
-										classpath.notifyJDT();
+										containers.add(classpath);
 									}
-									mon.worked(1);
 								}
+								GradleClassPathContainer.notifyJDT(containers, new SubProgressMonitor(mon, projects.size()+1));
 							}
 						});
 					}
@@ -11,13 +11,22 @@
 package org.springsource.ide.eclipse.gradle.core.classpathcontainer;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.SubProgressMonitor;
+import org.springsource.ide.eclipse.gradle.core.GradleCore;
 import org.springsource.ide.eclipse.gradle.core.GradleProject;
 import org.springsource.ide.eclipse.gradle.core.util.BusyStatus;
 import org.springsource.ide.eclipse.gradle.core.util.GradleRunnable;
@@ -45,37 +54,73 @@ import org.springsource.ide.eclipse.gradle.core.util.Joinable;
  *     }
  *  }
  * 
+ * Markers are not created right away. Marker makers scheduled around the same time (e.g. by all the
+ * classpath computations of one refresh) are applied together by a single job, in a single workspace
+ * operation. If a newer marker maker for the same project and marker type is scheduled before the job runs,
+ * the older one is dropped. Markers that are already on the project are left untouched.
+ * 
  * @author Kris De Volder
  */
 public class MarkerMaker extends GradleRunnable implements Joinable<Void> {
 	
 	public static BusyStatus busy = new BusyStatus(MarkerMaker.class.getName());
 	
-	private final class AddMarker extends GradleRunnable {
+	/**
+	 * Marker makers waiting to be applied, keyed by project and marker type.
+	 */
+	private static Map<List<Object>, MarkerMaker> pending = new LinkedHashMap<List<Object>, MarkerMaker>();
+	private static boolean flushScheduled = false;
+	
+	private static final class Problem {
 		private final String msg;
 		private final int severity;
 
-		private AddMarker(String jobName, String msg, int severity) {
-			super(jobName);
+		private Problem(String msg, int severity) {
 			this.msg = msg;
 			this.severity = severity;
 		}
+		
+		@Override
+		public String toString() {
+			return severity+":"+msg;
+		}
+	}
+	
+	private static final class Flush extends GradleRunnable {
+		private Flush() {
+			super("Updating Gradle markers");
+		}
 
 		@Override
 		public void doit(IProgressMonitor mon) throws Exception {
-			IProject p = gp.getProject();
-			if (p!=null) {
-				IMarker m = p.createMarker(markerType);
-				//m.setAttribute(IMarker.LINE_NUMBER, line);
-				m.setAttribute(IMarker.MESSAGE, msg);
-				m.setAttribute(IMarker.PRIORITY, IMarker.PRIORITY_HIGH);
-				m.setAttribute(IMarker.SEVERITY, severity);
+			final List<MarkerMaker> makers = takePending();
+			try {
+				ResourcesPlugin.getWorkspace().run(new IWorkspaceRunnable() {
+					public void run(IProgressMonitor mon) throws CoreException {
+						mon.beginTask(jobName, makers.size());
+						try {
+							for (MarkerMaker m : makers) {
+								try {
+									m.update(new SubProgressMonitor(mon, 1));
+								} catch (CoreException e) {
+									GradleCore.log(e);
+								}
+							}
+						} finally {
+							mon.done();
+						}
+					}
+				}, null, IWorkspace.AVOID_UPDATE, mon);
+			} finally {
+				for (int i = 0; i < makers.size(); i++) {
+					busy.stop();
+				}
 			}
 		}
 	}
 
 	private GradleProject gp;
-	private List<GradleRunnable> work = new ArrayList<GradleRunnable>();
+	private List<Problem> problems = new ArrayList<Problem>();
 	private String markerType;
 
 	public MarkerMaker(GradleProject project, String markerType) {
@@ -85,34 +130,94 @@ public class MarkerMaker extends GradleRunnable implements Joinable<Void> {
 		busy.start();
 	}
 	
+	/**
+	 * Applies the markers right away. Normally marker makers should be scheduled instead, so that
+	 * they can be applied together with the markers of other projects.
+	 */
 	@Override
 	public void doit(IProgressMonitor mon) throws Exception {
 		try {
-			mon.beginTask(jobName, 1+work.size());
+			update(mon);
+		} finally {
+			busy.stop();
+		}
+	}
+
+	private void update(IProgressMonitor mon) throws CoreException {
+		mon.beginTask(jobName, 1+problems.size());
+		try {
 			IProject project = gp.getProject();
-			if (project!=null) { //Safeguard against project has been deleted
+			if (project!=null && project.isAccessible()) { //Safeguard against project has been deleted
+				IMarker[] existing = project.findMarkers(markerType, false, IResource.DEPTH_ZERO);
+				if (isUpToDate(existing)) {
+					return;
+				}
 				project.deleteMarkers(markerType, false, IResource.DEPTH_ZERO);
 				mon.worked(1);
-				for (GradleRunnable w : work) {
-					w.run(new SubProgressMonitor(mon, 1));
+				for (Problem p : problems) {
+					IMarker m = project.createMarker(markerType);
+					//m.setAttribute(IMarker.LINE_NUMBER, line);
+					m.setAttributes(
+							new String[] {IMarker.MESSAGE, IMarker.PRIORITY, IMarker.SEVERITY}, 
+							new Object[] {p.msg, IMarker.PRIORITY_HIGH, p.severity}
+					);
+					mon.worked(1);
 				}
 			}
 		} finally {
 			mon.done();
-			busy.stop();
 		}
 	}
 
+	/**
+	 * @return true if the existing markers are exactly the ones this marker maker would create.
+	 */
+	private boolean isUpToDate(IMarker[] existing) {
+		if (existing.length!=problems.size()) {
+			return false;
+		}
+		List<String> have = new ArrayList<String>(existing.length);
+		for (IMarker m : existing) {
+			have.add(m.getAttribute(IMarker.SEVERITY, -1)+":"+m.getAttribute(IMarker.MESSAGE, ""));
+		}
+		List<String> want = new ArrayList<String>(problems.size());
+		for (Problem p : problems) {
+			want.add(p.toString());
+		}
+		Collections.sort(have);
+		Collections.sort(want);
+		return have.equals(want);
+	}
+
 	public void schedule() {
-		JobUtil.schedule(this);
+		MarkerMaker replaced;
+		boolean scheduleFlush;
+		synchronized (MarkerMaker.class) {
+			replaced = pending.put(Arrays.<Object>asList(gp, markerType), this);
+			scheduleFlush = !flushScheduled;
+			flushScheduled = true;
+		}
+		if (replaced!=null) {
+			busy.stop();
+		}
+		if (scheduleFlush) {
+			JobUtil.schedule(new Flush());
+		}
+	}
+
+	private static synchronized List<MarkerMaker> takePending() {
+		List<MarkerMaker> makers = new ArrayList<MarkerMaker>(pending.values());
+		pending.clear();
+		flushScheduled = false;
+		return makers;
 	}
 
 	public void reportWarning(final String msg) {
-		work.add(new AddMarker("add warning", msg, IMarker.SEVERITY_WARNING));
+		problems.add(new Problem(msg, IMarker.SEVERITY_WARNING));
 	}
 
 	public void reportError(String msg) {
-		work.add(new AddMarker("add warning", msg, IMarker.SEVERITY_ERROR));
+		problems.add(new Problem(msg, IMarker.SEVERITY_ERROR));
 	}
 
 	public Void join() throws Exception {
@@ -0,0 +1,311 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.springsource.ide.eclipse.gradle.core.classpathcontainer;
+
+import io.pivotal.tooling.model.eclipse.StsEclipseAttachments;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.SubProgressMonitor;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.JavaModelException;
+import org.gradle.tooling.model.ExternalDependency;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleException;
+import org.gradle.tooling.model.GradleModuleVersion;
+import org.springsource.ide.eclipse.gradle.core.GradleCore;
+import org.springsource.ide.eclipse.gradle.core.GradleProject;
+import org.springsource.ide.eclipse.gradle.core.modelmanager.ToolinApiUtils;
+import org.springsource.ide.eclipse.gradle.core.preferences.GradlePreferences;
+import org.springsource.ide.eclipse.gradle.core.util.GradleRunnable;
+import org.springsource.ide.eclipse.gradle.core.util.JobUtil;
+
+/**
+ * Looks up the sources and javadoc of jars in Gradle classpath containers once they are needed, rather than
+ * as part of every model build. Only used when the 'sources on demand' preference is enabled, in which case
+ * the custom tooling model leaves the sources and javadoc out.
+ * <p>
+ * While computing classpath entries, {@link GradleDependencyComputer} registers the jars that have no sources.
+ * When the sources of such a jar are requested (e.g. because a class from the jar is opened in an editor), a
+ * background job fetches them with a {@link StsEclipseAttachments} model, and hands them to the dependency
+ * computers of all the projects with the jar, which keep them from then on. Requests that come in together
+ * are fetched with a single model build.
+ * <p>
+ * Jars are only registered here until their sources are fetched, or until the projects that have them
+ * are removed, closed or recompute their classpath.
+ */
+public class SourcesOnDemand {
+
+	private static final boolean DEBUG = false;
+
+	private static final String UI_PLUGIN_ID = "org.springsource.ide.eclipse.gradle.ui";
+
+	private static void debug(String string) {
+		if (DEBUG) {
+			System.out.println("SourcesOnDemand: "+string);
+		}
+	}
+
+	/**
+	 * Sources and javadoc found for a jar. Both are null if none were found.
+	 */
+	static class Attachments {
+		final File source;
+		final File javadoc;
+
+		Attachments(File source, File javadoc) {
+			this.source = source;
+			this.javadoc = javadoc;
+		}
+	}
+
+	/**
+	 * A jar without sources in one or more classpath containers.
+	 */
+	private static class Module {
+		final IPath jar;
+		final String coordinates;
+		final Set<GradleProject> projects = new LinkedHashSet<GradleProject>();
+		boolean requested = false;
+
+		Module(IPath jar, String coordinates) {
+			this.jar = jar;
+			this.coordinates = coordinates;
+		}
+	}
+
+	private static Map<IPath, Module> modules = new HashMap<IPath, Module>();
+	private static Set<IPath> pending = new LinkedHashSet<IPath>();
+	private static Job job = null;
+
+	private static IResourceChangeListener resourceListener = null;
+
+	public static boolean isEnabled() {
+		GradlePreferences prefs = GradleCore.getInstance().getPreferences();
+		return prefs.getUseCustomToolingModel() && prefs.getSourcesOnDemand();
+	}
+
+	/**
+	 * Called when the classpath entry of a project is computed for a jar that has no sources.
+	 *
+	 * @param coordinates 'group:name:version' of the module the jar belongs to.
+	 */
+	static synchronized void register(GradleProject project, IPath jar, String coordinates) {
+		ensureListening();
+		Module module = modules.get(jar);
+		if (module==null) {
+			modules.put(jar, module = new Module(jar, coordinates));
+		}
+		module.projects.add(project);
+	}
+
+	/**
+	 * Called when a project is closed or removed, or before its classpath entries are recomputed.
+	 * The jars of the project are no longer registered, unless other projects have them too.
+	 */
+	static synchronized void forget(GradleProject project) {
+		Iterator<Module> iter = modules.values().iterator();
+		while (iter.hasNext()) {
+			Module module = iter.next();
+			if (module.projects.remove(project) && module.projects.isEmpty()) {
+				iter.remove();
+				pending.remove(module.jar);
+			}
+		}
+	}
+
+	private static void ensureListening() {
+		if (resourceListener==null) {
+			resourceListener = new IResourceChangeListener() {
+				public void resourceChanged(IResourceChangeEvent event) {
+					if (event.getResource() instanceof IProject) {
+						forget(GradleCore.create((IProject) event.getResource()));
+					}
+				}
+			};
+			ResourcesPlugin.getWorkspace().addResourceChangeListener(resourceListener,
+					IResourceChangeEvent.PRE_CLOSE | IResourceChangeEvent.PRE_DELETE);
+			activateUI();
+		}
+	}
+
+	/**
+	 * The editor listener that requests sources is installed by the UI plugin when it is activated.
+	 * Nothing else may have activated it yet, so make sure it is once there are jars to fetch sources for.
+	 */
+	private static void activateUI() {
+		Bundle ui = Platform.getBundle(UI_PLUGIN_ID);
+		if (ui!=null && ui.getState()!=Bundle.ACTIVE) {
+			try {
+				ui.start(Bundle.START_TRANSIENT);
+			} catch (BundleException e) {
+				GradleCore.log(e);
+			}
+		}
+	}
+
+	/**
+	 * Request the sources of a jar in a Gradle classpath container to be fetched in the background.
+	 * Does nothing if they were requested before, or if the jar is not one registered by
+	 * a Gradle classpath container.
+	 */
+	public static synchronized void request(IPath jar) {
+		Module module = modules.get(jar);
+		if (module!=null && !module.requested) {
+			debug("requested: "+jar);
+			module.requested = true;
+			pending.add(jar);
+			if (job==null) {
+				job = new GradleRunnable("Fetch Gradle Dependency Sources") {
+					@Override
+					public void doit(IProgressMonitor mon) throws Exception {
+						fetch(takePending(), mon);
+					}
+				}.asJob();
+			}
+			job.schedule(100); //Slight delay, to batch requests that come in together.
+		}
+	}
+
+	/**
+	 * Like {@link #request(IPath)}, for a jar on a Java project's classpath.
+	 */
+	public static void request(IPackageFragmentRoot root) {
+		try {
+			if (isEnabled() && root.getKind()==IPackageFragmentRoot.K_BINARY && root.getSourceAttachmentPath()==null) {
+				request(root.getPath());
+			}
+		} catch (JavaModelException e) {
+			GradleCore.log(e);
+		}
+	}
+
+	/**
+	 * Takes the requested jars out of the registry. Whatever the outcome of fetching their sources,
+	 * they are registered again only when the projects that have them recompute their classpath.
+	 */
+	private static synchronized Map<GradleProject, Map<String, List<Module>>> takePending() {
+		//The sources of a jar are looked up in the repositories of a project that has the jar on its classpath.
+		Map<GradleProject, Map<String, List<Module>>> requests = new LinkedHashMap<GradleProject, Map<String, List<Module>>>();
+		for (IPath jar : pending) {
+			Module module = modules.remove(jar);
+			GradleProject project = module.projects.iterator().next();
+			Map<String, List<Module>> jarsByModule = requests.get(project);
+			if (jarsByModule==null) {
+				requests.put(project, jarsByModule = new LinkedHashMap<String, List<Module>>());
+			}
+			List<Module> jars = jarsByModule.get(module.coordinates);
+			if (jars==null) {
+				jarsByModule.put(module.coordinates, jars = new ArrayList<Module>());
+			}
+			jars.add(module);
+		}
+		pending.clear();
+		return requests;
+	}
+
+	private static void fetch(Map<GradleProject, Map<String, List<Module>>> requests, IProgressMonitor mon) throws CoreException {
+		mon.beginTask("Fetching sources", 2*requests.size());
+		try {
+			for (Entry<GradleProject, Map<String, List<Module>>> request : requests.entrySet()) {
+				JobUtil.checkCanceled(mon);
+				GradleProject project = request.getKey();
+				Map<String, List<Module>> jarsByModule = request.getValue();
+				StsEclipseAttachments model;
+				try {
+					model = ToolinApiUtils.buildModel(project, StsEclipseAttachments.class, new String[] {
+						"-P"+StsEclipseAttachments.MODULES_PROPERTY+"="+join(jarsByModule.keySet())
+					}, new SubProgressMonitor(mon, 1));
+				} catch (CoreException e) {
+					GradleCore.log(e);
+					mon.worked(1);
+					continue;
+				}
+
+				Map<String, Attachments> found = new HashMap<String, Attachments>();
+				for (ExternalDependency attachment : model.getAttachments()) {
+					if (attachment.getSource()!=null || attachment.getJavadoc()!=null) {
+						found.put(getCoordinates(attachment.getGradleModuleVersion()), new Attachments(attachment.getSource(), attachment.getJavadoc()));
+					}
+				}
+
+				//Jars without sources are handed over too, so they aren't registered again.
+				Attachments none = new Attachments(null, null);
+				Map<GradleProject, Map<IPath, Attachments>> attachmentsByProject = new LinkedHashMap<GradleProject, Map<IPath, Attachments>>();
+				Set<GradleProject> changed = new LinkedHashSet<GradleProject>();
+				for (Entry<String, List<Module>> e : jarsByModule.entrySet()) {
+					Attachments attachments = found.get(e.getKey());
+					for (Module module : e.getValue()) {
+						debug("found: "+(attachments==null ? null : attachments.source)+" for "+module.jar);
+						for (GradleProject p : module.projects) {
+							Map<IPath, Attachments> projectAttachments = attachmentsByProject.get(p);
+							if (projectAttachments==null) {
+								attachmentsByProject.put(p, projectAttachments = new HashMap<IPath, Attachments>());
+							}
+							projectAttachments.put(module.jar, attachments==null ? none : attachments);
+							if (attachments!=null) {
+								changed.add(p);
+							}
+						}
+					}
+				}
+
+				List<GradleClassPathContainer> containers = new ArrayList<GradleClassPathContainer>(changed.size());
+				for (Entry<GradleProject, Map<IPath, Attachments>> e : attachmentsByProject.entrySet()) {
+					GradleClassPathContainer container = e.getKey().getClassPathcontainer();
+					if (container!=null) {
+						container.setAttachments(e.getValue());
+						if (changed.contains(e.getKey())) {
+							containers.add(container);
+						}
+					}
+				}
+				GradleClassPathContainer.notifyJDT(containers, new SubProgressMonitor(mon, 1));
+			}
+		} finally {
+			mon.done();
+		}
+	}
+
+	private static String getCoordinates(GradleModuleVersion mv) {
+		return mv.getGroup()+":"+mv.getName()+":"+mv.getVersion();
+	}
+
+	private static String join(Set<String> coordinates) {
+		StringBuilder joined = new StringBuilder();
+		for (String c : coordinates) {
+			if (joined.length()>0) {
+				joined.append(',');
+			}
+			joined.append(c);
+		}
+		return joined.toString();
+	}
+
+}
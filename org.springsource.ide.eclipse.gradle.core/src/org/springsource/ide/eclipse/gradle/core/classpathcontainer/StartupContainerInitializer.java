@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.springsource.ide.eclipse.gradle.core.classpathcontainer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubProgressMonitor;
+import org.eclipse.core.runtime.jobs.Job;
+import org.springsource.ide.eclipse.gradle.core.GradleCore;
+import org.springsource.ide.eclipse.gradle.core.GradleProject;
+import org.springsource.ide.eclipse.gradle.core.modelmanager.ModelStats;
+import org.springsource.ide.eclipse.gradle.core.util.GradleRunnable;
+import org.springsource.ide.eclipse.gradle.core.util.JobUtil;
+
+/**
+ * Initializes the classpath containers that JDT asks for while no models are available yet, typically
+ * when the workspace is opened.
+ * <p>
+ * Rather than an update job per container, the containers are collected and grouped by the root project
+ * of their build, and a job is scheduled per group. Models are built for a whole family at once,
+ * so requesting the model of the first member puts the models of the other members in the cache too.
+ * The containers of a family are then filled and JDT is told about them in one go. The jobs of different
+ * families run concurrently, as far as the model builder allows.
+ * <p>
+ * The time from the first request until all containers requested so far are initialized is recorded
+ * in the model manager's {@link ModelStats} as the 'time to first compile'. Before that, JDT builds projects
+ * against incomplete classpaths. It is not recorded if initialization of some containers was canceled.
+ */
+public class StartupContainerInitializer {
+
+	private static final boolean DEBUG = false;
+
+	private static void debug(String string) {
+		if (DEBUG) {
+			System.out.println("StartupContainerInitializer: "+string);
+		}
+	}
+
+	private static Set<GradleClassPathContainer> pending = new LinkedHashSet<GradleClassPathContainer>();
+	private static Job job = null;
+	private static boolean scheduled = false;
+
+	/**
+	 * Number of family jobs that haven't finished yet.
+	 */
+	private static int running = 0;
+	private static boolean canceled = false;
+
+	private static long firstRequest = -1;
+	private static boolean recorded = false;
+
+	/**
+	 * Request the container to be initialized from its model, once the model is available.
+	 */
+	static synchronized void request(GradleClassPathContainer container) {
+		if (firstRequest<0) {
+			firstRequest = System.currentTimeMillis();
+		}
+		pending.add(container);
+		if (!scheduled) {
+			if (job==null) {
+				job = new GradleRunnable("Initialize Gradle Classpath Containers") {
+					@Override
+					public void doit(IProgressMonitor mon) throws Exception {
+						for (List<GradleClassPathContainer> family : takePending()) {
+							schedule(family);
+						}
+					}
+				}.asJob();
+				job.setPriority(Job.BUILD);
+			}
+			scheduled = true;
+			job.schedule(100); //Slight delay, JDT initializes the containers of many projects in quick succession.
+		}
+	}
+
+	/**
+	 * @return The pending containers, grouped by build family.
+	 */
+	private static synchronized Collection<List<GradleClassPathContainer>> takePending() {
+		Map<GradleProject, List<GradleClassPathContainer>> families = new LinkedHashMap<GradleProject, List<GradleClassPathContainer>>();
+		for (GradleClassPathContainer container : pending) {
+			GradleProject project = container.getProject();
+			GradleProject root = project.getRootProjectMaybe();
+			if (root==null) {
+				root = project;
+			}
+			List<GradleClassPathContainer> members = families.get(root);
+			if (members==null) {
+				families.put(root, members = new ArrayList<GradleClassPathContainer>());
+			}
+			members.add(container);
+		}
+		debug(pending.size()+" containers in "+families.size()+" families");
+		pending.clear();
+		scheduled = false;
+		running += families.size();
+		return families.values();
+	}
+
+	/**
+	 * Called when the job for a family is done.
+	 *
+	 * @param unprocessed Containers that weren't initialized because the job was canceled.
+	 */
+	private static synchronized void familyDone(List<GradleClassPathContainer> unprocessed) {
+		running--;
+		if (!unprocessed.isEmpty()) {
+			//JDT doesn't ask again for containers it already has, so they are initialized with the next batch.
+			pending.addAll(unprocessed);
+			canceled = true;
+			if (!scheduled) {
+				scheduled = true;
+				job.schedule(100);
+			}
+		}
+		if (running==0 && pending.isEmpty() && !canceled && !recorded) {
+			recorded = true;
+			long timeToFirstCompile = System.currentTimeMillis() - firstRequest;
+			debug("time to first compile: "+timeToFirstCompile+" ms");
+			GradleCore.getModelStats().timeToFirstCompile(timeToFirstCompile);
+		}
+	}
+
+	private static void schedule(final List<GradleClassPathContainer> family) {
+		Job job = new GradleRunnable("Initialize Gradle Classpath Containers for "+family.get(0).getProject().getDisplayName()) {
+			@Override
+			public void doit(IProgressMonitor mon) throws Exception {
+				initialize(family, mon);
+			}
+		}.asJob();
+		job.setPriority(Job.BUILD);
+		job.schedule();
+	}
+
+	private static void initialize(List<GradleClassPathContainer> members, IProgressMonitor mon) throws CoreException {
+		mon.beginTask("Initializing Gradle Classpath Containers", members.size()+1);
+		List<GradleClassPathContainer> unprocessed = members;
+		try {
+			List<GradleClassPathContainer> ready = new ArrayList<GradleClassPathContainer>(members.size());
+			for (GradleClassPathContainer container : members) {
+				JobUtil.checkCanceled(mon);
+				try {
+					//The first request builds the models of the entire family, the others are answered from the cache.
+					ClassPathModel.getClassPathModel(container.getProject(), new SubProgressMonitor(mon, 1));
+					ready.add(container);
+				} catch (CoreException e) {
+					GradleCore.log(e);
+				}
+			}
+			GradleClassPathContainer.notifyJDT(ready, new SubProgressMonitor(mon, 1));
+			unprocessed = Collections.emptyList();
+		} finally {
+			mon.done();
+			familyDone(unprocessed);
+		}
+	}
+
+}
@@ -1,8 +1,13 @@
 package org.springsource.ide.eclipse.gradle.core.m2e;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.ListenerList;
+import org.eclipse.m2e.core.embedder.ArtifactKey;
 import org.eclipse.m2e.core.internal.MavenPluginActivator;
 import org.eclipse.m2e.core.internal.project.registry.MavenProjectManager;
 import org.eclipse.m2e.core.project.IMavenProjectChangedListener;
@@ -19,6 +24,7 @@ public class M2EUtils {
 
 	public interface IM2EUtils {
 		IProject getMavenProject(ExternalDependency dep);
+		IProject[] getMavenProjects(List<? extends ExternalDependency> deps);
 		boolean isInstalled();
 		void addOpenCloseListener(ProjectOpenCloseListener openCloseListener);
 		void removeOpenCloseListener(ProjectOpenCloseListener openCloseListener);
@@ -29,23 +35,36 @@ public class M2EUtils {
 		
 		private ListenerList openCloseListeners;
 		private IMavenProjectChangedListener mvnProjectListener;
+
+		/**
+		 * Maven projects in the workspace, by coordinates. Computed in a single pass over the
+		 * registry when needed and discarded whenever M2E tells us Maven projects were added,
+		 * removed or changed.
+		 */
+		private Map<String, IProject> projectsByCoordinates = null;
 		
 		public IProject getMavenProject(String groupId, String artifactId, String version) {
-			MavenProjectManager mvnProjects = MavenPluginActivator.getDefault().getMavenProjectManager();
-			IMavenProjectFacade mvnProject = mvnProjects.getMavenProject(groupId, artifactId, version);
-			if (mvnProject!=null) {
-				return mvnProject.getProject();
-			}
-			return null;
+			return getProjectsByCoordinates().get(coordinates(groupId, artifactId, version));
 		}
 
 		public IProject getMavenProject(ExternalDependency dep) {
+			return getMavenProject(dep, getProjectsByCoordinates());
+		}
+
+		public IProject[] getMavenProjects(List<? extends ExternalDependency> deps) {
+			Map<String, IProject> projects = getProjectsByCoordinates();
+			IProject[] result = new IProject[deps.size()];
+			for (int i = 0; i < result.length; i++) {
+				result[i] = getMavenProject(deps.get(i), projects);
+			}
+			return result;
+		}
+
+		private IProject getMavenProject(ExternalDependency dep, Map<String, IProject> projects) {
 			try { 
 				GradleModuleVersion mv = dep.getGradleModuleVersion();
 				if (mv!=null) {
-					return getMavenProject(mv.getGroup(), mv.getName(), mv.getVersion());
-				} else {
-					System.out.println(dep.getFile());
+					return projects.get(coordinates(mv.getGroup(), mv.getName(), mv.getVersion()));
 				}
 			} catch (UnsupportedMethodException e) {
 				//Expected, if project is using older Gradle version pre 1.1.
@@ -57,6 +76,28 @@ public class M2EUtils {
 			return null;
 		}
 
+		private synchronized Map<String, IProject> getProjectsByCoordinates() {
+			if (projectsByCoordinates==null) {
+				ensureMavenProjectChangedListener();
+				Map<String, IProject> projects = new HashMap<String, IProject>();
+				MavenProjectManager mvnProjects = MavenPluginActivator.getDefault().getMavenProjectManager();
+				for (IMavenProjectFacade mvnProject : mvnProjects.getProjects()) {
+					ArtifactKey key = mvnProject.getArtifactKey();
+					projects.put(coordinates(key.getGroupId(), key.getArtifactId(), key.getVersion()), mvnProject.getProject());
+				}
+				projectsByCoordinates = projects;
+			}
+			return projectsByCoordinates;
+		}
+
+		private synchronized void clearProjectsByCoordinates() {
+			projectsByCoordinates = null;
+		}
+
+		private static String coordinates(String groupId, String artifactId, String version) {
+			return groupId+":"+artifactId+":"+version;
+		}
+
 		public boolean isInstalled() {
 			//The fact that we are using this implementation implies that M2E is installed.
 			return true;
@@ -67,6 +108,11 @@ public class M2EUtils {
 				MavenProjectManager mvnProjects = MavenPluginActivator.getDefault().getMavenProjectManager();
 				mvnProjectListener = new IMavenProjectChangedListener() {
 					public void mavenProjectChanged(MavenProjectChangedEvent[] events, IProgressMonitor monitor) {
+						if (events.length>0) {
+							clearProjectsByCoordinates();
+							//Jars remapped to Maven projects may have to be remapped differently now.
+							GradleCore.mavenProjectsChanged();
+						}
 						for (MavenProjectChangedEvent e : events) {
 							switch (e.getKind()) {
 							case MavenProjectChangedEvent.KIND_ADDED:
@@ -138,6 +184,10 @@ public class M2EUtils {
 			return null;
 		}
 
+		public IProject[] getMavenProjects(List<? extends ExternalDependency> deps) {
+			return new IProject[deps.size()];
+		}
+
 		public boolean isInstalled() {
 			return false;
 		}
@@ -160,6 +210,14 @@ public class M2EUtils {
 		return implementation().getMavenProject(dep);
 	}
 
+	/**
+	 * Like {@link #getMavenProject(ExternalDependency)} but for a list of dependencies at once.
+	 * @return An array with the corresponding Maven project (or null) for each dependency.
+	 */
+	public static IProject[] getMavenProjects(List<? extends ExternalDependency> deps) {
+		return implementation().getMavenProjects(deps);
+	}
+
 	private static synchronized IM2EUtils implementation() {
 		if (impl==null) {
 			impl = createImplementation();
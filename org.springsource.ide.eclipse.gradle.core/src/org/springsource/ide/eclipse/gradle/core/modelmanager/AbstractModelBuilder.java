@@ -20,6 +20,22 @@ import org.springsource.ide.eclipse.gradle.core.GradleProject;
  */
 public abstract class AbstractModelBuilder implements ModelBuilder {
 	
+	private ModelStats stats = null;
+	
+	/**
+	 * Record statistics about builds (e.g. build times) in a given {@link ModelStats}.
+	 */
+	public void setStats(ModelStats stats) {
+		this.stats = stats;
+	}
+	
+	/**
+	 * @return Where statistics about builds are recorded, or null.
+	 */
+	public ModelStats getStats() {
+		return stats;
+	}
+	
 	/**
 	 * Note that multiple build request could happen concurrently. A specific builder implementation may or may not 
 	 * want to add 'synchronized' modifier when overriding this method. This really depends on whether the build
@@ -37,10 +53,36 @@ public abstract class AbstractModelBuilder implements ModelBuilder {
 	
 	public final <T> BuildResult<T> buildModel(GradleProject project, Class<T> type, final IProgressMonitor mon) {
 		try {
-			return new BuildResult<T>(type, doBuild(project, type, mon));
+			return new BuildResult<T>(type, doTimedBuild(project, type, mon));
 		} catch (Throwable e) {
 			 return new BuildResult<T>(type,e);
 		}
 	}
 	
+	/**
+	 * Calls {@link #doBuild} and records its build time. Builders that have to wait before the actual
+	 * build starts override this, and record the build time themselves once the wait is over.
+	 */
+	protected <T> T doTimedBuild(GradleProject project, Class<T> type, IProgressMonitor mon) throws Exception {
+		return timedBuild(this, project, type, mon);
+	}
+	
+	/**
+	 * Calls {@link #doBuild} on a given builder and records its build time in the stats of this builder.
+	 */
+	protected final <T> T timedBuild(AbstractModelBuilder builder, GradleProject project, Class<T> type, IProgressMonitor mon) throws Exception {
+		long start = System.currentTimeMillis();
+		boolean failed = true;
+		try {
+			T model = builder.doBuild(project, type, mon);
+			failed = false;
+			return model;
+		} finally {
+			ModelStats stats = this.stats;
+			if (stats!=null) {
+				stats.built(type, System.currentTimeMillis()-start, failed);
+			}
+		}
+	}
+	
 }
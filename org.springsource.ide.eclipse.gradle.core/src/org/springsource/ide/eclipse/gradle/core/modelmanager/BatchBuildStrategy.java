@@ -0,0 +1,277 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.springsource.ide.eclipse.gradle.core.modelmanager;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.Set;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.gradle.tooling.UnsupportedVersionException;
+import org.gradle.tooling.model.eclipse.EclipseProject;
+import org.gradle.tooling.model.eclipse.HierarchicalEclipseProject;
+import org.gradle.tooling.model.gradle.BuildInvocations;
+import org.gradle.tooling.model.gradle.ProjectPublications;
+import org.springsource.ide.eclipse.gradle.core.GradleCore;
+import org.springsource.ide.eclipse.gradle.core.GradleProject;
+
+/**
+ * Build strategy that builds the models of all the types in {@link #BATCHED_TYPES}, for all
+ * the projects in a build family, in a single Gradle invocation (see {@link FamilyModelsAction}).
+ * The models for the requested type are returned as usual, models of the other types are added
+ * to the model manager's cache directly, so that later requests for them don't need a build.
+ * <p>
+ * When the Gradle version used by a build doesn't support this, requests fall back to
+ * the regular build strategies, until the build's Gradle version changes or its models
+ * are invalidated (e.g. by a refresh).
+ */
+public class BatchBuildStrategy extends HierarchicalProjectBuildStrategy {
+
+	private static final boolean DEBUG = false;
+
+	private static void debug(String string) {
+		if (DEBUG) {
+			System.out.println(string);
+		}
+	}
+
+	/**
+	 * Model types that are built together.
+	 */
+	private static final Class<?>[] BATCHED_TYPES = {
+		EclipseProject.class,
+		BuildInvocations.class,
+		ProjectPublications.class
+	};
+
+	/**
+	 * For each root location, keys (Gradle version + model type) of requests that can't be satisfied by
+	 * a batched build because the Gradle version of the build doesn't support it. Requests for these
+	 * fall back to the regular build strategies.
+	 */
+	private static final Map<File, Set<String>> unsupported = new HashMap<File, Set<String>>();
+
+	private final GradleModelManager mgr;
+
+	public BatchBuildStrategy(GradleModelManager mgr, ModelBuilder builder) {
+		super(builder);
+		this.mgr = mgr;
+	}
+
+	public static boolean canBuild(Class<?> type) {
+		for (Class<?> batched : BATCHED_TYPES) {
+			if (batched.equals(type)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public <T> List<ProjectBuildResult<T>> buildModels(GradleProject focusProject, Class<T> type, IProgressMonitor mon) throws CoreException {
+		GradleProject rootProject = getRootProject(focusProject);
+		GradleProject[] buildFamily = null;
+		if (rootProject!=null) {
+			buildFamily = getBuildFamily(rootProject);
+		}
+		GradleProject referenceProject = buildFamily==null ? focusProject : rootProject;
+		if (isUnsupported(referenceProject, type)) {
+			return fallback(focusProject, type, mon);
+		}
+		BuildResult<FamilyModels> result = builder.buildModel(referenceProject, FamilyModels.class, mon);
+		if (result.isFailed()) {
+			if (isVersionProblem(result.getError())) {
+				setUnsupported(referenceProject, null);
+				return fallback(focusProject, type, mon);
+			}
+			return failedResults(focusProject, buildFamily, new BuildResult<T>(type, result.getError()));
+		}
+		FamilyModels models = result.getModel();
+		Walk walk = new Walk(models.getEclipseProject());
+		updateBuildFamily(walk, buildFamily);
+		List<ProjectBuildResult<T>> requested = null;
+		for (Class<?> batchedType : BATCHED_TYPES) {
+			if (batchedType.equals(type)) {
+				requested = results(focusProject, type, walk, models);
+			} else {
+				addToCache(results(focusProject, batchedType, walk, models));
+			}
+		}
+		if (!EclipseProject.class.equals(type) && requested.isEmpty()) {
+			//Gradle version doesn't support the model type, or at least not from a BuildAction.
+			setUnsupported(walk.rootProject, type);
+			return fallback(focusProject, type, mon);
+		}
+		debug("Batch build for "+referenceProject.getDisplayName()+" produced models for "+walk.cache.size()+" projects");
+		return requested;
+	}
+
+	/**
+	 * Extract the models of a given type from the batch. The results for the focus project
+	 * (if any) are put first.
+	 */
+	private <T> List<ProjectBuildResult<T>> results(GradleProject focusProject, Class<T> type, Walk walk, FamilyModels models) {
+		Map<GradleProject, T> projectModels = new IdentityHashMap<GradleProject, T>();
+		if (EclipseProject.class.equals(type)) {
+			for (Entry<GradleProject, HierarchicalEclipseProject> e : walk.cache.entrySet()) {
+				projectModels.put(e.getKey(), type.cast(e.getValue()));
+			}
+		} else {
+			for (File dir : models.getProjectDirs()) {
+				T model = models.getModel(dir, type);
+				if (model!=null) {
+					projectModels.put(GradleCore.create(dir), model);
+				}
+			}
+		}
+		List<ProjectBuildResult<T>> results = new ArrayList<ProjectBuildResult<T>>(projectModels.size());
+		T focusModel = projectModels.remove(focusProject);
+		if (focusModel!=null) {
+			results.add(new ProjectBuildResult<T>(focusProject, new BuildResult<T>(type, focusModel)));
+		}
+		for (Entry<GradleProject, T> e : projectModels.entrySet()) {
+			results.add(new ProjectBuildResult<T>(e.getKey(), new BuildResult<T>(type, e.getValue())));
+		}
+		return results;
+	}
+
+	/**
+	 * Cache models of a type other than the requested one, holding that type's lock, like builds of that
+	 * type do. If a build of that type for some of the projects is in progress, its models aren't cached.
+	 * The build will cache its own, and waiting for it could deadlock with a batched build for that type
+	 * waiting for the lock we are holding.
+	 */
+	private <T> void addToCache(List<ProjectBuildResult<T>> results) {
+		if (results.isEmpty()) {
+			return;
+		}
+		List<GradleProject> projects = new ArrayList<GradleProject>(results.size());
+		for (ProjectBuildResult<T> r : results) {
+			projects.add(r.getProject());
+		}
+		Class<?> type = results.get(0).getResult().getType();
+		Lock lock = mgr.tryLockFamily(type, projects);
+		if (lock==null) {
+			debug("Not caching "+type.getSimpleName()+" models, a build for them is in progress");
+			return;
+		}
+		try {
+			mgr.addToCache(results);
+		} finally {
+			lock.release();
+		}
+	}
+
+	private <T> List<ProjectBuildResult<T>> fallback(GradleProject focusProject, Class<T> type, IProgressMonitor mon) throws CoreException {
+		if (HierarchicalEclipseProject.class.isAssignableFrom(type)) {
+			return super.buildModels(focusProject, type, mon);
+		}
+		return new SingleProjectBuildStrategy(builder).buildModels(focusProject, type, mon);
+	}
+
+	private static boolean isVersionProblem(Throwable e) {
+		while (e!=null) {
+			if (e instanceof UnsupportedVersionException) {
+				return true;
+			}
+			e = e.getCause();
+		}
+		return false;
+	}
+
+	/**
+	 * Determine whether batched builds are known not to work for a given type of model. If type
+	 * is null, then this means batched builds don't work at all.
+	 */
+	private static boolean isUnsupported(GradleProject project, Class<?> type) {
+		String version = getGradleVersion(project);
+		synchronized (unsupported) {
+			Set<String> keys = unsupported.get(project.getLocation());
+			return keys!=null && (keys.contains(key(version, null)) || keys.contains(key(version, type)));
+		}
+	}
+
+	private static void setUnsupported(GradleProject project, Class<?> type) {
+		String key = key(getGradleVersion(project), type);
+		debug("Batched builds not supported for "+project.getLocation()+"::"+key);
+		synchronized (unsupported) {
+			Set<String> keys = unsupported.get(project.getLocation());
+			if (keys==null) {
+				unsupported.put(project.getLocation(), keys = new HashSet<String>());
+			}
+			keys.add(key);
+		}
+	}
+
+	/**
+	 * Forget which requests batched builds don't work for, for the build family of a given project,
+	 * so they are tried again.
+	 *
+	 * @param project A project of the build family, or null for all builds.
+	 */
+	static void clearUnsupported(GradleProject project) {
+		synchronized (unsupported) {
+			if (project==null) {
+				unsupported.clear();
+			} else {
+				unsupported.remove(project.getLocation());
+				File root = project.getProjectPreferences().getRootProjectLocation();
+				if (root!=null) {
+					unsupported.remove(root);
+				}
+			}
+		}
+	}
+
+	private static String key(String version, Class<?> type) {
+		return version+"::"+(type==null ? "*" : type.getName());
+	}
+
+	/**
+	 * Describes the Gradle version a build runs with, as far as that can be told without connecting
+	 * to it: the distribution set in the preferences, or else the one in the build's wrapper properties.
+	 */
+	private static String getGradleVersion(GradleProject root) {
+		URI distribution = GradleCore.getInstance().getPreferences().getDistribution();
+		if (distribution!=null) {
+			return distribution.toString();
+		}
+		File wrapperProperties = new File(root.getLocation(), "gradle/wrapper/gradle-wrapper.properties");
+		if (wrapperProperties.isFile()) {
+			Properties props = new Properties();
+			try {
+				InputStream in = new FileInputStream(wrapperProperties);
+				try {
+					props.load(in);
+				} finally {
+					in.close();
+				}
+				return props.getProperty("distributionUrl", "wrapper");
+			} catch (IOException e) {
+				//Treat like a build without wrapper.
+			}
+		}
+		return "default";
+	}
+
+}
@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.springsource.ide.eclipse.gradle.core.modelmanager;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Computes a fingerprint of the files in a Gradle build that affect the models the build
+ * produces. That is, build scripts, settings.gradle, gradle.properties, the wrapper properties
+ * and anything in buildSrc. The layout of source folders (e.g. 'src/main/java') is included as
+ * well, because Gradle only reports source folders that exist. If the fingerprint of a build
+ * hasn't changed, models built earlier are assumed to still be valid.
+ * <p>
+ * The fingerprint is based on the names and contents of these files. Time stamps are not used,
+ * so touching a file, or checking out the same version again, doesn't invalidate models.
+ */
+public class BuildFingerprint {
+
+	/**
+	 * Directories that never contain build inputs. Skipping them avoids walking large
+	 * trees of sources and build outputs.
+	 */
+	private static final String[] IGNORED_DIRS = {
+		"build", "bin", "target", "out", "src", "node_modules"
+	};
+
+	private static final String BUILD_SRC = "buildSrc";
+	private static final String SRC = "src";
+
+	private final File root;
+
+	private BuildFingerprint(File root) {
+		this.root = root;
+	}
+
+	/**
+	 * Compute the fingerprint for the build with a given root project location.
+	 */
+	public static String compute(File root) {
+		return new BuildFingerprint(root).compute();
+	}
+
+	private String compute() {
+		List<String> entries = new ArrayList<String>();
+		collect(root, "", false, entries);
+		Collections.sort(entries);
+		try {
+			MessageDigest digest = MessageDigest.getInstance("MD5");
+			for (String entry : entries) {
+				digest.update(entry.getBytes("UTF-8"));
+				digest.update((byte)'\n');
+			}
+			return toHex(digest.digest());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void collect(File dir, String path, boolean inBuildSrc, List<String> entries) {
+		File[] children = dir.listFiles();
+		if (children!=null) {
+			for (File child : children) {
+				String name = child.getName();
+				String childPath = path+"/"+name;
+				if (child.isDirectory()) {
+					if (isIgnoredDir(name, inBuildSrc)) {
+						if (!inBuildSrc && name.equals(SRC)) {
+							collectSourceFolders(child, childPath, entries);
+						}
+						continue;
+					}
+					collect(child, childPath, inBuildSrc || (path.length()==0 && name.equals(BUILD_SRC)), entries);
+				} else if (inBuildSrc || isBuildInput(childPath)) {
+					entries.add(childPath+":"+digest(child));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Record the names of the source folders (two levels deep, e.g. 'src/main/java') but not their contents.
+	 */
+	private void collectSourceFolders(File src, String path, List<String> entries) {
+		File[] sourceSets = src.listFiles();
+		if (sourceSets!=null) {
+			for (File sourceSet : sourceSets) {
+				File[] folders = sourceSet.listFiles();
+				if (folders!=null) {
+					for (File folder : folders) {
+						if (folder.isDirectory()) {
+							entries.add(path+"/"+sourceSet.getName()+"/"+folder.getName()+"/");
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Compute a digest of the contents of a file. If the file can't be read its size and time stamp
+	 * are used instead.
+	 */
+	private static String digest(File file) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("MD5");
+			InputStream in = new FileInputStream(file);
+			try {
+				byte[] buf = new byte[8192];
+				int read;
+				while ((read = in.read(buf))>=0) {
+					digest.update(buf, 0, read);
+				}
+			} finally {
+				in.close();
+			}
+			return toHex(digest.digest());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		} catch (IOException e) {
+			return file.length()+":"+file.lastModified();
+		}
+	}
+
+	private static boolean isIgnoredDir(String name, boolean inBuildSrc) {
+		if (name.startsWith(".")) {
+			return true;
+		}
+		for (String ignored : IGNORED_DIRS) {
+			if (ignored.equals(name)) {
+				//buildSrc sources are build inputs, only its build output is ignored.
+				return !inBuildSrc || !name.equals("src");
+			}
+		}
+		return false;
+	}
+
+	private static boolean isBuildInput(String path) {
+		return path.endsWith(".gradle")
+			|| path.endsWith("/gradle.properties")
+			|| path.endsWith("/gradle/wrapper/gradle-wrapper.properties");
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder(bytes.length*2);
+		for (byte b : bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+			hex.append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+
+}
@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.springsource.ide.eclipse.gradle.core.modelmanager;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springsource.ide.eclipse.gradle.core.GradleProject;
+
+/**
+ * Keeps track of the {@link BuildFingerprint} of each root project at the time its models
+ * were last built successfully. Fingerprints are recorded by the model manager when it builds
+ * models. Refreshes that are not forced use this to avoid rebuilding models when none of the
+ * build inputs have changed since.
+ */
+public class BuildFingerprintService {
+
+	private static final boolean DEBUG = false;
+
+	private static void debug(String string) {
+		if (DEBUG) {
+			System.out.println(string);
+		}
+	}
+
+	/**
+	 * Fingerprints recorded at the last successful build, keyed by root project location.
+	 */
+	private Map<File, String> recorded;
+
+	private int avoided = 0;
+
+	/**
+	 * A refresh of a number of projects. Determines which of the projects have unchanged build
+	 * inputs.
+	 */
+	public class Refresh {
+
+		private final boolean force;
+
+		/**
+		 * Fingerprints computed during the refresh, so that each build family is only fingerprinted once.
+		 */
+		private final Map<File, String> fingerprints = new HashMap<File, String>();
+
+		private Refresh(boolean force) {
+			this.force = force;
+		}
+
+		/**
+		 * @return true if the build inputs of the project's build family have not changed since
+		 * its models were last built successfully. Always false for a forced refresh.
+		 */
+		public boolean isUnchanged(GradleProject project) {
+			if (force) {
+				return false;
+			}
+			File root = rootOf(project);
+			return root!=null && fingerprint(root).equals(getRecorded(root));
+		}
+
+		/**
+		 * Called when the cached model for a project is reused rather than rebuilt.
+		 */
+		public void reused(GradleProject project) {
+			debug("Reusing models for "+project.getDisplayName());
+			rebuildAvoided();
+		}
+
+		private String fingerprint(File root) {
+			String fingerprint = fingerprints.get(root);
+			if (fingerprint==null) {
+				fingerprints.put(root, fingerprint = BuildFingerprint.compute(root));
+			}
+			return fingerprint;
+		}
+	}
+
+	/**
+	 * A model build, started by the model manager.
+	 */
+	class Build {
+
+		private final File root;
+
+		/**
+		 * Computed before the build, so that changes made while the build is running cause a
+		 * rebuild next time around.
+		 */
+		private final String fingerprint;
+
+		private Build(File root) {
+			this.root = root;
+			this.fingerprint = root==null ? null : BuildFingerprint.compute(root);
+		}
+
+		/**
+		 * Called when the models were built successfully.
+		 */
+		void succeeded(GradleProject project) {
+			File root = rootOf(project);
+			if (root!=null) {
+				//The root may only have become known as a result of the build.
+				record(root, root.equals(this.root) ? fingerprint : BuildFingerprint.compute(root));
+			}
+		}
+	}
+
+	/**
+	 * Called by the model manager before it builds models for a project.
+	 */
+	Build startBuild(GradleProject project) {
+		return new Build(rootOf(project));
+	}
+
+	/**
+	 * Start a refresh.
+	 *
+	 * @param force If true, build inputs are treated as changed regardless of their fingerprint.
+	 */
+	public Refresh startRefresh(boolean force) {
+		return new Refresh(force);
+	}
+
+	public synchronized void record(File root, String fingerprint) {
+		if (recorded==null) {
+			recorded = new HashMap<File, String>();
+		}
+		recorded.put(root, fingerprint);
+	}
+
+	public synchronized String getRecorded(File root) {
+		if (recorded!=null) {
+			return recorded.get(root);
+		}
+		return null;
+	}
+
+	/**
+	 * Forget all recorded fingerprints, forcing the next refresh of any project to rebuild
+	 * its models.
+	 */
+	public synchronized void clear() {
+		recorded = null;
+	}
+
+	/**
+	 * @return The number of project refreshes that reused a cached model because the build
+	 * inputs were unchanged.
+	 */
+	public synchronized int getAvoidedRebuildCount() {
+		return avoided;
+	}
+
+	public synchronized void resetCounters() {
+		avoided = 0;
+	}
+
+	private synchronized void rebuildAvoided() {
+		avoided++;
+	}
+
+	private static File rootOf(GradleProject project) {
+		GradleProject root = project.getRootProjectMaybe();
+		if (root!=null) {
+			return root.getLocation();
+		}
+		return null;
+	}
+
+}
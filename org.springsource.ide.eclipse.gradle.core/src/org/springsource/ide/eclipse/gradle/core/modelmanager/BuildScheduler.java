@@ -1,139 +1,287 @@
-///*******************************************************************************
-// * Copyright (c) 2014 Pivotal Software, Inc.
-// * All rights reserved. This program and the accompanying materials
-// * are made available under the terms of the Eclipse Public License v1.0
-// * which accompanies this distribution, and is available at
-// * http://www.eclipse.org/legal/epl-v10.html
-// *
-// * Contributors:
-// * Pivotal Software, Inc. - initial API and implementation
-// *******************************************************************************/
-//package org.springsource.ide.eclipse.gradle.core.modelmanager;
-//
-//import java.util.HashMap;
-//import java.util.Map;
-//
-//import org.eclipse.core.runtime.IProgressMonitor;
-//import org.eclipse.core.runtime.SubProgressMonitor;
-//import org.springsource.ide.eclipse.gradle.core.GenericModelProvider;
-//import org.springsource.ide.eclipse.gradle.core.GradleProject;
-//import org.springsource.ide.eclipse.gradle.core.util.GradleRunnable;
-//import org.springsource.ide.eclipse.gradle.core.util.JoinableContinuation;
-//
-///**
-// * Build scheduler is responsible for forwarding build requests to the builder in 
-// * a efficient way. Mainly, its goal is to allow multiple incoming requests 
-// * for the same  model to only result in a single build request being forwarded to the
-// * model builder. 
-// * 
-// * 
-// * @author Kris De Volder
-// */
-//public class BuildScheduler {
-//
-//	private ModelBuilder builder;
-//	
-//	/**
-//	 * Keeps track of builds that are currently in progress. Each in progress build is stored as a
-//	 * "Promise" of the eventual build result.
-//	 */
-//	private Map<String, ModelPromise<?>> builds;
-//
-//	public BuildScheduler(ModelBuilder builder) {
-//		this.builder = builder;
-//	}
-//	
-//	public <T> BuildResult<T> buildModel(GradleProject project, Class<T> type, final IProgressMonitor mon) {
-//		mon.beginTask(GenericModelProvider.jobName(project, type), 10);
-//		ModelPromise<T> promise;
-//		boolean isNew = false;
-//		String key = key(project, type);
-//		try {
-//			synchronized (this) {
-//				//cast is safe because key contains type name:
-//				promise = (ModelPromise<T>) get(key);
-//				if (promise==null) {
-//					promise = new ModelPromise<T>();
-//					isNew = true;
-//					put(key, promise);
-//				}
-//			}
-//			mon.worked(1);
-//			if (isNew) {
-//				try {
-//					builder.buildModel(project, type, new SubProgressMonitor(mon, 8)).sendTo(promise);
-//				} catch (Throwable e) {
-//					promise.error(e);
-//				}
-//			}
-//			return BuildResult.fromPromise(type, promise);
-//		} finally {
-//			if (isNew) {
-//				synchronized (this) {
-//					remove(key);
-//				}
-//			}
-//			mon.done();
-//		}
-//	}
-//
-//	private void remove(String key) {
-//		if (builds!=null) {
-//			builds.remove(key);
-//		}
-//	}
-//
-//	private void put(String key, ModelPromise<?> value) {
-//		if (builds==null) {
-//			builds = new HashMap<String, ModelPromise<?>>();
-//		}
-//		builds.put(key, value);
-//	}
-//	
-//	/**
-//	 * Checks if any in progress builds could satisfy a given request, and if so return the promise 
-//	 * of this build's value. 
-//	 */
-//	private JoinableContinuation<?> get(String key) {
-//		if (builds!=null) {
-//			//This unchecked cast is safe because the type name is part of the key. 
-//			return builds.get(key);
-//		}
-//		return null;
-//	}
-//
-//	private static String key(GradleProject project, Class<?> type) {
-//		return project.getLocation()+"::"+type.getName();
-//	}
-//
-//	public synchronized void invalidate() {
-//		if (builds!=null) {
-//			for (ModelPromise<?> promise : builds.values()) {
-//				promise.cancel();
-//			}
-//			builds = null;
-//		}
-//	}
-//	
-//	/**
-//	 * Schedule an asynchronous model build and return a 'promise' of the model.
-//	 */
-//	private <T> ModelPromise<T> schedule(final GradleProject project, final Class<T> type) {
-//		final ModelPromise<T> promise = new ModelPromise<T>();
-//		GradleRunnable modelRequest = new GradleRunnable("Build model ["+type.getSimpleName()+"] for "+project.getDisplayName()) {
-//			@Override
-//			public void doit(IProgressMonitor mon) throws Exception {
-//				try {
-//					promise.setMonitor(mon);
-//					builder.buildModel(project, type, mon).sendTo(promise);
-//				} catch (Throwable e) {
-//					promise.error(e);
-//				}
-//			}
-//		};
-////		promise.setJob(JobUtil.schedule(JobUtil.NO_RULE, modelRequest));
-//		return promise;
-//	}
-//	
-//	
-//}
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.springsource.ide.eclipse.gradle.core.modelmanager;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.swt.widgets.Display;
+import org.springsource.ide.eclipse.gradle.core.GradleProject;
+import org.springsource.ide.eclipse.gradle.core.util.ExceptionUtil;
+import org.springsource.ide.eclipse.gradle.core.util.GradleRunnable;
+import org.springsource.ide.eclipse.gradle.core.util.JobUtil;
+import org.springsource.ide.eclipse.gradle.core.util.JoinableContinuation;
+import org.springsource.ide.eclipse.gradle.core.util.Promise;
+
+/**
+ * Build scheduler is responsible for forwarding model requests to the model manager in
+ * an efficient way. Its goal is to allow multiple concurrent requests for the same
+ * model to result in only a single 'in flight' request. All concurrent callers asking
+ * for the same (project, type) join the promise of that request.
+ * <p>
+ * A blocking request from a thread other than the UI thread is run directly in the caller's thread.
+ * Other requests run in a Job of their own. A caller that cancels its own monitor stops waiting,
+ * but the request itself is only canceled once every caller waiting for it has canceled. (When the
+ * caller that runs a request cancels while others are still waiting, the request is handed over
+ * to a Job.)
+ *
+ * @author Kris De Volder
+ */
+public class BuildScheduler {
+
+	private static final boolean DEBUG = false;
+
+	private static void debug(String string) {
+		if (DEBUG) {
+			System.out.println(string);
+		}
+	}
+
+	/**
+	 * Polling interval used by waiting callers to check their monitor for cancelation.
+	 */
+	private static final long WAIT_INTERVAL = 100;
+
+	/**
+	 * Performs the actual work for a request.
+	 */
+	public interface Worker {
+		<T> T getModel(GradleProject project, Class<T> type, IProgressMonitor mon) throws CoreException;
+	}
+
+	/**
+	 * Request that is currently in progress.
+	 */
+	private class Flight<T> {
+		final String key;
+		final JoinableContinuation<T> promise = new JoinableContinuation<T>();
+		/**
+		 * Null while the request runs in the thread of the caller that started it.
+		 */
+		Job job;
+		/**
+		 * Number of callers currently blocked waiting for this request.
+		 */
+		int waiters = 0;
+		/**
+		 * Set when someone requested the model without waiting for it. Such requests
+		 * can not be canceled, so the flight should never be canceled either.
+		 */
+		boolean detached = false;
+
+		Flight(String key) {
+			this.key = key;
+		}
+	}
+
+	private final Worker worker;
+
+	/**
+	 * Keeps track of requests that are currently in progress.
+	 */
+	private Map<String, Flight<?>> flights;
+
+	private int coalesced = 0;
+
+	public BuildScheduler(Worker worker) {
+		this.worker = worker;
+	}
+
+	/**
+	 * Get a model, blocking until it is available. If a request for the same model is already
+	 * in progress the caller waits for that request rather than starting a new one.
+	 */
+	public <T> T getModel(GradleProject project, Class<T> type, IProgressMonitor mon) throws CoreException {
+		Flight<T> flight;
+		boolean inCallerThread = false;
+		synchronized (this) {
+			flight = findFlight(project, type);
+			if (flight==null) {
+				flight = addFlight(project, type);
+				if (Display.getCurrent()==null) {
+					//No need for a Job just to wait for it.
+					inCallerThread = true;
+				} else {
+					flight.job = startJob(flight, project, type);
+				}
+			}
+			if (!inCallerThread) {
+				flight.waiters++;
+			}
+		}
+		if (inCallerThread) {
+			return buildInCallerThread(flight, project, type, mon);
+		}
+		mon.beginTask(ToolinApiUtils.jobName(project, type), 1);
+		try {
+			return flight.promise.join(mon);
+		} catch (OperationCanceledException e) {
+			throw e;
+		} catch (Exception e) {
+			throw ExceptionUtil.coreException(e);
+		} finally {
+			synchronized (this) {
+				flight.waiters--;
+				if (flight.waiters<=0 && !flight.detached && flight.job!=null && !flight.promise.isDone()) {
+					cancel(flight);
+				}
+			}
+			mon.done();
+		}
+	}
+
+	/**
+	 * Request a model without waiting for it. If a request for the same model is already in
+	 * progress no new request is started.
+	 *
+	 * @return A promise of the model.
+	 */
+	public synchronized <T> Promise<T> requestModel(GradleProject project, Class<T> type) {
+		Flight<T> flight = findFlight(project, type);
+		if (flight==null) {
+			flight = addFlight(project, type);
+			flight.job = startJob(flight, project, type);
+		}
+		flight.detached = true;
+		return flight.promise;
+	}
+
+	private <T> T buildInCallerThread(Flight<T> flight, GradleProject project, Class<T> type, IProgressMonitor mon) throws CoreException {
+		T model = null;
+		Throwable error = null;
+		boolean handedOver = false;
+		try {
+			model = worker.getModel(project, type, mon);
+			return model;
+		} catch (CoreException e) {
+			error = e;
+			handedOver = handOverIfCanceled(flight, project, type, e);
+			throw e;
+		} catch (RuntimeException e) {
+			error = e;
+			handedOver = handOverIfCanceled(flight, project, type, e);
+			throw e;
+		} catch (Error e) {
+			error = e;
+			throw e;
+		} finally {
+			if (!handedOver) {
+				synchronized (this) {
+					remove(flight);
+				}
+				if (error==null) {
+					flight.promise.apply(model);
+				} else {
+					flight.promise.error(error);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return The number of requests that were satisfied by joining a request already in progress
+	 * rather than starting a new one.
+	 */
+	public synchronized int getCoalescedCount() {
+		return coalesced;
+	}
+
+	public synchronized void resetCounters() {
+		coalesced = 0;
+	}
+
+	/**
+	 * When the caller running a request canceled it while others are still waiting for the model,
+	 * continue the request in a Job.
+	 *
+	 * @return true if the request was handed over to a Job.
+	 */
+	private synchronized <T> boolean handOverIfCanceled(Flight<T> flight, GradleProject project, Class<T> type, Throwable e) {
+		if (ExceptionUtil.isCancelation(e) && (flight.waiters>0 || flight.detached)) {
+			debug("Hand over request: "+flight.key);
+			flight.job = startJob(flight, project, type);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Find the flight for a given model, if there is one. Must be called while holding the
+	 * monitor of this scheduler.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> Flight<T> findFlight(GradleProject project, Class<T> type) {
+		if (flights==null) {
+			return null;
+		}
+		String key = key(project, type);
+		//Cast is safe because key contains type name.
+		Flight<T> flight = (Flight<T>) flights.get(key);
+		if (flight!=null) {
+			debug("Coalesced request: "+key);
+			coalesced++;
+		}
+		return flight;
+	}
+
+	/**
+	 * Register a new flight for a given model. Must be called while holding the monitor of this
+	 * scheduler.
+	 */
+	private <T> Flight<T> addFlight(GradleProject project, Class<T> type) {
+		if (flights==null) {
+			flights = new HashMap<String, Flight<?>>();
+		}
+		Flight<T> flight = new Flight<T>(key(project, type));
+		flights.put(flight.key, flight);
+		return flight;
+	}
+
+	private <T> Job startJob(final Flight<T> flight, final GradleProject project, final Class<T> type) {
+		return JobUtil.schedule(JobUtil.NO_RULE, new GradleRunnable(ToolinApiUtils.jobName(project, type)) {
+			@Override
+			public void doit(IProgressMonitor mon) throws Exception {
+				try {
+					flight.promise.apply(worker.getModel(project, type, mon));
+				} catch (Throwable e) {
+					flight.promise.error(e);
+				} finally {
+					synchronized (BuildScheduler.this) {
+						remove(flight);
+					}
+				}
+			}
+		});
+	}
+
+	private void cancel(Flight<?> flight) {
+		debug("Cancel request: "+flight.key);
+		remove(flight);
+		flight.job.cancel();
+		//In case the job was canceled before it started running.
+		flight.promise.error(new OperationCanceledException());
+	}
+
+	private void remove(Flight<?> flight) {
+		if (flights!=null && flights.get(flight.key)==flight) {
+			flights.remove(flight.key);
+		}
+	}
+
+	private static String key(GradleProject project, Class<?> type) {
+		return project.getLocation()+"::"+type.getName();
+	}
+
+}
@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.springsource.ide.eclipse.gradle.core.modelmanager;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.springsource.ide.eclipse.gradle.core.GradleProject;
+import org.springsource.ide.eclipse.gradle.core.util.JobUtil;
+
+/**
+ * A model builder that forwards build requests to another builder while limiting how
+ * many builds may run at the same time, both globally and per root project.
+ * <p>
+ * This builder does nothing to guarantee correctness of concurrent builds. It relies on
+ * the {@link GradleModelManager} locking build families, so that builds which may produce
+ * overlapping models are never executed concurrently. The limits here only exist to avoid
+ * overloading the machine (global limit) and individual Gradle builds (per-root limit).
+ */
+public class ConcurrentModelBuilder extends AbstractModelBuilder {
+
+	private static final boolean DEBUG = false;
+
+	private static void debug(String string) {
+		if (DEBUG) {
+			System.out.println(string);
+		}
+	}
+
+	public static final int DEFAULT_MAX_CONCURRENT_BUILDS = 4;
+	public static final int DEFAULT_MAX_CONCURRENT_BUILDS_PER_ROOT = 1;
+
+	/**
+	 * Polling interval used to check for cancelation while waiting for a build slot.
+	 */
+	private static final long WAIT_INTERVAL = 100;
+
+	private final AbstractModelBuilder delegate;
+
+	private int maxBuilds;
+	private int maxBuildsPerRoot;
+
+	private int running = 0;
+	private Map<File, Integer> runningPerRoot = new HashMap<File, Integer>();
+
+	public ConcurrentModelBuilder(AbstractModelBuilder delegate) {
+		this(delegate, DEFAULT_MAX_CONCURRENT_BUILDS, DEFAULT_MAX_CONCURRENT_BUILDS_PER_ROOT);
+	}
+
+	public ConcurrentModelBuilder(AbstractModelBuilder delegate, int maxBuilds, int maxBuildsPerRoot) {
+		this.delegate = delegate;
+		setLimits(maxBuilds, maxBuildsPerRoot);
+	}
+
+	/**
+	 * Change the limits. Builds already running are not affected, but builds waiting for
+	 * a slot are reconsidered with the new limits. Values smaller than 1 are treated as 1.
+	 */
+	public synchronized void setLimits(int maxBuilds, int maxBuildsPerRoot) {
+		this.maxBuilds = Math.max(1, maxBuilds);
+		this.maxBuildsPerRoot = Math.max(1, maxBuildsPerRoot);
+		notifyAll();
+	}
+
+	public synchronized int getMaxBuilds() {
+		return maxBuilds;
+	}
+
+	public synchronized int getMaxBuildsPerRoot() {
+		return maxBuildsPerRoot;
+	}
+
+	/**
+	 * The build time is recorded by {@link #doBuild}, once a build slot is acquired. The time spent waiting
+	 * for the slot is recorded separately, as queue wait.
+	 */
+	@Override
+	protected <T> T doTimedBuild(GradleProject project, Class<T> type, IProgressMonitor mon) throws Exception {
+		return doBuild(project, type, mon);
+	}
+
+	@Override
+	protected <T> T doBuild(GradleProject project, Class<T> type, IProgressMonitor mon) throws Exception {
+		File root = rootOf(project);
+		long start = System.currentTimeMillis();
+		try {
+			acquire(root, mon);
+		} finally {
+			ModelStats stats = getStats();
+			if (stats!=null) {
+				stats.queueWait(type, System.currentTimeMillis()-start);
+			}
+		}
+		try {
+			return timedBuild(delegate, project, type, mon);
+		} finally {
+			release(root);
+		}
+	}
+
+	/**
+	 * Determines the root project location that is used to enforce the per-root limit. When
+	 * the root isn't known yet the project itself is used.
+	 */
+	private File rootOf(GradleProject project) {
+		GradleProject root = project.getRootProjectMaybe();
+		if (root==null) {
+			root = project;
+		}
+		return root.getLocation();
+	}
+
+	private synchronized void acquire(File root, IProgressMonitor mon) throws InterruptedException {
+		while (running>=maxBuilds || count(root)>=maxBuildsPerRoot) {
+			JobUtil.checkCanceled(mon);
+			debug("Waiting for build slot: "+root);
+			wait(WAIT_INTERVAL);
+		}
+		running++;
+		runningPerRoot.put(root, count(root)+1);
+	}
+
+	private synchronized void release(File root) {
+		running--;
+		int count = count(root)-1;
+		if (count>0) {
+			runningPerRoot.put(root, count);
+		} else {
+			runningPerRoot.remove(root);
+		}
+		notifyAll();
+	}
+
+	private int count(File root) {
+		Integer count = runningPerRoot.get(root);
+		if (count!=null) {
+			return count;
+		}
+		return 0;
+	}
+
+}
@@ -18,21 +18,23 @@ import org.springsource.ide.eclipse.gradle.core.util.ExceptionUtil;
 
 /**
  * Default implementation of ModelBuilder. Delegates to Gradle tooling API.
+ * <p>
+ * Requests for {@link FamilyModels} are handled by running a {@link FamilyModelsAction}.
  * 
  * @author Kris De Volder
  */
 public class DefaultModelBuilder extends AbstractModelBuilder {
 	
 	@Override
-	synchronized public <T> T doBuild(GradleProject project, Class<T> type, IProgressMonitor mon) throws CoreException {
+	public <T> T doBuild(GradleProject project, Class<T> type, IProgressMonitor mon) throws CoreException {
 		mon.beginTask(jobName(project, type), 10);
 		try {
-			return ToolinApiUtils.buildModel(project, type, new SubProgressMonitor(mon, 9));
+			return build(project, type, new SubProgressMonitor(mon, 9));
 		} catch (CoreException e) {
 			if (ExceptionUtil.getDeepestCause(e).getClass().getName().equals("java.lang.InterruptedException")) {
 				//WTF: someone throws this spurriously aborting the build... don't want that, so try again and
 				// don't fail my tests because of this!
-				return ToolinApiUtils.buildModel(project, type, new SubProgressMonitor(mon, 1));
+				return build(project, type, new SubProgressMonitor(mon, 1));
 			}
 			throw e;
 		}
@@ -40,6 +42,13 @@ public class DefaultModelBuilder extends AbstractModelBuilder {
 			mon.done();
 		}
 	}
+
+	private <T> T build(GradleProject project, Class<T> type, IProgressMonitor mon) throws CoreException {
+		if (FamilyModels.class.equals(type)) {
+			return type.cast(ToolinApiUtils.runBuildAction(project, new FamilyModelsAction(), mon));
+		}
+		return ToolinApiUtils.buildModel(project, type, mon);
+	}
 	
 	public static <T> String jobName(GradleProject project, Class<T> requiredType) {
 		return "Build '"+requiredType.getSimpleName()+"' model for '"+project.getDisplayName();
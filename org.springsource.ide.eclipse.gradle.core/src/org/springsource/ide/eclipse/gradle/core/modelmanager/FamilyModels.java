@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.springsource.ide.eclipse.gradle.core.modelmanager;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.gradle.tooling.model.eclipse.EclipseProject;
+
+/**
+ * Models of several types, for all the projects in a build family, as collected
+ * by {@link FamilyModelsAction} in a single Gradle invocation.
+ * <p>
+ * Note: instances of this class are created inside the Gradle build process, so this class
+ * must not depend on anything other than the Tooling API.
+ */
+public class FamilyModels implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * EclipseProject model of the project the build was invoked on. The models of the other projects
+	 * in the family can be reached from it by walking the project hierarchy.
+	 */
+	private final EclipseProject eclipseProject;
+
+	/**
+	 * Per-project models, keyed by project directory and then by model type name.
+	 */
+	private final HashMap<File, HashMap<String, Object>> models = new HashMap<File, HashMap<String, Object>>();
+
+	public FamilyModels(EclipseProject eclipseProject) {
+		this.eclipseProject = eclipseProject;
+	}
+
+	public EclipseProject getEclipseProject() {
+		return eclipseProject;
+	}
+
+	void put(File projectDir, Class<?> type, Object model) {
+		HashMap<String, Object> projectModels = models.get(projectDir);
+		if (projectModels==null) {
+			models.put(projectDir, projectModels = new HashMap<String, Object>());
+		}
+		projectModels.put(type.getName(), model);
+	}
+
+	/**
+	 * @return The directories of all the projects for which per-project models were collected.
+	 */
+	public Set<File> getProjectDirs() {
+		return models.keySet();
+	}
+
+	/**
+	 * @return The model of a given type for a given project, or null if the build didn't produce one.
+	 */
+	public <T> T getModel(File projectDir, Class<T> type) {
+		Map<String, Object> projectModels = models.get(projectDir);
+		if (projectModels!=null) {
+			return type.cast(projectModels.get(type.getName()));
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.springsource.ide.eclipse.gradle.core.modelmanager;
+
+import org.gradle.tooling.BuildAction;
+import org.gradle.tooling.BuildController;
+import org.gradle.tooling.model.gradle.BasicGradleProject;
+import org.gradle.tooling.model.gradle.BuildInvocations;
+import org.gradle.tooling.model.gradle.ProjectPublications;
+import org.gradle.tooling.model.eclipse.EclipseProject;
+
+/**
+ * BuildAction that runs inside the Gradle build process and collects the models
+ * of all the types in {@link #PER_PROJECT_TYPES}, plus the EclipseProject model, for every
+ * project in the build. This way the build only needs to be configured once, rather than
+ * once per model type.
+ * <p>
+ * Note: this class is executed inside the Gradle build process, so it must not depend on
+ * anything other than the Tooling API.
+ */
+public class FamilyModelsAction implements BuildAction<FamilyModels> {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Model types that are requested for each project individually.
+	 */
+	static final Class<?>[] PER_PROJECT_TYPES = {
+		BuildInvocations.class,
+		ProjectPublications.class
+	};
+
+	public FamilyModels execute(BuildController controller) {
+		FamilyModels models = new FamilyModels(controller.getModel(EclipseProject.class));
+		for (BasicGradleProject project : controller.getBuildModel().getProjects()) {
+			for (Class<?> type : PER_PROJECT_TYPES) {
+				//findModel returns null rather than failing when the Gradle version doesn't
+				// support a model type.
+				Object model = controller.findModel(project, type);
+				if (model!=null) {
+					models.put(project.getProjectDirectory(), type, model);
+				}
+			}
+		}
+		return models;
+	}
+
+}
@@ -10,20 +10,28 @@
  *******************************************************************************/
 package org.springsource.ide.eclipse.gradle.core.modelmanager;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.ListenerList;
 import org.gradle.tooling.model.eclipse.HierarchicalEclipseProject;
+import org.springsource.ide.eclipse.gradle.core.GradleCore;
 import org.springsource.ide.eclipse.gradle.core.GradleProject;
 import org.springsource.ide.eclipse.gradle.core.InconsistenProjectHierarchyException;
 import org.springsource.ide.eclipse.gradle.core.classpathcontainer.FastOperationFailedException;
+import org.springsource.ide.eclipse.gradle.core.util.GradleRunnable;
+import org.springsource.ide.eclipse.gradle.core.util.JobUtil;
+import org.springsource.ide.eclipse.gradle.core.util.JoinableContinuation;
+import org.springsource.ide.eclipse.gradle.core.util.Promise;
 
 /**
  * Manages GradleModels for all GradleProjects. Each GradleProject may be
@@ -34,34 +42,158 @@ import org.springsource.ide.eclipse.gradle.core.classpathcontainer.FastOperation
 public class GradleModelManager {
 
 	private ModelBuilder builder;
+	private PersistentModelStore store = null;
+	private volatile boolean batchBuilds = false;
+	private BuildScheduler scheduler = new BuildScheduler(new BuildScheduler.Worker() {
+		public <T> T getModel(GradleProject project, Class<T> type, IProgressMonitor mon) throws CoreException {
+			//Restoring persisted models reads from disk and fingerprints the build, so it is done here
+			// rather than on the fast path.
+			loadPersistedModels(project, type);
+			return getManager(project).getModel(type, mon);
+		}
+	});
+	private BuildFingerprintService fingerprints = new BuildFingerprintService();
+	private ModelCache modelCache = new ModelCache();
+	private ModelStats stats = new ModelStats();
 	private Map<GradleProject, GradleProjectModelManager> managers;
 	private Map<Class<?>, LockManager> lockManagers = null; // lock managers, per model type.
 	private Map<GradleProject,ListenerList> listeners;
+	private ListenerList globalListeners = new ListenerList(ListenerList.IDENTITY); // listeners for all projects
 	
 	public GradleModelManager(ModelBuilder builder) {
 		this.builder = builder;
+		if (builder instanceof AbstractModelBuilder) {
+			((AbstractModelBuilder) builder).setStats(stats);
+		}
 	}
 	
 	public <T> T getModel(GradleProject project, Class<T> type) throws CoreException, FastOperationFailedException {
-		return getManager(project).getModel(type);
+		try {
+			return getCachedModel(project, type);
+		} catch (FastOperationFailedException e) {
+			stats.fastFailure(type);
+			throw e;
+		}
+	}
+
+	/**
+	 * Get a model from the in-memory cache. Models in the persistent store are not considered here,
+	 * they are restored by the build path (see {@link #loadPersistedModels(GradleProject, Class)}).
+	 */
+	private <T> T getCachedModel(GradleProject project, Class<T> type) throws CoreException, FastOperationFailedException {
+		T model;
+		try {
+			model = getManager(project).getModel(type);
+		} catch (FastOperationFailedException e) {
+			stats.cacheMiss(type);
+			throw e;
+		}
+		stats.cacheHit(type);
+		return model;
+	}
+
+	/**
+	 * Enables storing models on disk, so that they can be reused after a restart.
+	 */
+	public void setPersistentStore(PersistentModelStore store) {
+		this.store = store;
+	}
+
+	/**
+	 * Enables building EclipseProject, BuildInvocations and ProjectPublications models for a whole
+	 * build family in a single build. See {@link BatchBuildStrategy}. This requires a model builder
+	 * that can build {@link FamilyModels}.
+	 */
+	public void setBatchBuilds(boolean enable) {
+		this.batchBuilds = enable;
 	}
 
 	/**
 	 * Clears out all models in all the caches.
 	 */
-	public synchronized void invalidate() {
-		managers = null;
+	public void invalidate() {
+		BatchBuildStrategy.clearUnsupported(null);
+		synchronized (this) {
+			managers = null;
+			modelCache.clear();
+			if (store!=null) {
+				store.invalidate();
+			}
+		}
 	}
 	
 	/**
 	 * Clears out models of all types for a given project.
 	 */
-	public synchronized void invalidate(GradleProject gradleProject) {
-		if (managers!=null) {
-			managers.remove(gradleProject);
+	public void invalidate(GradleProject gradleProject) {
+		BatchBuildStrategy.clearUnsupported(gradleProject);
+		synchronized (this) {
+			if (managers!=null) {
+				GradleProjectModelManager removed = managers.remove(gradleProject);
+				if (removed!=null) {
+					modelCache.clear(removed);
+				}
+			}
+			if (store!=null) {
+				store.invalidate(gradleProject);
+			}
 		}
 	}
 	
+	/**
+	 * Try to populate the cache with models from the persistent store. If the stored models are
+	 * stale they are used anyway, but a build is started in the background to replace them.
+	 * Called before building a model, never from the fast path.
+	 * 
+	 * @return true if a model for the given project was loaded.
+	 */
+	private <T> boolean loadPersistedModels(final GradleProject project, final Class<T> type) {
+		if (store==null) {
+			return false;
+		}
+		PersistentModelStore.Models<T> persisted = store.load(project, type);
+		if (persisted==null) {
+			return false;
+		}
+		List<ProjectBuildResult<T>> candidates = new ArrayList<ProjectBuildResult<T>>();
+		for (Entry<File, T> e : persisted.getModels().entrySet()) {
+			candidates.add(new ProjectBuildResult<T>(GradleCore.create(e.getKey()), new BuildResult<T>(type, e.getValue())));
+		}
+		List<ProjectBuildResult<T>> results = new ArrayList<ProjectBuildResult<T>>();
+		List<GradleProjectModelManager> owners = new ArrayList<GradleProjectModelManager>();
+		synchronized (this) {
+			for (ProjectBuildResult<T> r : candidates) {
+				GradleProjectModelManager manager = getManager(r.getProject());
+				//Don't replace models that may have been built in the mean time.
+				if (manager.getModelMaybe(type)==null) {
+					manager.addToCache(r.getResult());
+					results.add(r);
+					owners.add(manager);
+				}
+			}
+		}
+		for (int i = 0; i < results.size(); i++) {
+			cached(owners.get(i), null, results.get(i).getResult());
+		}
+		if (!persisted.isReloaded()) {
+			//Reloaded models replace evicted ones with the same contents, nothing has changed.
+			for (ProjectBuildResult<T> r : results) {
+				notifyListeners(r.getProject(), type, r.getResult().getModel());
+			}
+		}
+		if (!persisted.isStale()) {
+			fingerprints.record(persisted.getRoot(), persisted.getFingerprint());
+		} else {
+			JobUtil.schedule(JobUtil.NO_RULE, new GradleRunnable("Update stale "+type.getSimpleName()+" model for "+project.getDisplayName()) {
+				@Override
+				public void doit(IProgressMonitor mon) throws Exception {
+					getManager(project).rebuildModel(type, mon);
+				}
+			});
+		}
+		return persisted.getModels().containsKey(project.getLocation());
+	}
+	
 	private synchronized GradleProjectModelManager getManager(GradleProject project) {
 		if (managers==null) {
 			managers = new HashMap<GradleProject, GradleProjectModelManager>();
@@ -73,8 +205,61 @@ public class GradleModelManager {
 		return existing;
 	}
 
+	/**
+	 * Get a model, building it if it is not yet in the cache. Concurrent requests for the same 
+	 * model share a single build.
+	 */
 	public <T> T getModel(GradleProject project, Class<T> type, IProgressMonitor mon) throws CoreException {
-		return getManager(project).getModel(type, mon);
+		try {
+			return getCachedModel(project, type);
+		} catch (FastOperationFailedException e) {
+			//Not in the cache, must build
+		}
+		return scheduler.getModel(project, type, mon);
+	}
+	
+	/**
+	 * Request a model to be built in the background, unless a request for the same model
+	 * is already in progress.
+	 * 
+	 * @return A promise of the model.
+	 */
+	public <T> Promise<T> requestModel(GradleProject project, Class<T> type) {
+		return scheduler.requestModel(project, type);
+	}
+	
+	/**
+	 * Get a model without blocking. The returned promise is already done if the model (or
+	 * an explanation why it can't be built) is in the cache. Otherwise a build is requested in
+	 * the background, unless one for the same model is already in progress, and the promise
+	 * is done when that build finishes.
+	 */
+	public <T> Promise<T> getModelAsync(GradleProject project, Class<T> type) {
+		JoinableContinuation<T> cached = new JoinableContinuation<T>();
+		try {
+			cached.apply(getCachedModel(project, type));
+		} catch (FastOperationFailedException e) {
+			return scheduler.requestModel(project, type);
+		} catch (Throwable e) {
+			cached.error(e);
+		}
+		return cached;
+	}
+	
+	/**
+	 * @return Number of model requests that were satisfied by joining a request
+	 * already in progress rather than starting a new one.
+	 */
+	public int getCoalescedRequestCount() {
+		return scheduler.getCoalescedCount();
+	}
+	
+	/**
+	 * @return The service that keeps track of build fingerprints, used to avoid needless rebuilds
+	 * when refreshing projects.
+	 */
+	public BuildFingerprintService getFingerprintService() {
+		return fingerprints;
 	}
 	
 	/**
@@ -84,6 +269,9 @@ public class GradleModelManager {
 	 * at once.
 	 */
 	public <T> BuildStrategy getBuildStrategy(GradleProject project, Class<T> type) {
+		if (batchBuilds && BatchBuildStrategy.canBuild(type)) {
+			return new BatchBuildStrategy(this, builder);
+		}
 		if (HierarchicalEclipseProject.class.isAssignableFrom(type)) {
 			return new HierarchicalProjectBuildStrategy(builder);
 		}
@@ -95,13 +283,25 @@ public class GradleModelManager {
 	 * already stored at the same coordinates.
 	 */
 	<T> void addToCache(List<ProjectBuildResult<T>> buildResults) {
+		List<GradleProjectModelManager> owners = new ArrayList<GradleProjectModelManager>();
+		List<BuildResult<?>> replaced = new ArrayList<BuildResult<?>>();
+		List<BuildResult<?>> added = new ArrayList<BuildResult<?>>();
 		synchronized (this) {
 			for (ProjectBuildResult<?> buildResult : buildResults) {
 				if (!buildResult.isCancelation()) {
-					getManager(buildResult.getProject()).addToCache(buildResult.getResult());
+					GradleProjectModelManager owner = getManager(buildResult.getProject());
+					replaced.add(owner.addToCache(buildResult.getResult()));
+					owners.add(owner);
+					added.add(buildResult.getResult());
 				}
 			}
 		}
+		for (int i = 0; i < added.size(); i++) {
+			cached(owners.get(i), replaced.get(i), added.get(i));
+		}
+		if (store!=null && !buildResults.isEmpty()) {
+			store.save(buildResults.get(0).getResult().getType(), buildResults);
+		}
 		//We take care to notify listeners outside synch blocks for less chance of deadlocking
 		// There's really no need for the notifications to be sent while holding locks on
 		// the cache
@@ -112,6 +312,105 @@ public class GradleModelManager {
 		}
 	}
 	
+	/**
+	 * Inform the {@link ModelCache} that a build result was put in the cache of a project model
+	 * manager, and evict models as needed to stay within the memory budget. Must not be called
+	 * while holding locks on this manager or on project model managers.
+	 */
+	private void cached(GradleProjectModelManager owner, BuildResult<?> replaced, BuildResult<?> result) {
+		if (replaced!=null) {
+			modelCache.removed(replaced);
+		}
+		for (ModelCache.Eviction e : modelCache.added(owner, result)) {
+			if (e.owner.evict(e.result) && store!=null) {
+				//Models of persistable types can be restored from disk rather than rebuilt.
+				store.allowReload(e.owner.getProject(), e.result.getType());
+			}
+		}
+	}
+
+	/**
+	 * Called by project model managers when a model was retrieved from their cache. Must not be
+	 * called while holding locks on this manager or on project model managers.
+	 * 
+	 * @param result The retrieved result, or null.
+	 */
+	void accessed(GradleProjectModelManager owner, BuildResult<?> result) {
+		List<BuildResult<?>> resurrected = owner.takeResurrected();
+		if (resurrected!=null) {
+			for (BuildResult<?> r : resurrected) {
+				cached(owner, null, r);
+			}
+		}
+		if (result!=null) {
+			modelCache.accessed(result);
+		}
+	}
+
+	/**
+	 * Set the memory budget for cached models, in bytes.
+	 */
+	public void setCacheBudget(long bytes) {
+		modelCache.setBudget(bytes);
+	}
+
+	/**
+	 * Set whether cached models of a given type may be evicted when the cache exceeds its budget.
+	 * By default, {@link HierarchicalEclipseProject} models are pinned, and all others are evictable.
+	 */
+	public void setRetention(Class<?> type, ModelCache.Retention retention) {
+		modelCache.setRetention(type, retention);
+	}
+
+	/**
+	 * @return Estimated memory, in bytes, retained by cached models, per model type.
+	 */
+	public Map<Class<?>, Long> getEstimatedCacheSizes() {
+		return modelCache.getSizePerType();
+	}
+
+	/**
+	 * @return Number of models evicted from the cache to stay within the memory budget.
+	 */
+	public int getEvictionCount() {
+		return modelCache.getEvictionCount();
+	}
+
+	/**
+	 * @return Statistics about model requests and builds.
+	 */
+	public ModelStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * @return A human readable report of all the statistics gathered by this model manager.
+	 */
+	public String dumpStats() {
+		StringBuilder buf = new StringBuilder();
+		buf.append("Gradle model manager statistics\n");
+		buf.append(stats);
+		buf.append("Coalesced requests: "+getCoalescedRequestCount()+"\n");
+		buf.append("Rebuilds avoided by fingerprint: "+fingerprints.getAvoidedRebuildCount()+"\n");
+		buf.append("Cache evictions: "+getEvictionCount()+"\n");
+		for (Entry<Class<?>, Long> e : getEstimatedCacheSizes().entrySet()) {
+			buf.append("Cached "+e.getKey().getSimpleName()+": ~"+(e.getValue()/1024)+" KB\n");
+		}
+		ToolingApiConnectionPool pool = ToolinApiUtils.getConnectionPool();
+		buf.append("Connection pool: hits="+pool.getHitCount()+" misses="+pool.getMissCount()+"\n");
+		return buf.toString();
+	}
+
+	/**
+	 * Reset all the counters reported by {@link #dumpStats()}.
+	 */
+	public void resetStats() {
+		stats.resetCounters();
+		scheduler.resetCounters();
+		fingerprints.resetCounters();
+		ToolinApiUtils.getConnectionPool().resetCounters();
+	}
+
 	private synchronized ListenerList listeners(GradleProject project) {
 		GradleProject key = project;
 		if (listeners==null) {
@@ -142,6 +441,20 @@ public class GradleModelManager {
 				((IGradleModelListener)l).modelChanged(project, type, model);
 			}
 		}
+		for (Object l : globalListeners.getListeners()) {
+			((IGradleModelListener)l).modelChanged(project, type, model);
+		}
+	}
+
+	/**
+	 * Add a listener that gets notified when the model of any project is set.
+	 */
+	public void addListener(IGradleModelListener listener) {
+		globalListeners.add(listener);
+	}
+
+	public void removeListener(IGradleModelListener listener) {
+		globalListeners.remove(listener);
 	}
 	
 	public <T> void addListener(GradleProject project, IGradleModelListener listener) {
@@ -159,12 +472,25 @@ public class GradleModelManager {
 	 * Synchronization helper to make requests for models in the same project family sequential.
 	 */
 	Lock lockFamily(Class<?> type, Collection<GradleProject> predictedFamily) {
-		LockManager lockManager = getLockManager(type);
+		return getLockManager(type).lock(lockKeys(type, predictedFamily));
+	}
+
+	/**
+	 * Like {@link #lockFamily(Class, Collection)}, but doesn't wait.
+	 *
+	 * @return The lock, or null if a build of the given type of model for some of the projects
+	 *    is in progress or waiting.
+	 */
+	Lock tryLockFamily(Class<?> type, Collection<GradleProject> projects) {
+		return getLockManager(type).tryLock(lockKeys(type, projects));
+	}
+
+	private static Set<String> lockKeys(Class<?> type, Collection<GradleProject> projects) {
 		Set<String> keys = new HashSet<String>();
-		for (GradleProject project : predictedFamily) {
+		for (GradleProject project : projects) {
 			keys.add(project.getLocation().toString()+"::"+type.getName());
 		}
-		return lockManager.lock(keys);
+		return keys;
 	}
 
 	private synchronized LockManager getLockManager(Class<?> type) {
@@ -184,6 +510,19 @@ public class GradleModelManager {
 	Lock lockAll(Class<?> type) {
 		return getLockManager(type).lockAll();
 	}
+
+	/**
+	 * @return Total time, in milliseconds, spent waiting for build family locks, per model type.
+	 */
+	public synchronized Map<Class<?>, Long> getLockWaitTimes() {
+		Map<Class<?>, Long> times = new HashMap<Class<?>, Long>();
+		if (lockManagers!=null) {
+			for (Entry<Class<?>, LockManager> e : lockManagers.entrySet()) {
+				times.put(e.getKey(), e.getValue().getWaitTime());
+			}
+		}
+		return times;
+	}
 	
 	
 	///////////// test-only related code below ///////////////////////////////////////////////////
@@ -10,6 +10,8 @@
  *******************************************************************************/
 package org.springsource.ide.eclipse.gradle.core.modelmanager;
 
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
@@ -22,6 +24,7 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.ListenerList;
 import org.eclipse.core.runtime.SubProgressMonitor;
+import org.gradle.tooling.model.eclipse.HierarchicalEclipseProject;
 import org.springsource.ide.eclipse.gradle.core.GradleProject;
 import org.springsource.ide.eclipse.gradle.core.InconsistenProjectHierarchyException;
 import org.springsource.ide.eclipse.gradle.core.classpathcontainer.FastOperationFailedException;
@@ -39,15 +42,28 @@ public class GradleProjectModelManager {
 	
 	private Map<Class<?>, BuildResult<?>> cache;
 	
+	/**
+	 * Build results evicted from the cache to stay within the memory budget (see {@link ModelCache}).
+	 * They can still be used until the garbage collector reclaims them.
+	 */
+	private Map<Class<?>, SoftReference<BuildResult<?>>> evicted;
+	
+	/**
+	 * Evicted build results that were put back in the cache, but not yet reported to the
+	 * {@link ModelCache}.
+	 */
+	private List<BuildResult<?>> resurrected;
+	
 	public GradleProjectModelManager(GradleModelManager mgr, GradleProject project) {
 		this.mgr = mgr;
 		this.project = project;
 	}
 
 	public <T> T getModel(Class<T> type) throws FastOperationFailedException, CoreException {
-		T model = getModelMaybe(type);
-		if (model!=null) {
-			return model;
+		BuildResult<?> result = getResultMaybe(type);
+		if (result!=null) {
+			mgr.accessed(this, result);
+			return type.cast(result.getModel());
 		}
 		Throwable error = getFailureExplanation(type);
 		if (error!=null) {
@@ -59,18 +75,40 @@ public class GradleProjectModelManager {
 	/**
 	 * Gets model from cache if available and returns null otherwise.
 	 */
-	@SuppressWarnings("unchecked")
 	public synchronized <T> T getModelMaybe(Class<T> type) {
+		BuildResult<?> buildResult = getResultMaybe(type);
+		if (buildResult!=null) {
+			return type.cast(buildResult.getModel());
+		}
+		return null;
+	}
+
+	private synchronized BuildResult<?> getResultMaybe(Class<?> type) {
 		if (cache!=null) {
 			for (BuildResult<?> buildResult : cache.values()) {
 				if (buildResult.isSucceeded()) {
 					Class<?> modelType = buildResult.getType();
 					if (type.isAssignableFrom(modelType)) {
-						return (T)buildResult.getModel();
+						return buildResult;
 					}
 				}
 			}
 		}
+		if (evicted!=null) {
+			for (SoftReference<BuildResult<?>> ref : evicted.values()) {
+				BuildResult<?> buildResult = ref.get();
+				if (buildResult!=null && type.isAssignableFrom(buildResult.getType())) {
+					//Still in memory, put it back.
+					evicted.remove(buildResult.getType());
+					putInCache(buildResult);
+					if (resurrected==null) {
+						resurrected = new ArrayList<BuildResult<?>>();
+					}
+					resurrected.add(buildResult);
+					return buildResult;
+				}
+			}
+		}
 		//Not found 
 		return null;
 	}
@@ -103,6 +141,7 @@ public class GradleProjectModelManager {
 				//by inaccurate build family info.
 				//The build strategy is supposed to update its family prediction info when this happens,
 				//so grant one retry attempt to allow builder strategy to recover from this misprediction.
+				mgr.getStats().retry(type);
 				if (mgr.SLEEP_BETWEEN_RETRIES>0) {
 					try {
 						Thread.sleep(mgr.SLEEP_BETWEEN_RETRIES);
@@ -113,35 +152,58 @@ public class GradleProjectModelManager {
 			}
 		} finally {
 			mon.done();
+			mgr.accessed(this, null);
 		}
 	}
 	
+	/**
+	 * Build a model, even if there is already one in the cache, and replace the cached model
+	 * with the result.
+	 */
+	public <T> T rebuildModel(Class<T> type, IProgressMonitor mon) throws CoreException {
+		return getModelInternal(type, false, mon);
+	}
+	
 	private <T> T getModelInternal(Class<T> type, IProgressMonitor mon) throws CoreException {
+		return getModelInternal(type, true, mon);
+	}
+	
+	private <T> T getModelInternal(Class<T> type, boolean useCache, IProgressMonitor mon) throws CoreException {
 		BuildStrategy buildStrategy = mgr.getBuildStrategy(project, type);
 		Lock lock = lockFamily(buildStrategy, type); 
 		mon.beginTask("Fetch model of type "+type.getSimpleName()+" for project "+project.getDisplayName(), 10);
 		try {
-			synchronized (this) {
-				//All that goes in here is deciding if we should do a build, this should be fast
-				// the actual model build might be long and should be outside synch block!
-				T fromCache = getModelMaybe(type);
-				mon.worked(1);
-				if (fromCache!=null) {
-					return fromCache;
-				}
-				//If there's a failure explanation don't do a build because it will likely
-				// just fail again for the same reason (and take a long time).
-				Throwable failureExplanation = getFailureExplanation(type);
-				if (failureExplanation!=null) {
-					throw ExceptionUtil.coreException(failureExplanation);
+			if (useCache) {
+				synchronized (this) {
+					//All that goes in here is deciding if we should do a build, this should be fast
+					// the actual model build might be long and should be outside synch block!
+					T fromCache = getModelMaybe(type);
+					mon.worked(1);
+					if (fromCache!=null) {
+						return fromCache;
+					}
+					//If there's a failure explanation don't do a build because it will likely
+					// just fail again for the same reason (and take a long time).
+					Throwable failureExplanation = getFailureExplanation(type);
+					if (failureExplanation!=null) {
+						throw ExceptionUtil.coreException(failureExplanation);
+					}
 				}
 			}
 			//If we get here we need to attempt to build the model. 
 			//Take care to keep build outside of any synchronized blocks!
+			BuildFingerprintService.Build build = null;
+			if (HierarchicalEclipseProject.class.isAssignableFrom(type)) {
+				//Refreshes check whether these need rebuilding, see BuildFingerprintService.
+				build = mgr.getFingerprintService().startBuild(project);
+			}
 			List<ProjectBuildResult<T>> buildResults = buildStrategy.buildModels(project, type, new SubProgressMonitor(mon, 8));
 			mgr.addToCache(buildResults);
 			ProjectBuildResult<T> primaryResult = getFirst(buildResults);
 			if (primaryResult!=null && primaryResult.getProject().equals(project)) {
+				if (build!=null && primaryResult.getResult().isSucceeded()) {
+					build.succeeded(project);
+				}
 				return (T) primaryResult.getResult().get();
 			} else {
 				throw ExceptionUtil.inconsistentProjectHierachy(project);
@@ -153,6 +215,7 @@ public class GradleProjectModelManager {
 	}
 	
 	private Lock lockFamily(BuildStrategy buildStrategy, Class<?> type) {
+		long start = System.currentTimeMillis();
 		Collection<GradleProject> predictedFamily = buildStrategy.predictBuildFamily(project, type);
 		Lock lock = null;
 		do {
@@ -166,6 +229,7 @@ public class GradleProjectModelManager {
 				predictedFamily = repredicted;
 			}
 		} while (lock==null);
+		mgr.getStats().lockWait(type, System.currentTimeMillis()-start);
 		return lock;
 	}
 
@@ -176,11 +240,54 @@ public class GradleProjectModelManager {
 		return null;
 	}
 
-	synchronized void addToCache(BuildResult<?> result) {
+	/**
+	 * Add a build result to the cache, replacing any result of the same type.
+	 * 
+	 * @return The replaced result or null.
+	 */
+	synchronized BuildResult<?> addToCache(BuildResult<?> result) {
+		if (evicted!=null) {
+			evicted.remove(result.getType());
+		}
+		return putInCache(result);
+	}
+
+	private BuildResult<?> putInCache(BuildResult<?> result) {
 		if (cache==null) {
 			cache = new HashMap<Class<?>, BuildResult<?>>();
 		}
-		cache.put(result.getType(), result);
+		return cache.put(result.getType(), result);
+	}
+
+	/**
+	 * Remove a build result from the cache, unless it was already replaced. The result is kept
+	 * softly reachable, so it can still be used if the garbage collector doesn't need the memory.
+	 * 
+	 * @return true if the result was evicted.
+	 */
+	synchronized boolean evict(BuildResult<?> result) {
+		if (cache==null || cache.get(result.getType())!=result) {
+			return false;
+		}
+		cache.remove(result.getType());
+		if (evicted==null) {
+			evicted = new HashMap<Class<?>, SoftReference<BuildResult<?>>>();
+		}
+		evicted.put(result.getType(), new SoftReference<BuildResult<?>>(result));
+		return true;
+	}
+
+	/**
+	 * @return Evicted results that were put back in the cache since the last call.
+	 */
+	synchronized List<BuildResult<?>> takeResurrected() {
+		List<BuildResult<?>> results = resurrected;
+		resurrected = null;
+		return results;
+	}
+
+	GradleProject getProject() {
+		return project;
 	}
 
 	
@@ -72,40 +72,56 @@ public class HierarchicalProjectBuildStrategy extends BuildStrategy {
 			}
 			for (Entry<GradleProject, HierarchicalEclipseProject> e : walk.cache.entrySet()) {
 				GradleProject project = e.getKey();
-				setRootProject(project, walk.rootProject);
 				if (project!=focusProject) {
 					models.add(new ProjectBuildResult<T>(project, new BuildResult<T>(type, cast(type, e.getValue()))));
 				}
 			}
-			Set<GradleProject> newMembers = walk.cache.keySet();
-			setBuildFamily(walk.rootProject, newMembers);
-			//Update family members that became orphans
-			if (buildFamily!=null) {
-				for (GradleProject oldMember : buildFamily) {
-					if (!newMembers.contains(oldMember)) {
-						setRootProject(oldMember, null);
-					}
-				}
-			}
+			updateBuildFamily(walk, buildFamily);
 			return models;
 		} else { //FAILED 
-			List<ProjectBuildResult<T>> results = new ArrayList<ProjectBuildResult<T>>();
-			results.add(new ProjectBuildResult<T>(focusProject, referenceModel.cast(type))); //focus project always first!
-			//Try to use persisted 'build family' to mark other family members as failed.
-			if (rootProject!=null) {
-				if (buildFamily!=null) {
-					for (GradleProject familyMember : buildFamily) {
-						if (focusProject!=familyMember) {
-							results.add(new ProjectBuildResult<T>(familyMember, referenceModel.cast(type)));
-						}
-					}
+			return failedResults(focusProject, buildFamily, referenceModel.cast(type));
+		}
+	}
+
+	/**
+	 * Create build results for a failed build. The failure is recorded for the focus project and
+	 * for the other members of its persisted 'build family' (if known).
+	 */
+	static <T> List<ProjectBuildResult<T>> failedResults(GradleProject focusProject, GradleProject[] buildFamily, BuildResult<T> failure) {
+		List<ProjectBuildResult<T>> results = new ArrayList<ProjectBuildResult<T>>();
+		results.add(new ProjectBuildResult<T>(focusProject, failure)); //focus project always first!
+		//Try to use persisted 'build family' to mark other family members as failed.
+		if (buildFamily!=null) {
+			for (GradleProject familyMember : buildFamily) {
+				if (focusProject!=familyMember) {
+					results.add(new ProjectBuildResult<T>(familyMember, failure));
+				}
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Update the root project and build family info of all the projects that were built together,
+	 * as well as of any former family members that became orphans.
+	 */
+	static void updateBuildFamily(Walk walk, GradleProject[] oldFamily) {
+		Set<GradleProject> newMembers = walk.cache.keySet();
+		for (GradleProject project : newMembers) {
+			setRootProject(project, walk.rootProject);
+		}
+		setBuildFamily(walk.rootProject, newMembers);
+		//Update family members that became orphans
+		if (oldFamily!=null) {
+			for (GradleProject oldMember : oldFamily) {
+				if (!newMembers.contains(oldMember)) {
+					setRootProject(oldMember, null);
 				}
 			}
-			return results;
 		}
 	}
 
-	private static GradleProject getRootProject(GradleProject project) {
+	static GradleProject getRootProject(GradleProject project) {
 		//Note: it is important to use this method rather than the similar one that is
 		// defined on GradleProject because that one has some funky recovery logic for
 		// when someone deleted the prefs files. This creates some bad recursion.
@@ -116,7 +132,7 @@ public class HierarchicalProjectBuildStrategy extends BuildStrategy {
 		return null;
 	}
 	
-	private static void setRootProject(GradleProject project, GradleProject rootProject) {
+	static void setRootProject(GradleProject project, GradleProject rootProject) {
 		if (rootProject!=null) {
 			project.getProjectPreferences().setRootProjectLocation(rootProject.getLocation());
 		} else {
@@ -129,7 +145,7 @@ public class HierarchicalProjectBuildStrategy extends BuildStrategy {
 	 * build. This info is always stored and retreived from the rootProject. So if rootProject is not known then
 	 * build family can not be determined.
 	 */
-	private GradleProject[] getBuildFamily(GradleProject rootProject) {
+	static GradleProject[] getBuildFamily(GradleProject rootProject) {
 		File[] memberLocs = rootProject.getProjectPreferences().get(BUILD_FAMILY_PROP, (File[])null);
 		if (memberLocs!=null) {
 			GradleProject[] members = new GradleProject[memberLocs.length];
@@ -156,7 +172,7 @@ public class HierarchicalProjectBuildStrategy extends BuildStrategy {
 	/**
 	 * Record the build family just created by a build in the rootProject associated with that build.
 	 */
-	private void setBuildFamily(GradleProject rootProject, Set<GradleProject> members) {
+	static void setBuildFamily(GradleProject rootProject, Set<GradleProject> members) {
 		File[] memberLocations = new File[members.size()];
 		int i = 0;
 		for (GradleProject member : members) {
@@ -181,7 +197,7 @@ public class HierarchicalProjectBuildStrategy extends BuildStrategy {
 
 	
 	/** Walk the hierarchy and fill a given cache map */
-	private static class Walk {
+	static class Walk {
 		
 		Walk(HierarchicalEclipseProject referenceModel) {
 			walk(referenceModel);
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.springsource.ide.eclipse.gradle.core.modelmanager;
+
+/**
+ * Records durations in a fixed set of exponentially growing buckets. Percentiles are approximated
+ * by the upper bound of the bucket they fall in.
+ */
+public class LatencyHistogram {
+
+	/**
+	 * Upper bounds (inclusive) of the buckets, in milliseconds. There is an additional bucket
+	 * for durations above the last bound.
+	 */
+	private static final long[] BOUNDS = {
+		1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000, 60000, 300000
+	};
+
+	private final long[] buckets = new long[BOUNDS.length+1];
+	private long count = 0;
+	private long total = 0;
+	private long max = 0;
+
+	public synchronized void record(long millis) {
+		int i = 0;
+		while (i<BOUNDS.length && millis>BOUNDS[i]) {
+			i++;
+		}
+		buckets[i]++;
+		count++;
+		total += millis;
+		max = Math.max(max, millis);
+	}
+
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return Sum of all recorded durations, in milliseconds.
+	 */
+	public synchronized long getTotal() {
+		return total;
+	}
+
+	public synchronized long getMax() {
+		return max;
+	}
+
+	public synchronized double getMean() {
+		if (count==0) {
+			return 0;
+		}
+		return (double)total / count;
+	}
+
+	/**
+	 * @param p A percentile between 0 and 100.
+	 * @return Approximate duration, in milliseconds, such that p percent of the recorded durations
+	 * are at most that long.
+	 */
+	public synchronized long getPercentile(double p) {
+		if (count==0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(count * p / 100);
+		long seen = 0;
+		for (int i = 0; i < BOUNDS.length; i++) {
+			seen += buckets[i];
+			if (seen>=rank) {
+				return Math.min(BOUNDS[i], max);
+			}
+		}
+		return max;
+	}
+
+	public synchronized void reset() {
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = 0;
+		}
+		count = 0;
+		total = 0;
+		max = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		if (count==0) {
+			return "n=0";
+		}
+		return "n="+count+" mean="+Math.round(getMean())+"ms p50="+getPercentile(50)+"ms p90="+getPercentile(90)
+				+"ms p99="+getPercentile(99)+"ms max="+max+"ms";
+	}
+
+}
@@ -10,114 +10,322 @@
  *******************************************************************************/
 package org.springsource.ide.eclipse.gradle.core.modelmanager;
 
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.Set;
 
-import org.apache.maven.wagon.observers.Debug;
-import org.eclipse.core.runtime.Platform;
-
 /**
  * Manages locks on a set of strings.
+ * <p>
+ * Requests for locks are granted in FIFO order, except that a request may overtake earlier
+ * waiting requests it doesn't share any keys with. A request to lock 'the world' is granted
+ * once all earlier requests have been granted and released. While it is waiting, no
+ * later requests are granted, so it can not be starved by a stream of smaller requests.
+ * <p>
+ * Locks are handed over to waiting requests by whoever releases a lock, and only the threads
+ * whose requests were granted are woken up.
+ *
+ * @author Kris De Volder
  */
 public class LockManager {
-	
+
 	private static final boolean DEBUG = false;
-//		=  (""+Platform.getLocation()).contains("kdvolder")
-//		|| (""+Platform.getLocation()).contains("bamboo");
-	
+
 	private static void debug(String msg) {
 		if (DEBUG) {
 			System.out.println(msg);
 		}
 	}
-	
-	
+
+	/**
+	 * A request for a lock. Requests for 'the world' have null keys.
+	 */
+	private static class Request {
+		final String[] keys;
+		/**
+		 * Set while holding the monitor of both the LockManager and the request.
+		 */
+		volatile boolean granted = false;
+
+		Request(String[] keys) {
+			this.keys = keys;
+		}
+
+		boolean isWorld() {
+			return keys==null;
+		}
+
+		@Override
+		public String toString() {
+			return isWorld() ? "*" : Arrays.toString(keys);
+		}
+	}
+
 	private Set<String> locked = new HashSet<String>();
 	private boolean worldIsLocked = false;
 
+	/**
+	 * Requests waiting to be granted, oldest first.
+	 */
+	private LinkedList<Request> waiting = new LinkedList<Request>();
+
+	private int acquired = 0;
+	private int contended = 0;
+	private long waitTime = 0; //nanos
+
 	/**
 	 * Obtain a lock on a given set of keys. All or none of the locks are obtained.
 	 * The caller must eventually call 'release' on the returned Lock object.
+	 * <p>
+	 * This method waits for as long as it takes to obtain the lock. Interrupts are
+	 * ignored while waiting.
 	 */
-	public synchronized Lock lock(Set<String> _keys) {
+	public Lock lock(Set<String> _keys) {
+		return lockUninterruptibly(toArray(_keys));
+	}
+
+	/**
+	 * Like {@link #lock(Set)}, but gives up after a given time.
+	 *
+	 * @param timeout Maximum time to wait in milliseconds. Zero or less means wait forever.
+	 * @return The lock or null if it could not be obtained within the timeout.
+	 * @throws InterruptedException If the thread is interrupted while waiting.
+	 */
+	public Lock lock(Set<String> _keys, long timeout) throws InterruptedException {
+		return acquire(toArray(_keys), timeout);
+	}
+
+	/**
+	 * Like {@link #lock(Set)}, but doesn't wait. Also fails if earlier requests for any of
+	 * the keys are still waiting.
+	 *
+	 * @return The lock or null if it could not be obtained right away.
+	 */
+	public synchronized Lock tryLock(Set<String> _keys) {
+		Request request = new Request(toArray(_keys));
+		waiting.add(request);
+		grant();
+		if (request.granted) {
+			acquired++;
+			return newLock(request);
+		}
+		waiting.remove(request);
+		return null;
+	}
+
+	/**
+	 * Lock 'the world'. This lock will only succeed if no other locks are currently held and
+	 * once this lock succeeds it needs to be released before any other locks can be obtained.
+	 */
+	public Lock lockAll() {
+		return lockUninterruptibly(null);
+	}
+
+	/**
+	 * Like {@link #lockAll()}, but gives up after a given time.
+	 *
+	 * @param timeout Maximum time to wait in milliseconds. Zero or less means wait forever.
+	 * @return The lock or null if it could not be obtained within the timeout.
+	 * @throws InterruptedException If the thread is interrupted while waiting.
+	 */
+	public Lock lockAll(long timeout) throws InterruptedException {
+		return acquire(null, timeout);
+	}
+
+	/**
+	 * @return Total time, in milliseconds, threads have spent waiting for locks.
+	 */
+	public synchronized long getWaitTime() {
+		return waitTime / 1000000;
+	}
+
+	/**
+	 * @return Number of locks obtained.
+	 */
+	public synchronized int getAcquiredCount() {
+		return acquired;
+	}
+
+	/**
+	 * @return Number of locks that could not be obtained right away.
+	 */
+	public synchronized int getContendedCount() {
+		return contended;
+	}
+
+	public synchronized void resetCounters() {
+		acquired = 0;
+		contended = 0;
+		waitTime = 0;
+	}
+
+	private static String[] toArray(Set<String> keys) {
 		//copy keys into an array, just in case clients might mutate the collection after passing it to us.
-		final String[] keys = _keys.toArray(new String[_keys.size()]);
-		while (!canLock(keys)) {
-			try {
-				wait();
-			} catch (InterruptedException e) {
-			}
+		return keys.toArray(new String[keys.size()]);
+	}
+
+	private Lock lockUninterruptibly(String[] keys) {
+		try {
+			return acquire(keys, 0, false);
+		} catch (InterruptedException e) {
+			//Can't happen, interrupts are ignored.
+			throw new IllegalStateException(e);
 		}
-		for (String k : keys) {
-			locked.add(k);
+	}
+
+	private Lock acquire(String[] keys, long timeout) throws InterruptedException {
+		return acquire(keys, timeout, true);
+	}
+
+	private Lock acquire(String[] keys, long timeout, boolean interruptible) throws InterruptedException {
+		Request request = new Request(keys);
+		long start = System.nanoTime();
+		synchronized (this) {
+			waiting.add(request);
+			grant();
+			if (request.granted) {
+				acquired++;
+				return newLock(request);
+			}
+			contended++;
 		}
-		return new Lock() {
-			@Override
-			public void release() {
-				releaseAll(keys);
+		debug("Waiting for lock: "+request);
+		InterruptedException interrupted = null;
+		boolean ignoredInterrupt = false;
+		synchronized (request) {
+			long deadline = start + timeout*1000000;
+			while (!request.granted && interrupted==null) {
+				try {
+					if (timeout>0) {
+						long remaining = (deadline - System.nanoTime()) / 1000000;
+						if (remaining<=0) {
+							break;
+						}
+						request.wait(remaining);
+					} else {
+						request.wait();
+					}
+				} catch (InterruptedException e) {
+					if (interruptible) {
+						interrupted = e;
+					} else {
+						ignoredInterrupt = true;
+					}
+				}
 			}
-			@Override
-			public String toString() {
-				StringBuilder buf = new StringBuilder("Lock {\n");
-				for (String string : keys) {
-					buf.append(string);
-					buf.append("\n");
+		}
+		if (ignoredInterrupt) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (this) {
+			waitTime += System.nanoTime() - start;
+			if (request.granted) {
+				//Granted, possibly just before timing out or being interrupted. Either way
+				// we have the lock now, so hand it to the caller.
+				if (interrupted!=null) {
+					Thread.currentThread().interrupt();
 				}
-				buf.append("}");
-				return buf.toString();
+				acquired++;
+				return newLock(request);
 			}
-		};
+			waiting.remove(request);
+			//Requests waiting behind this one may now be able to proceed.
+			grant();
+		}
+		if (interrupted!=null) {
+			throw interrupted;
+		}
+		return null;
 	}
 
-	private synchronized void releaseAll(String[] keys) {
-//		debug("releasing locks: ");
-		for (String k : keys) {
-			debug("   "+k);
-			locked.remove(k);
+	/**
+	 * Grant as many waiting requests as possible, in order. Must be called while holding the
+	 * monitor of this LockManager.
+	 */
+	private void grant() {
+		//Keys of earlier requests that are still waiting. Later requests may not take these.
+		Set<String> blocked = new HashSet<String>();
+		for (Iterator<Request> it = waiting.iterator(); it.hasNext();) {
+			Request r = it.next();
+			if (worldIsLocked) {
+				return;
+			}
+			if (r.isWorld()) {
+				if (locked.isEmpty() && blocked.isEmpty()) {
+					worldIsLocked = true;
+					it.remove();
+					signal(r);
+				}
+				//Either way nothing after this request can be granted.
+				return;
+			} else if (canLock(r.keys, blocked)) {
+				locked.addAll(Arrays.asList(r.keys));
+				it.remove();
+				signal(r);
+			} else {
+				blocked.addAll(Arrays.asList(r.keys));
+			}
 		}
-		notify();
 	}
 
-	private boolean canLock(String[] keys) {
-		if (worldIsLocked) {
-			return false;
+	private void signal(Request r) {
+		synchronized (r) {
+			r.granted = true;
+			r.notify();
 		}
+	}
+
+	private boolean canLock(String[] keys, Set<String> blocked) {
 		for (String k : keys) {
-			if (locked.contains(k)) {
+			if (locked.contains(k) || blocked.contains(k)) {
 				return false;
 			}
 		}
 		return true;
 	}
 
-	/**
-	 * Lock 'the world'. This lock will only succeed if no other locks are currently held and
-	 * once this lock succeeds it needs to be released before any other locks can be obtained.
-	 */
-	public synchronized Lock lockAll() {
-		while (worldIsLocked || !locked.isEmpty()) {
-			try {
-				wait();
-			} catch (InterruptedException e) {
+	private synchronized void release(Request request) {
+		if (request.isWorld()) {
+			debug("Releasing lock: *");
+			worldIsLocked = false;
+		} else {
+			for (String k : request.keys) {
+				debug("   "+k);
+				locked.remove(k);
 			}
 		}
-		worldIsLocked = true;
+		grant();
+	}
+
+	private Lock newLock(final Request request) {
 		return new Lock() {
+			private boolean released = false;
 			@Override
 			public void release() {
-				unlockTheWorld();
+				synchronized (this) {
+					if (released) {
+						return;
+					}
+					released = true;
+				}
+				LockManager.this.release(request);
 			}
 			@Override
 			public String toString() {
-				return "*";
+				if (request.isWorld()) {
+					return "*";
+				}
+				StringBuilder buf = new StringBuilder("Lock {\n");
+				for (String string : request.keys) {
+					buf.append(string);
+					buf.append("\n");
+				}
+				buf.append("}");
+				return buf.toString();
 			}
 		};
 	}
 
-	private synchronized void unlockTheWorld() {
-		//debug("Releasing lock: *");
-		worldIsLocked = false;
-		notify();
-	}
-	
 }
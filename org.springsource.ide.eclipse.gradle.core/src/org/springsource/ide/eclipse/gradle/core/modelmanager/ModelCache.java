@@ -0,0 +1,314 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.springsource.ide.eclipse.gradle.core.modelmanager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.gradle.tooling.model.eclipse.HierarchicalEclipseProject;
+
+/**
+ * Keeps track of the models held in the caches of all {@link GradleProjectModelManager}s and
+ * decides which ones to evict to keep their estimated total size within a memory budget.
+ * <p>
+ * Models are evicted in least recently used order. Models built together for a project
+ * hierarchy share a single object graph, so they are evicted together as a group; evicting only
+ * some of them wouldn't actually free any memory. Models of types with the {@link Retention#PINNED}
+ * policy are never evicted.
+ * <p>
+ * This class only does the bookkeeping. The evictions themselves are performed by the
+ * GradleProjectModelManagers. To avoid deadlocks, the project model managers must not call
+ * this class while holding their own locks and vice versa.
+ */
+public class ModelCache {
+
+	private static final boolean DEBUG = false;
+
+	private static void debug(String string) {
+		if (DEBUG) {
+			System.out.println(string);
+		}
+	}
+
+	public enum Retention {
+		/**
+		 * Models are kept until they are replaced or invalidated.
+		 */
+		PINNED,
+		/**
+		 * Models may be evicted when the cache exceeds its budget.
+		 */
+		EVICTABLE
+	}
+
+	public static final long DEFAULT_BUDGET = 128L*1024*1024;
+
+	/**
+	 * A model held in the cache of a project model manager.
+	 */
+	private static class Member {
+		final GradleProjectModelManager owner;
+		final BuildResult<?> result;
+		final long size;
+		Group group;
+
+		Member(GradleProjectModelManager owner, BuildResult<?> result, long size) {
+			this.owner = owner;
+			this.result = result;
+			this.size = size;
+		}
+	}
+
+	/**
+	 * Models sharing an object graph, evicted together.
+	 */
+	private static class Group {
+		final List<Member> members = new ArrayList<Member>();
+		long size = 0;
+	}
+
+	private long budget = DEFAULT_BUDGET;
+	private long size = 0;
+
+	private Map<Class<?>, Retention> retention = new HashMap<Class<?>, Retention>();
+
+	/**
+	 * Evictable groups in least recently used order. Keys are the objects that identify
+	 * groups (see {@link #groupKey(BuildResult)}).
+	 */
+	private LinkedHashMap<Object, Group> lru = new LinkedHashMap<Object, Group>(16, 0.75f, true);
+
+	/**
+	 * All members, keyed by BuildResult.
+	 */
+	private Map<BuildResult<?>, Member> members = new IdentityHashMap<BuildResult<?>, Member>();
+
+	private int evictions = 0;
+
+	public ModelCache() {
+		//Skeletal models are small and needed often (e.g. to determine project hierarchy).
+		retention.put(HierarchicalEclipseProject.class, Retention.PINNED);
+	}
+
+	public synchronized void setBudget(long bytes) {
+		this.budget = bytes;
+	}
+
+	public synchronized long getBudget() {
+		return budget;
+	}
+
+	public synchronized void setRetention(Class<?> type, Retention policy) {
+		retention.put(type, policy);
+	}
+
+	public synchronized Retention getRetention(Class<?> type) {
+		Retention policy = retention.get(type);
+		if (policy!=null) {
+			return policy;
+		}
+		return Retention.EVICTABLE;
+	}
+
+	/**
+	 * Called when a project model manager added a build result to its cache.
+	 *
+	 * @return Build results that should be evicted to keep the cache within budget.
+	 */
+	List<Eviction> added(GradleProjectModelManager owner, BuildResult<?> result) {
+		long estimate = 0;
+		if (result.isSucceeded()) {
+			estimate = ModelSizeEstimator.estimate(result.getModel(), result.getType());
+		}
+		synchronized (this) {
+			if (members.containsKey(result)) {
+				accessed(result);
+				return new ArrayList<Eviction>();
+			}
+			Member member = new Member(owner, result, estimate);
+			members.put(result, member);
+			size += estimate;
+			if (result.isSucceeded() && getRetention(result.getType())==Retention.EVICTABLE) {
+				Object key = groupKey(result);
+				Group group = lru.get(key);
+				if (group==null) {
+					lru.put(key, group = new Group());
+				}
+				group.members.add(member);
+				group.size += estimate;
+				member.group = group;
+			}
+			return evictions(key(result));
+		}
+	}
+
+	/**
+	 * Called when a model was retrieved from the cache of a project model manager.
+	 */
+	synchronized void accessed(BuildResult<?> result) {
+		Member member = members.get(result);
+		if (member!=null && member.group!=null) {
+			//Touch it so it becomes most recently used.
+			lru.get(groupKey(result));
+		}
+	}
+
+	/**
+	 * Called when a project model manager removed a build result from its cache (e.g. because
+	 * it was replaced by a newer one, or it was evicted).
+	 */
+	synchronized void removed(BuildResult<?> result) {
+		Member member = members.remove(result);
+		if (member!=null) {
+			size -= member.size;
+			Group group = member.group;
+			if (group!=null) {
+				group.members.remove(member);
+				group.size -= member.size;
+				if (group.members.isEmpty()) {
+					lru.remove(groupKey(result));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Forget about everything. Called when all the project model managers are discarded.
+	 */
+	synchronized void clear() {
+		lru.clear();
+		members.clear();
+		size = 0;
+	}
+
+	/**
+	 * Forget about all the models of a given project model manager.
+	 */
+	synchronized void clear(GradleProjectModelManager owner) {
+		for (Member member : new ArrayList<Member>(members.values())) {
+			if (member.owner==owner) {
+				removed(member.result);
+			}
+		}
+	}
+
+	/**
+	 * A build result that should be evicted from a project model manager's cache.
+	 */
+	static class Eviction {
+		final GradleProjectModelManager owner;
+		final BuildResult<?> result;
+		Eviction(GradleProjectModelManager owner, BuildResult<?> result) {
+			this.owner = owner;
+			this.result = result;
+		}
+	}
+
+	/**
+	 * Determine the groups to evict to get back within budget. The group with the given key
+	 * (i.e. the one that was just added) is never evicted. The evicted groups are forgotten
+	 * right away, the caller is responsible for actually evicting them.
+	 */
+	private List<Eviction> evictions(Object keep) {
+		List<Eviction> victims = new ArrayList<Eviction>();
+		for (Iterator<Entry<Object, Group>> it = lru.entrySet().iterator(); size>budget && it.hasNext();) {
+			Entry<Object, Group> e = it.next();
+			if (!e.getKey().equals(keep)) {
+				Group group = e.getValue();
+				debug("Evicting "+group.members.size()+" models ("+group.size+" bytes)");
+				it.remove();
+				size -= group.size;
+				for (Member member : group.members) {
+					members.remove(member.result);
+					victims.add(new Eviction(member.owner, member.result));
+				}
+			}
+		}
+		evictions += victims.size();
+		return victims;
+	}
+
+	/**
+	 * @return Estimated size, in bytes, of all cached models.
+	 */
+	public synchronized long getSize() {
+		return size;
+	}
+
+	/**
+	 * @return Estimated size, in bytes, of the cached models of each type.
+	 */
+	public synchronized Map<Class<?>, Long> getSizePerType() {
+		Map<Class<?>, Long> sizes = new HashMap<Class<?>, Long>();
+		for (Member member : members.values()) {
+			Class<?> type = member.result.getType();
+			Long current = sizes.get(type);
+			sizes.put(type, (current==null ? 0 : current) + member.size);
+		}
+		return sizes;
+	}
+
+	/**
+	 * @return Number of models evicted so far.
+	 */
+	public synchronized int getEvictionCount() {
+		return evictions;
+	}
+
+	private static Object key(BuildResult<?> result) {
+		if (result.isSucceeded()) {
+			return groupKey(result);
+		}
+		return result;
+	}
+
+	/**
+	 * Models of a project hierarchy are grouped by their root model, other models
+	 * are each in a group of their own.
+	 */
+	private static Object groupKey(BuildResult<?> result) {
+		Object model = result.getModel();
+		if (model instanceof HierarchicalEclipseProject) {
+			HierarchicalEclipseProject project = (HierarchicalEclipseProject) model;
+			while (project.getParent()!=null) {
+				project = project.getParent();
+			}
+			return new IdentityKey(project);
+		}
+		return new IdentityKey(result);
+	}
+
+	/**
+	 * Map key that compares objects by identity. Models may implement equals in expensive ways,
+	 * or not at all.
+	 */
+	private static class IdentityKey {
+		private final Object obj;
+		IdentityKey(Object obj) {
+			this.obj = obj;
+		}
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof IdentityKey && ((IdentityKey) other).obj==obj;
+		}
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(obj);
+		}
+	}
+
+}
@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.springsource.ide.eclipse.gradle.core.modelmanager;
+
+import java.util.Map;
+
+/**
+ * Management interface exposing the statistics of a {@link GradleModelManager} over JMX.
+ * Per-type values are keyed by model type name.
+ */
+public interface ModelManagerMXBean {
+
+	Map<String, Long> getCacheHits();
+	Map<String, Long> getCacheMisses();
+	Map<String, Long> getFastFailures();
+	Map<String, Long> getBuilds();
+	Map<String, Long> getBuildFailures();
+	Map<String, Long> getRetries();
+
+	/**
+	 * @return Mean build time in milliseconds.
+	 */
+	Map<String, Double> getMeanBuildTimes();
+
+	/**
+	 * @return 90th percentile of build times in milliseconds.
+	 */
+	Map<String, Long> getBuildTimes90();
+
+	/**
+	 * @return Mean time, in milliseconds, spent waiting for build family locks.
+	 */
+	Map<String, Double> getMeanLockWaitTimes();
+
+	/**
+	 * @return Mean time, in milliseconds, spent waiting for a build slot.
+	 */
+	Map<String, Double> getMeanQueueWaitTimes();
+
+	/**
+	 * @return Estimated memory, in bytes, retained by cached models.
+	 */
+	Map<String, Long> getCacheSizes();
+
+	int getCoalescedRequestCount();
+	int getAvoidedRebuildCount();
+	int getEvictionCount();
+
+	/**
+	 * @return Time, in milliseconds, from the first Gradle classpath container initialization request until
+	 *    all containers requested up to then were initialized from their models. -1 if that didn't happen yet.
+	 */
+	long getTimeToFirstCompile();
+
+	/**
+	 * @return A human readable report of all statistics.
+	 */
+	String dump();
+
+	void resetCounters();
+
+}
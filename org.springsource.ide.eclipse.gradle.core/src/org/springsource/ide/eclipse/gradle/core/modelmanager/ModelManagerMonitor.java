@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.springsource.ide.eclipse.gradle.core.modelmanager;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.springsource.ide.eclipse.gradle.core.modelmanager.ModelStats.TypeStats;
+
+/**
+ * Publishes the statistics of a {@link GradleModelManager} as a JMX MBean.
+ */
+public class ModelManagerMonitor implements ModelManagerMXBean {
+
+	public static final String OBJECT_NAME = "org.springsource.ide.eclipse.gradle:type=ModelManager";
+
+	private final GradleModelManager mgr;
+	private ObjectName registeredAs = null;
+
+	public ModelManagerMonitor(GradleModelManager mgr) {
+		this.mgr = mgr;
+	}
+
+	/**
+	 * Register with the platform MBean server.
+	 */
+	public synchronized void register() throws Exception {
+		if (registeredAs==null) {
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (server.isRegistered(name)) {
+				//Left over from an earlier activation of the bundle.
+				server.unregisterMBean(name);
+			}
+			server.registerMBean(this, name);
+			registeredAs = name;
+		}
+	}
+
+	public synchronized void unregister() throws Exception {
+		if (registeredAs!=null) {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredAs);
+			registeredAs = null;
+		}
+	}
+
+	private abstract class Collector<V> {
+		abstract V get(TypeStats s);
+		Map<String, V> collect() {
+			ModelStats stats = mgr.getStats();
+			Map<String, V> values = new HashMap<String, V>();
+			for (Class<?> type : stats.getTypes()) {
+				values.put(type.getName(), get(stats.get(type)));
+			}
+			return values;
+		}
+	}
+
+	public Map<String, Long> getCacheHits() {
+		return new Collector<Long>() {
+			Long get(TypeStats s) {
+				return s.getCacheHits();
+			}
+		}.collect();
+	}
+
+	public Map<String, Long> getCacheMisses() {
+		return new Collector<Long>() {
+			Long get(TypeStats s) {
+				return s.getCacheMisses();
+			}
+		}.collect();
+	}
+
+	public Map<String, Long> getFastFailures() {
+		return new Collector<Long>() {
+			Long get(TypeStats s) {
+				return s.getFastFailures();
+			}
+		}.collect();
+	}
+
+	public Map<String, Long> getBuilds() {
+		return new Collector<Long>() {
+			Long get(TypeStats s) {
+				return s.getBuilds();
+			}
+		}.collect();
+	}
+
+	public Map<String, Long> getBuildFailures() {
+		return new Collector<Long>() {
+			Long get(TypeStats s) {
+				return s.getBuildFailures();
+			}
+		}.collect();
+	}
+
+	public Map<String, Long> getRetries() {
+		return new Collector<Long>() {
+			Long get(TypeStats s) {
+				return s.getRetries();
+			}
+		}.collect();
+	}
+
+	public Map<String, Double> getMeanBuildTimes() {
+		return new Collector<Double>() {
+			Double get(TypeStats s) {
+				return s.buildTime.getMean();
+			}
+		}.collect();
+	}
+
+	public Map<String, Long> getBuildTimes90() {
+		return new Collector<Long>() {
+			Long get(TypeStats s) {
+				return s.buildTime.getPercentile(90);
+			}
+		}.collect();
+	}
+
+	public Map<String, Double> getMeanLockWaitTimes() {
+		return new Collector<Double>() {
+			Double get(TypeStats s) {
+				return s.lockWait.getMean();
+			}
+		}.collect();
+	}
+
+	public Map<String, Double> getMeanQueueWaitTimes() {
+		return new Collector<Double>() {
+			Double get(TypeStats s) {
+				return s.queueWait.getMean();
+			}
+		}.collect();
+	}
+
+	public Map<String, Long> getCacheSizes() {
+		Map<String, Long> sizes = new HashMap<String, Long>();
+		for (Entry<Class<?>, Long> e : mgr.getEstimatedCacheSizes().entrySet()) {
+			sizes.put(e.getKey().getName(), e.getValue());
+		}
+		return sizes;
+	}
+
+	public int getCoalescedRequestCount() {
+		return mgr.getCoalescedRequestCount();
+	}
+
+	public int getAvoidedRebuildCount() {
+		return mgr.getFingerprintService().getAvoidedRebuildCount();
+	}
+
+	public int getEvictionCount() {
+		return mgr.getEvictionCount();
+	}
+
+	public long getTimeToFirstCompile() {
+		return mgr.getStats().getTimeToFirstCompile();
+	}
+
+	public String dump() {
+		return mgr.dumpStats();
+	}
+
+	public void resetCounters() {
+		mgr.resetStats();
+	}
+
+}
@@ -0,0 +1,354 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.springsource.ide.eclipse.gradle.core.modelmanager;
+
+import java.io.File;
+import java.io.Serializable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.gradle.tooling.model.DomainObjectSet;
+import org.gradle.tooling.model.UnsupportedMethodException;
+
+/**
+ * Serializable projection of a Tooling API model graph.
+ * <p>
+ * Tooling API models are just interfaces, so rather than writing an implementation class for
+ * every model type we record the values returned by all the parameterless getters of the model
+ * interfaces. Values that are models themselves are recorded recursively. Restoring a projection
+ * produces dynamic proxies that implement the same model interfaces and return the recorded values.
+ * Methods for which no value was recorded throw an {@link UnsupportedMethodException}, just like
+ * the Tooling API does for methods not supported by an older Gradle version.
+ */
+class ModelProjection {
+
+	/**
+	 * Projection of a single model object.
+	 */
+	static class Node implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		final Set<String> interfaces = new LinkedHashSet<String>();
+		final Map<String, Object> properties = new HashMap<String, Object>();
+	}
+
+	/**
+	 * Projection of a DomainObjectSet.
+	 */
+	static class NodeSet implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		final List<Object> elements = new ArrayList<Object>();
+	}
+
+	/////////////////////////////////////////////////////////////////////////////////
+	// Capturing
+
+	/**
+	 * Keeps track of already projected models. Needed because model graphs have cycles
+	 * (e.g. parent <-> children).
+	 */
+	private final Map<Object, Node> captured = new IdentityHashMap<Object, Node>();
+
+	/**
+	 * Create a projection of a model, treating it as an instance of a given model interface.
+	 * Calling this method repeatedly on the same ModelProjection instance ensures that
+	 * objects shared between the models are also shared between their projections.
+	 */
+	Node capture(Object model, Class<?> type) {
+		Node node = captured.get(model);
+		if (node==null) {
+			captured.put(model, node = new Node());
+		}
+		if (node.interfaces.add(type.getName())) {
+			for (Method m : getters(type)) {
+				try {
+					Object value = m.invoke(model);
+					Object projected = project(value, m.getReturnType(), m.getGenericReturnType());
+					if (value==null || projected!=null) {
+						node.properties.put(m.getName(), projected);
+					}
+				} catch (InvocationTargetException e) {
+					//Typically an UnsupportedMethodException. Not recording the value
+					// means it will also be unsupported in the restored model.
+				} catch (Exception e) {
+					//Same as above.
+				}
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Find the parameterless getters of a model interface. When a getter is redeclared
+	 * with a covariant return type (e.g. EclipseProject.getParent()) only the most specific
+	 * declaration is returned.
+	 */
+	static Iterable<Method> getters(Class<?> type) {
+		Map<String, Method> getters = new HashMap<String, Method>();
+		for (Method m : type.getMethods()) {
+			if (m.getParameterTypes().length==0 && !m.getReturnType().equals(void.class)) {
+				Method other = getters.get(m.getName());
+				if (other==null || isMoreSpecific(m, other)) {
+					getters.put(m.getName(), m);
+				}
+			}
+		}
+		return getters.values();
+	}
+
+	private static boolean isMoreSpecific(Method m, Method other) {
+		Class<?> type = m.getReturnType();
+		Class<?> otherType = other.getReturnType();
+		if (type.equals(otherType)) {
+			if (DomainObjectSet.class.equals(type)) {
+				Class<?> elementType = getElementType(m.getGenericReturnType());
+				Class<?> otherElementType = getElementType(other.getGenericReturnType());
+				return elementType!=null && otherElementType!=null 
+						&& otherElementType.isAssignableFrom(elementType);
+			}
+			return false;
+		}
+		return otherType.isAssignableFrom(type);
+	}
+
+	/**
+	 * Project a value returned from a model getter. Returns null if the value can not
+	 * be projected.
+	 */
+	private Object project(Object value, Class<?> type, Type genericType) {
+		if (value==null) {
+			return null;
+		} else if (isSimpleValue(type)) {
+			return value;
+		} else if (DomainObjectSet.class.equals(type)) {
+			Class<?> elementType = getElementType(genericType);
+			if (elementType!=null) {
+				NodeSet set = new NodeSet();
+				for (Object e : (DomainObjectSet<?>)value) {
+					Object projected = project(e, elementType, elementType);
+					if (projected==null && e!=null) {
+						return null;
+					}
+					set.elements.add(projected);
+				}
+				return set;
+			}
+		} else if (isModelType(type)) {
+			return capture(value, type);
+		}
+		return null;
+	}
+
+	static boolean isSimpleValue(Class<?> type) {
+		return type.isPrimitive()
+				|| String.class.equals(type)
+				|| File.class.equals(type)
+				|| Boolean.class.equals(type)
+				|| Number.class.isAssignableFrom(type);
+	}
+
+	static boolean isModelType(Class<?> type) {
+		if (type.isInterface()) {
+			String name = type.getName();
+			return name.startsWith("org.gradle.tooling.model.")
+				|| name.startsWith("io.pivotal.tooling.model.");
+		}
+		return false;
+	}
+
+	/**
+	 * Determine the element type of a DomainObjectSet from its generic type.
+	 * E.g. for <code>DomainObjectSet&lt;? extends EclipseSourceDirectory&gt;</code> this
+	 * returns EclipseSourceDirectory.class.
+	 */
+	static Class<?> getElementType(Type genericType) {
+		if (genericType instanceof ParameterizedType) {
+			Type[] args = ((ParameterizedType) genericType).getActualTypeArguments();
+			if (args.length==1) {
+				Type arg = args[0];
+				if (arg instanceof WildcardType) {
+					Type[] bounds = ((WildcardType) arg).getUpperBounds();
+					if (bounds.length==1) {
+						arg = bounds[0];
+					}
+				}
+				if (arg instanceof Class<?>) {
+					return (Class<?>) arg;
+				}
+			}
+		}
+		return null;
+	}
+
+	/////////////////////////////////////////////////////////////////////////////////
+	// Restoring
+
+	private final ClassLoader loader;
+
+	/**
+	 * Keeps track of already restored models, so that sharing and cycles are preserved.
+	 */
+	private final Map<Node, Object> restored = new IdentityHashMap<Node, Object>();
+
+	ModelProjection() {
+		this(null);
+	}
+
+	/**
+	 * @param loader ClassLoader used to find model interfaces when restoring projections.
+	 */
+	ModelProjection(ClassLoader loader) {
+		this.loader = loader;
+	}
+
+	/**
+	 * Create a model object from a projection. Calling this repeatedly on the same ModelProjection
+	 * instance ensures that nodes shared between projections are restored as the same objects.
+	 */
+	synchronized Object restore(Node node) throws ClassNotFoundException {
+		Object model = restored.get(node);
+		if (model==null) {
+			Class<?>[] interfaces = new Class<?>[node.interfaces.size()];
+			int i = 0;
+			for (String name : node.interfaces) {
+				interfaces[i++] = Class.forName(name, false, loader);
+			}
+			model = Proxy.newProxyInstance(loader, interfaces, new ModelHandler(node));
+			restored.put(node, model);
+		}
+		return model;
+	}
+
+	private synchronized Object restoreValue(Object value) throws ClassNotFoundException {
+		if (value instanceof Node) {
+			return restore((Node) value);
+		} else if (value instanceof NodeSet) {
+			List<Object> elements = new ArrayList<Object>(((NodeSet) value).elements.size());
+			for (Object e : ((NodeSet) value).elements) {
+				elements.add(restoreValue(e));
+			}
+			return Proxy.newProxyInstance(loader, new Class<?>[] { DomainObjectSet.class },
+					new DomainObjectSetHandler(Collections.unmodifiableList(elements)));
+		}
+		return value;
+	}
+
+	private class ModelHandler implements InvocationHandler {
+
+		private final Node node;
+		/**
+		 * Restored property values. Values are restored lazily because restoring them eagerly
+		 * would restore the entire model graph as soon as a single model is restored.
+		 */
+		private Map<String, Object> values = new HashMap<String, Object>();
+
+		ModelHandler(Node node) {
+			this.node = node;
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (method.getDeclaringClass().equals(Object.class)) {
+				return invokeObjectMethod(proxy, method, args);
+			}
+			if ((args==null || args.length==0) && node.properties.containsKey(name)) {
+				synchronized (this) {
+					if (!values.containsKey(name)) {
+						values.put(name, restoreValue(node.properties.get(name)));
+					}
+					return values.get(name);
+				}
+			}
+			throw new UnsupportedMethodException("Method "+method.getDeclaringClass().getSimpleName()+"."+name+" not available from persisted model");
+		}
+
+		@Override
+		public String toString() {
+			Object name = node.properties.get("getName");
+			return "Persisted"+node.interfaces+"("+name+")";
+		}
+	}
+
+	/**
+	 * Restored DomainObjectSets behave like unmodifiable sets. All the {@link Set} methods, including
+	 * equals and hashCode, are handled by an unmodifiable {@link LinkedHashSet} of the elements.
+	 */
+	private static class DomainObjectSetHandler implements InvocationHandler {
+
+		private final Set<Object> elements;
+		private final List<Object> all;
+
+		DomainObjectSetHandler(List<Object> elements) {
+			this.elements = Collections.unmodifiableSet(new LinkedHashSet<Object>(elements));
+			this.all = Collections.unmodifiableList(new ArrayList<Object>(this.elements));
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			Method setMethod = getSetMethod(method);
+			if (setMethod!=null) {
+				try {
+					return setMethod.invoke(elements, args);
+				} catch (InvocationTargetException e) {
+					throw e.getCause();
+				}
+			} else if (name.equals("getAll")) {
+				return all;
+			} else if (name.equals("getAt")) {
+				return all.get((Integer)args[0]);
+			}
+			throw new UnsupportedMethodException("Method DomainObjectSet."+name+" not available from persisted model");
+		}
+
+		/**
+		 * @return The {@link Set} method corresponding to a method of the proxy, or null. Older versions
+		 * of DomainObjectSet don't extend Set, but redeclare some of its methods (e.g. size).
+		 */
+		private static Method getSetMethod(Method method) {
+			if (method.getDeclaringClass().isAssignableFrom(Set.class)) {
+				//Set, Collection, Iterable and Object methods
+				return method;
+			}
+			try {
+				return Set.class.getMethod(method.getName(), method.getParameterTypes());
+			} catch (NoSuchMethodException e) {
+				return null;
+			}
+		}
+	}
+
+	private static Object invokeObjectMethod(Object proxy, Method method, Object[] args) {
+		String name = method.getName();
+		if (name.equals("equals")) {
+			return proxy==args[0];
+		} else if (name.equals("hashCode")) {
+			return System.identityHashCode(proxy);
+		} else {
+			//toString
+			return Proxy.getInvocationHandler(proxy).toString();
+		}
+	}
+
+}
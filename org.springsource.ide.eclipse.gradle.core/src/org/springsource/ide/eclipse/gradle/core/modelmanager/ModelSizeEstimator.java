@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.springsource.ide.eclipse.gradle.core.modelmanager;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.gradle.tooling.model.DomainObjectSet;
+import org.gradle.tooling.model.HierarchicalElement;
+import org.gradle.tooling.model.gradle.BasicGradleProject;
+
+/**
+ * Estimates how much memory a model retains, by walking the values returned by its getters
+ * (see {@link ModelProjection}). The estimate is rough, it is only meant to compare models
+ * with one another and with a memory budget.
+ * <p>
+ * Links to projects (e.g. parent, children, project dependencies, the Gradle project of an
+ * Eclipse project or of a task) are not followed, so the estimate for a model only includes
+ * the part of a model graph that belongs to a single project.
+ */
+class ModelSizeEstimator {
+
+	private static final int OBJECT_SIZE = 32;
+	private static final int REFERENCE_SIZE = 8;
+	private static final int STRING_SIZE = 40;
+
+	private final Map<Object, Object> visited = new IdentityHashMap<Object, Object>();
+	private long size = 0;
+
+	/**
+	 * @return Estimated size, in bytes, of a model of a given type.
+	 */
+	static long estimate(Object model, Class<?> type) {
+		ModelSizeEstimator estimator = new ModelSizeEstimator();
+		estimator.visitModel(model, type);
+		return estimator.size;
+	}
+
+	private void visitModel(Object model, Class<?> type) {
+		if (visited.put(model, model)!=null) {
+			return;
+		}
+		size += OBJECT_SIZE;
+		for (Method m : ModelProjection.getters(type)) {
+			size += REFERENCE_SIZE;
+			try {
+				visitValue(m.invoke(model), m.getReturnType(), ModelProjection.getElementType(m.getGenericReturnType()));
+			} catch (Exception e) {
+				//Typically an UnsupportedMethodException, means there's no value.
+			}
+		}
+	}
+
+	private void visitValue(Object value, Class<?> type, Class<?> elementType) {
+		if (value==null) {
+			return;
+		} else if (value instanceof String) {
+			size += STRING_SIZE + 2*((String) value).length();
+		} else if (value instanceof File) {
+			size += OBJECT_SIZE + STRING_SIZE + 2*((File) value).getPath().length();
+		} else if (ModelProjection.isSimpleValue(type)) {
+			//Primitives are accounted for by the reference.
+		} else if (DomainObjectSet.class.equals(type)) {
+			if (visited.put(value, value)==null) {
+				DomainObjectSet<?> set = (DomainObjectSet<?>) value;
+				size += OBJECT_SIZE + REFERENCE_SIZE*set.size();
+				if (elementType!=null) {
+					for (Object e : set) {
+						visitValue(e, elementType, null);
+					}
+				}
+			}
+		} else if (ModelProjection.isModelType(type) && !isProjectType(type)) {
+			visitModel(value, type);
+		}
+	}
+
+	/**
+	 * Eclipse projects and Gradle projects are hierarchical elements.
+	 */
+	private static boolean isProjectType(Class<?> type) {
+		return HierarchicalElement.class.isAssignableFrom(type)
+			|| BasicGradleProject.class.isAssignableFrom(type);
+	}
+
+}
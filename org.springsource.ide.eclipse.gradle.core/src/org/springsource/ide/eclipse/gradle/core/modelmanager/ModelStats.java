@@ -0,0 +1,213 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.springsource.ide.eclipse.gradle.core.modelmanager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counters and latency histograms for model requests and builds, per model type.
+ */
+public class ModelStats {
+
+	/**
+	 * Statistics for a single model type.
+	 */
+	public static class TypeStats {
+		private long cacheHits = 0;
+		private long cacheMisses = 0;
+		private long fastFailures = 0;
+		private long builds = 0;
+		private long buildFailures = 0;
+		private long retries = 0;
+
+		/**
+		 * Time spent waiting for build family locks.
+		 */
+		public final LatencyHistogram lockWait = new LatencyHistogram();
+
+		/**
+		 * Time spent waiting for a build slot (see {@link ConcurrentModelBuilder}).
+		 */
+		public final LatencyHistogram queueWait = new LatencyHistogram();
+
+		/**
+		 * Time spent building models, including failed builds.
+		 */
+		public final LatencyHistogram buildTime = new LatencyHistogram();
+
+		/**
+		 * @return Number of requests answered from the in-memory cache or persistent store.
+		 */
+		public synchronized long getCacheHits() {
+			return cacheHits;
+		}
+
+		/**
+		 * @return Number of requests that found no model in the cache.
+		 */
+		public synchronized long getCacheMisses() {
+			return cacheMisses;
+		}
+
+		/**
+		 * @return Number of requests that failed with a {@link org.springsource.ide.eclipse.gradle.core.classpathcontainer.FastOperationFailedException}.
+		 */
+		public synchronized long getFastFailures() {
+			return fastFailures;
+		}
+
+		public synchronized long getBuilds() {
+			return builds;
+		}
+
+		public synchronized long getBuildFailures() {
+			return buildFailures;
+		}
+
+		/**
+		 * @return Number of builds retried because of an {@link org.springsource.ide.eclipse.gradle.core.InconsistenProjectHierarchyException}.
+		 */
+		public synchronized long getRetries() {
+			return retries;
+		}
+
+		private synchronized void reset() {
+			cacheHits = cacheMisses = fastFailures = builds = buildFailures = retries = 0;
+			lockWait.reset();
+			queueWait.reset();
+			buildTime.reset();
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder buf = new StringBuilder();
+			synchronized (this) {
+				buf.append("  cache: hits="+cacheHits+" misses="+cacheMisses+" fastFailures="+fastFailures+"\n");
+				buf.append("  builds: "+builds+" failed="+buildFailures+" retried="+retries+"\n");
+			}
+			buf.append("  lock wait:  "+lockWait+"\n");
+			buf.append("  queue wait: "+queueWait+"\n");
+			buf.append("  build time: "+buildTime+"\n");
+			return buf.toString();
+		}
+	}
+
+	private Map<Class<?>, TypeStats> stats = new HashMap<Class<?>, TypeStats>();
+
+	private long timeToFirstCompile = -1;
+
+	public synchronized TypeStats get(Class<?> type) {
+		TypeStats s = stats.get(type);
+		if (s==null) {
+			stats.put(type, s = new TypeStats());
+		}
+		return s;
+	}
+
+	/**
+	 * @return Model types for which something was recorded, sorted by name.
+	 */
+	public synchronized List<Class<?>> getTypes() {
+		List<Class<?>> types = new ArrayList<Class<?>>(stats.keySet());
+		Collections.sort(types, new Comparator<Class<?>>() {
+			public int compare(Class<?> a, Class<?> b) {
+				return a.getName().compareTo(b.getName());
+			}
+		});
+		return types;
+	}
+
+	public void cacheHit(Class<?> type) {
+		TypeStats s = get(type);
+		synchronized (s) {
+			s.cacheHits++;
+		}
+	}
+
+	public void cacheMiss(Class<?> type) {
+		TypeStats s = get(type);
+		synchronized (s) {
+			s.cacheMisses++;
+		}
+	}
+
+	public void fastFailure(Class<?> type) {
+		TypeStats s = get(type);
+		synchronized (s) {
+			s.fastFailures++;
+		}
+	}
+
+	public void retry(Class<?> type) {
+		TypeStats s = get(type);
+		synchronized (s) {
+			s.retries++;
+		}
+	}
+
+	public void built(Class<?> type, long millis, boolean failed) {
+		TypeStats s = get(type);
+		synchronized (s) {
+			s.builds++;
+			if (failed) {
+				s.buildFailures++;
+			}
+		}
+		s.buildTime.record(millis);
+	}
+
+	public void lockWait(Class<?> type, long millis) {
+		get(type).lockWait.record(millis);
+	}
+
+	public void queueWait(Class<?> type, long millis) {
+		get(type).queueWait.record(millis);
+	}
+
+	/**
+	 * Records the time from the first Gradle classpath container initialization request until all
+	 * containers requested up to then were initialized from their models. Only the first value is kept.
+	 */
+	public synchronized void timeToFirstCompile(long millis) {
+		if (timeToFirstCompile<0) {
+			timeToFirstCompile = millis;
+		}
+	}
+
+	/**
+	 * @return The recorded time to first compile in milliseconds, or -1 if none was recorded yet.
+	 */
+	public synchronized long getTimeToFirstCompile() {
+		return timeToFirstCompile;
+	}
+
+	public synchronized void resetCounters() {
+		for (TypeStats s : stats.values()) {
+			s.reset();
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder();
+		for (Class<?> type : getTypes()) {
+			buf.append(type.getName()+"\n");
+			buf.append(get(type));
+		}
+		return buf.toString();
+	}
+
+}
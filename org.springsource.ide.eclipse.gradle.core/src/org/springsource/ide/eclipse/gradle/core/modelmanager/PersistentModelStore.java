@@ -0,0 +1,345 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.springsource.ide.eclipse.gradle.core.modelmanager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.jobs.Job;
+import org.gradle.tooling.model.eclipse.HierarchicalEclipseProject;
+import org.springsource.ide.eclipse.gradle.core.GradleCore;
+import org.springsource.ide.eclipse.gradle.core.GradleProject;
+import org.springsource.ide.eclipse.gradle.core.util.GradleRunnable;
+
+/**
+ * Stores models on disk so that they survive restarts of Eclipse. Only models that are
+ * subtypes of {@link HierarchicalEclipseProject} are stored. Models for all the projects
+ * in a build family are stored together in a single file, keyed by the root project
+ * and the model type. Each file also records a {@link BuildFingerprint} of the build
+ * so that models whose build inputs have changed since they were stored can be detected.
+ */
+public class PersistentModelStore {
+
+	private static final boolean DEBUG = false;
+
+	private static void debug(String string) {
+		if (DEBUG) {
+			System.out.println(string);
+		}
+	}
+
+	/**
+	 * Must be incremented whenever the file format changes. Files with a different
+	 * version are ignored.
+	 */
+	private static final int FORMAT_VERSION = 2;
+
+	private static final String EXTENSION = ".model";
+
+	/**
+	 * Models read back from the store.
+	 */
+	public static class Models<T> {
+		private final File root;
+		private final Map<File, T> models;
+		private final String fingerprint;
+		private final boolean stale;
+		private boolean reloaded = false;
+
+		private Models(File root, Map<File, T> models, String fingerprint, boolean stale) {
+			this.root = root;
+			this.models = models;
+			this.fingerprint = fingerprint;
+			this.stale = stale;
+		}
+
+		/**
+		 * @return Location of the root project of the build family the models belong to.
+		 */
+		public File getRoot() {
+			return root;
+		}
+
+		/**
+		 * @return The current fingerprint of the build.
+		 */
+		public String getFingerprint() {
+			return fingerprint;
+		}
+
+		/**
+		 * @return Models keyed by project location.
+		 */
+		public Map<File, T> getModels() {
+			return models;
+		}
+
+		/**
+		 * @return true if build inputs have changed since the models were stored.
+		 */
+		public boolean isStale() {
+			return stale;
+		}
+
+		/**
+		 * @return true if the models were loaded before, and are loaded again because they
+		 * were evicted from the in-memory cache.
+		 */
+		public boolean isReloaded() {
+			return reloaded;
+		}
+	}
+
+	private final File storeDir;
+
+	/**
+	 * Files that we already tried to load. Each file is only loaded once per session, after
+	 * that the models are in the in-memory cache.
+	 */
+	private Set<File> loaded = new HashSet<File>();
+
+	/**
+	 * Files that may be loaded again, because the models loaded from them were evicted from
+	 * the in-memory cache.
+	 */
+	private Set<File> reloadable = new HashSet<File>();
+
+	public PersistentModelStore(File storeDir) {
+		this.storeDir = storeDir;
+	}
+
+	public boolean canPersist(Class<?> type) {
+		return type.isInterface() && HierarchicalEclipseProject.class.isAssignableFrom(type);
+	}
+
+	/**
+	 * Load models from the store. Returns null if there is nothing stored for the given project and type,
+	 * or if the stored models where already loaded before.
+	 */
+	public <T> Models<T> load(GradleProject project, Class<T> type) {
+		if (!canPersist(type)) {
+			return null;
+		}
+		File root = project.getProjectPreferences().getRootProjectLocation();
+		if (root==null) {
+			root = project.getLocation();
+		}
+		File file = getFile(root, type);
+		boolean reload;
+		synchronized (this) {
+			reload = reloadable.remove(file);
+			if (!(loaded.add(file) || reload) || !file.exists()) {
+				return null;
+			}
+		}
+		try {
+			Models<T> models = read(file, root, type);
+			if (models!=null) {
+				models.reloaded = reload;
+			}
+			return models;
+		} catch (Exception e) {
+			//Corrupt or incompatible file, can't use it.
+			debug("Failed to read "+file+": "+e);
+			file.delete();
+			return null;
+		}
+	}
+
+	/**
+	 * Allow models of a given type to be loaded again for the build family of a given project. This
+	 * is called when models are evicted from the in-memory cache, so they can be restored
+	 * without a build.
+	 */
+	public void allowReload(GradleProject project, Class<?> type) {
+		if (!canPersist(type)) {
+			return;
+		}
+		File root = project.getProjectPreferences().getRootProjectLocation();
+		if (root==null) {
+			root = project.getLocation();
+		}
+		synchronized (this) {
+			reloadable.add(getFile(root, type));
+		}
+	}
+
+	/**
+	 * Store the models produced by a build, in the background.
+	 */
+	public <T> void save(final Class<T> type, List<ProjectBuildResult<T>> results) {
+		if (!canPersist(type)) {
+			return;
+		}
+		final Map<File, T> models = new HashMap<File, T>();
+		for (ProjectBuildResult<T> r : results) {
+			if (r.getResult().isSucceeded()) {
+				models.put(r.getProject().getLocation(), r.getResult().getModel());
+			}
+		}
+		if (models.isEmpty()) {
+			return;
+		}
+		Job job = new GradleRunnable("Save "+type.getSimpleName()+" models") {
+			@Override
+			public void doit(IProgressMonitor mon) throws Exception {
+				File root = getRoot(models.values().iterator().next());
+				if (root!=null) {
+					write(getFile(root, type), root, type, models);
+				}
+			}
+		}.asJob();
+		job.setSystem(true);
+		job.schedule();
+	}
+
+	/**
+	 * Delete all stored models.
+	 */
+	public synchronized void invalidate() {
+		File[] files = storeDir.listFiles();
+		if (files!=null) {
+			for (File file : files) {
+				if (file.getName().endsWith(EXTENSION)) {
+					file.delete();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Delete stored models of the build family a given project belongs to.
+	 */
+	public synchronized void invalidate(GradleProject project) {
+		File root = project.getProjectPreferences().getRootProjectLocation();
+		invalidateRoot(project.getLocation());
+		if (root!=null) {
+			invalidateRoot(root);
+		}
+	}
+
+	private void invalidateRoot(File root) {
+		final String prefix = keyFor(root)+"-";
+		File[] files = storeDir.listFiles();
+		if (files!=null) {
+			for (File file : files) {
+				if (file.getName().startsWith(prefix)) {
+					file.delete();
+				}
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> Models<T> read(File file, File root, Class<T> type) throws IOException, ClassNotFoundException {
+		ObjectInputStream in = new ObjectInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(file))));
+		try {
+			if (in.readInt()!=FORMAT_VERSION
+					|| !type.getName().equals(in.readUTF())
+					|| !root.toString().equals(in.readUTF())) {
+				return null;
+			}
+			String fingerprint = in.readUTF();
+			Map<String, ModelProjection.Node> nodes = (Map<String, ModelProjection.Node>) in.readObject();
+			ModelProjection projection = new ModelProjection(type.getClassLoader());
+			Map<File, T> models = new HashMap<File, T>();
+			for (Entry<String, ModelProjection.Node> e : nodes.entrySet()) {
+				File loc = new File(e.getKey());
+				if (loc.isDirectory()) {
+					models.put(loc, type.cast(projection.restore(e.getValue())));
+				}
+			}
+			String current = BuildFingerprint.compute(root);
+			boolean stale = !fingerprint.equals(current);
+			debug("Loaded "+models.size()+" models from "+file+(stale?" (stale)":""));
+			return new Models<T>(root, models, current, stale);
+		} finally {
+			in.close();
+		}
+	}
+
+	private synchronized <T> void write(File file, File root, Class<T> type, Map<File, T> models) throws IOException {
+		ModelProjection projection = new ModelProjection();
+		HashMap<String, ModelProjection.Node> nodes = new HashMap<String, ModelProjection.Node>();
+		for (Entry<File, T> e : models.entrySet()) {
+			nodes.put(e.getKey().toString(), projection.capture(e.getValue(), type));
+		}
+		storeDir.mkdirs();
+		File tmp = new File(file.getParentFile(), file.getName()+".tmp");
+		ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tmp))));
+		try {
+			out.writeInt(FORMAT_VERSION);
+			out.writeUTF(type.getName());
+			out.writeUTF(root.toString());
+			out.writeUTF(BuildFingerprint.compute(root));
+			out.writeObject(nodes);
+		} finally {
+			out.close();
+		}
+		file.delete();
+		if (!tmp.renameTo(file)) {
+			tmp.delete();
+			GradleCore.log("Couldn't save models to "+file);
+		}
+		debug("Saved "+nodes.size()+" models to "+file);
+	}
+
+	/**
+	 * Determine the location of the root project from one of the models in a family.
+	 */
+	private static File getRoot(Object model) {
+		HierarchicalEclipseProject project = (HierarchicalEclipseProject) model;
+		while (project.getParent()!=null) {
+			project = project.getParent();
+		}
+		return project.getProjectDirectory();
+	}
+
+	private File getFile(File root, Class<?> type) {
+		return new File(storeDir, keyFor(root)+"-"+type.getName()+EXTENSION);
+	}
+
+	private static String keyFor(File root) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("MD5");
+			byte[] bytes = digest.digest(root.toString().getBytes("UTF-8"));
+			StringBuilder key = new StringBuilder();
+			for (int i = 0; i < 8; i++) {
+				key.append(Character.forDigit((bytes[i] >> 4) & 0xF, 16));
+				key.append(Character.forDigit(bytes[i] & 0xF, 16));
+			}
+			return root.getName()+"-"+key;
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -17,9 +17,11 @@ import java.net.URI;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.SubProgressMonitor;
+import org.gradle.tooling.BuildAction;
+import org.gradle.tooling.BuildActionExecuter;
 import org.gradle.tooling.CancellationToken;
 import org.gradle.tooling.GradleConnectionException;
-import org.gradle.tooling.GradleConnector;
+import org.gradle.tooling.LongRunningOperation;
 import org.gradle.tooling.ModelBuilder;
 import org.gradle.tooling.ProgressEvent;
 import org.gradle.tooling.ProgressListener;
@@ -37,34 +39,84 @@ public class ToolinApiUtils {
 	
 	private static final boolean DEBUG = false;
 
+	private static final ToolingApiConnectionPool connectionPool = new ToolingApiConnectionPool();
+
 	private static void debug(String string) {
 		if (DEBUG) {
 			System.out.println(string);
 		}
 	}
 	
-	public static <T> T buildModel(GradleProject project, Class<T> requiredType, final IProgressMonitor monitor) throws CoreException {
-		final String jobName = jobName(project, requiredType);
+	/**
+	 * A Tooling API operation that produces a result, e.g. building a model or executing a BuildAction.
+	 */
+	private static abstract class Operation<T> {
+		/**
+		 * Create the operation. It will be further configured by the caller.
+		 */
+		abstract LongRunningOperation create(ProjectConnection connection);
+		/**
+		 * Execute the operation created earlier, blocking until its result is available.
+		 */
+		abstract T get();
+	}
+
+	public static <T> T buildModel(GradleProject project, final Class<T> requiredType, final IProgressMonitor monitor) throws CoreException {
+		return buildModel(project, requiredType, new String[0], monitor);
+	}
+
+	/**
+	 * Build a model, passing some extra arguments to Gradle. Used for models that are parameterized, e.g. with
+	 * project properties, since the Tooling API offers no other way to pass parameters to a model builder.
+	 */
+	public static <T> T buildModel(GradleProject project, final Class<T> requiredType, String[] arguments, final IProgressMonitor monitor) throws CoreException {
+		return execute(project, jobName(project, requiredType), "Building "+requiredType.getSimpleName()+" Gradle Model", arguments, new Operation<T>() {
+			ModelBuilder<T> builder;
+			LongRunningOperation create(ProjectConnection connection) {
+				return builder = connection.model(requiredType);
+			}
+			T get() {
+				return builder.get();
+			}
+		}, monitor);
+	}
+
+	/**
+	 * Execute a BuildAction inside the Gradle build process of a given project.
+	 */
+	public static <T> T runBuildAction(GradleProject project, final BuildAction<T> action, final IProgressMonitor monitor) throws CoreException {
+		String name = action.getClass().getSimpleName();
+		return execute(project, "Run '"+name+"' for '"+project.getDisplayName(), "Running "+name, new String[0], new Operation<T>() {
+			BuildActionExecuter<T> executer;
+			LongRunningOperation create(ProjectConnection connection) {
+				return executer = connection.action(action);
+			}
+			T get() {
+				return executer.run();
+			}
+		}, monitor);
+	}
+
+	private static <T> T execute(GradleProject project, String jobName, String consoleName, String[] arguments, Operation<T> op, final IProgressMonitor monitor) throws CoreException {
 		SystemPropertyCleaner.clean();
 		File projectLoc = project.getLocation();
 		final int totalWork = 10000;
 		monitor.beginTask(jobName, totalWork+100);
 		ProjectConnection connection = null;
-		final Console console = ConsoleUtil.getConsole("Building "+requiredType.getSimpleName()+" Gradle Model '"+projectLoc+"'");
+		final Console console = ConsoleUtil.getConsole(consoleName+" '"+projectLoc+"'");
 		try {
 			connection = getGradleConnector(project, new SubProgressMonitor(monitor, 100));
 
-			// Load the Eclipse model for the project
 			monitor.subTask("Loading model");
 			
-			ModelBuilder<T> builder = connection.model(requiredType);
-			project.configureOperation(builder, null);
-			builder.setStandardOutput(console.out);
-			builder.setStandardError(console.err);
+			LongRunningOperation operation = op.create(connection);
+			project.configureOperation(operation, null, arguments);
+			operation.setStandardOutput(console.out);
+			operation.setStandardError(console.err);
 			CancellationToken cancellationToken = GradleOpearionProgressMonitor
 					.findCancellationToken(monitor);
 			if (cancellationToken != null) {
-				builder.withCancellationToken(cancellationToken);
+				operation.withCancellationToken(cancellationToken);
 				/*
 				 * Hack to print something in the console right away to give
 				 * user a heads up that cancel is pending
@@ -85,7 +137,7 @@ public class ToolinApiUtils {
 							});
 				}
 			}
-			builder.addProgressListener(new ProgressListener() {
+			operation.addProgressListener(new ProgressListener() {
 				
 				int remainingWork = totalWork;
 				
@@ -100,7 +152,7 @@ public class ToolinApiUtils {
 				}
 
 			});
-			T model = builder.get();  // blocks until the model is available
+			T model = op.get();  // blocks until the model is available
 			return model;
 		} catch (GradleConnectionException e) {
 			throw e;
@@ -108,9 +160,7 @@ public class ToolinApiUtils {
 			throw ExceptionUtil.coreException(e);
 		} finally {
 			monitor.done();
-			if (connection!=null) {
-				connection.close();
-			}
+			releaseConnection(connection);
 			if (console!=null) {
 				console.close();
 			}
@@ -121,38 +171,12 @@ public class ToolinApiUtils {
 		return GradleCore.getInstance().getPreferences().getDistribution();
 	}
 	
-	private static ProjectConnection getGradleConnector(File projectLoc, URI distributionPref, File gradleUserHomePref, IProgressMonitor monitor) {
-		monitor.beginTask("Connection to Gradle", 1);
-		try {
-			GradleConnector connector = GradleConnector.newConnector();
-			if (gradleUserHomePref!=null) {
-				connector.useGradleUserHomeDir(gradleUserHomePref);
-			}
-			// Configure the connector and create the connection
-			if (distributionPref!=null) {
-				boolean distroSet = false;
-				if ("file".equals(distributionPref.getScheme())) {
-					File maybeFolder = new File(distributionPref);
-					if (maybeFolder.isDirectory()) {
-						connector.useInstallation(maybeFolder);
-						distroSet = true;
-					}
-				}
-				if (!distroSet) {
-					connector.useDistribution(distributionPref);
-				}
-			}
-			monitor.subTask("Creating connector"); 
-			connector.forProjectDirectory(projectLoc);
-			return connector.connect();
-		} finally {
-			monitor.done();
-		}
-	}
-	
 	/**
 	 * Tries to connect to gradle, using the distrubution set by the preferences page. If this fails and the prefs page wasn't
 	 * actually set, then we try to fall back on the distribution zip that's packaged up into the core plugin.
+	 * <p>
+	 * The connection is obtained from a pool and may be shared with other operations. Clients
+	 * must call {@link #releaseConnection(ProjectConnection)} when done with it instead of closing it.
 	 */
 	public static ProjectConnection getGradleConnector(GradleProject project, IProgressMonitor monitor) throws CoreException {
 		monitor.beginTask("Connecting to Gradle", 1);
@@ -162,7 +186,7 @@ public class ToolinApiUtils {
 			URI distribution = getDistributionPref();
 			File gradleUserHome = getGradleUserHomePref();
 			try {
-				connection = getGradleConnector(projectLoc, distribution, gradleUserHome, new SubProgressMonitor(monitor, 1));
+				connection = connectionPool.acquire(projectLoc, distribution, gradleUserHome, new SubProgressMonitor(monitor, 1));
 				return connection;
 			} catch (Exception e) {
 //				if (distribution==null) {
@@ -182,6 +206,19 @@ public class ToolinApiUtils {
 		}
 	}
 	
+	/**
+	 * Hand back a connection obtained from {@link #getGradleConnector(GradleProject, IProgressMonitor)}.
+	 */
+	public static void releaseConnection(ProjectConnection connection) {
+		if (connection!=null) {
+			connectionPool.release(connection);
+		}
+	}
+
+	public static ToolingApiConnectionPool getConnectionPool() {
+		return connectionPool;
+	}
+
 	private static File getGradleUserHomePref() {
 		return GradleCore.getInstance().getPreferences().getGradleUserHome();
 	}
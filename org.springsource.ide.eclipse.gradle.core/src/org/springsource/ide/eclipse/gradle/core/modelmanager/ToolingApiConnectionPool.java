@@ -0,0 +1,343 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.springsource.ide.eclipse.gradle.core.modelmanager;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.gradle.tooling.GradleConnector;
+import org.gradle.tooling.ProjectConnection;
+import org.springsource.ide.eclipse.gradle.core.GradleCore;
+import org.springsource.ide.eclipse.gradle.core.util.ObjectUtil;
+
+/**
+ * Keeps Tooling API {@link ProjectConnection}s open so that they can be reused by subsequent
+ * model builds and task executions, rather than paying the cost of connecting to Gradle
+ * for every single operation.
+ * <p>
+ * Connections are keyed by the project directory they connect to, the Gradle distribution
+ * and the Gradle user home. A ProjectConnection is thread-safe, so a single pooled connection
+ * may be shared by several concurrent operations. Clients obtain a connection with
+ * {@link #acquire(File, URI, File, IProgressMonitor)} and must hand it back with
+ * {@link #release(ProjectConnection)} rather than closing it.
+ * <p>
+ * Connections that have not been used for {@link #IDLE_TIMEOUT} milliseconds are closed.
+ */
+public class ToolingApiConnectionPool {
+
+	private static final boolean DEBUG = false;
+
+	private static void debug(String string) {
+		if (DEBUG) {
+			System.out.println(string);
+		}
+	}
+
+	/**
+	 * Connections that have been idle for this long (in milliseconds) are closed.
+	 */
+	public static final long IDLE_TIMEOUT = 5 * 60 * 1000;
+
+	private static class Key {
+
+		private final File projectLoc;
+		private final URI distribution;
+		private final File gradleUserHome;
+
+		public Key(File projectLoc, URI distribution, File gradleUserHome) {
+			this.projectLoc = projectLoc;
+			this.distribution = distribution;
+			this.gradleUserHome = gradleUserHome;
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + ((projectLoc == null) ? 0 : projectLoc.hashCode());
+			result = prime * result + ((distribution == null) ? 0 : distribution.hashCode());
+			result = prime * result + ((gradleUserHome == null) ? 0 : gradleUserHome.hashCode());
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			Key other = (Key) obj;
+			return ObjectUtil.equal(projectLoc, other.projectLoc)
+				&& ObjectUtil.equal(distribution, other.distribution)
+				&& ObjectUtil.equal(gradleUserHome, other.gradleUserHome);
+		}
+
+		@Override
+		public String toString() {
+			return projectLoc+" ["+distribution+", "+gradleUserHome+"]";
+		}
+	}
+
+	private static class Entry {
+		final Key key;
+		final ProjectConnection connection;
+		int users = 0;
+		long lastUsed = System.currentTimeMillis();
+		/**
+		 * Set when the entry was removed from the pool while still in use. The
+		 * connection gets closed as soon as the last user releases it.
+		 */
+		boolean stale = false;
+
+		Entry(Key key, ProjectConnection connection) {
+			this.key = key;
+			this.connection = connection;
+		}
+	}
+
+	private Map<Key, Entry> entries = new HashMap<Key, Entry>();
+	private Map<ProjectConnection, Entry> leased = new IdentityHashMap<ProjectConnection, Entry>();
+
+	private int hits = 0;
+	private int misses = 0;
+
+	private Job evictionJob = null;
+
+	/**
+	 * Obtain a connection from the pool, creating a new one if no suitable connection is
+	 * available. The caller must eventually call {@link #release(ProjectConnection)}.
+	 */
+	public ProjectConnection acquire(File projectLoc, URI distribution, File gradleUserHome, IProgressMonitor monitor) {
+		monitor.beginTask("Connection to Gradle", 1);
+		try {
+			Key key = new Key(projectLoc, distribution, gradleUserHome);
+			synchronized (this) {
+				Entry entry = entries.get(key);
+				if (entry!=null) {
+					hits++;
+					debug("Connection pool hit: "+key);
+					return lease(entry);
+				}
+				misses++;
+			}
+			//Connecting is kept outside the synch block.
+			monitor.subTask("Creating connector");
+			ProjectConnection connection = connect(key);
+			synchronized (this) {
+				Entry entry = entries.get(key);
+				if (entry!=null) {
+					//Someone else connected while we were doing the same. Use theirs.
+					close(connection);
+				} else {
+					debug("Connection pool miss: "+key);
+					entries.put(key, entry = new Entry(key, connection));
+				}
+				return lease(entry);
+			}
+		} finally {
+			monitor.done();
+		}
+	}
+
+	/**
+	 * Hand back a connection obtained via {@link #acquire(File, URI, File, IProgressMonitor)}.
+	 * Connections that were not obtained from this pool are simply closed.
+	 */
+	public void release(ProjectConnection connection) {
+		if (connection==null) {
+			return;
+		}
+		boolean closeIt = false;
+		synchronized (this) {
+			Entry entry = leased.get(connection);
+			if (entry==null) {
+				closeIt = true;
+			} else {
+				entry.users--;
+				entry.lastUsed = System.currentTimeMillis();
+				if (entry.users<=0) {
+					leased.remove(connection);
+					closeIt = entry.stale;
+				}
+			}
+			evictIdle();
+		}
+		if (closeIt) {
+			close(connection);
+		}
+	}
+
+	/**
+	 * Remove all connections from the pool. Connections that are currently in use are closed
+	 * when they are released. Called when preferences that affect how connections are created
+	 * are changed.
+	 */
+	public void invalidate() {
+		List<ProjectConnection> toClose = new ArrayList<ProjectConnection>();
+		synchronized (this) {
+			for (Entry entry : entries.values()) {
+				if (entry.users>0) {
+					entry.stale = true;
+				} else {
+					toClose.add(entry.connection);
+				}
+			}
+			entries = new HashMap<Key, Entry>();
+		}
+		for (ProjectConnection c : toClose) {
+			close(c);
+		}
+	}
+
+	/**
+	 * Close all connections, including the ones currently in use. Called when the plugin is
+	 * stopped.
+	 */
+	public void dispose() {
+		List<ProjectConnection> toClose = new ArrayList<ProjectConnection>();
+		synchronized (this) {
+			for (Entry entry : entries.values()) {
+				toClose.add(entry.connection);
+			}
+			for (Entry entry : leased.values()) {
+				if (entry.stale) {
+					toClose.add(entry.connection);
+				}
+			}
+			entries = new HashMap<Key, Entry>();
+			leased = new IdentityHashMap<ProjectConnection, Entry>();
+			if (evictionJob!=null) {
+				evictionJob.cancel();
+				evictionJob = null;
+			}
+		}
+		for (ProjectConnection c : toClose) {
+			close(c);
+		}
+	}
+
+	/**
+	 * @return Number of requests that were satisfied by a connection already in the pool.
+	 */
+	public synchronized int getHitCount() {
+		return hits;
+	}
+
+	/**
+	 * @return Number of requests that required creating a new connection.
+	 */
+	public synchronized int getMissCount() {
+		return misses;
+	}
+
+	/**
+	 * @return Number of connections currently kept in the pool.
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized void resetCounters() {
+		hits = 0;
+		misses = 0;
+	}
+
+	private ProjectConnection lease(Entry entry) {
+		entry.users++;
+		entry.lastUsed = System.currentTimeMillis();
+		leased.put(entry.connection, entry);
+		scheduleEviction();
+		return entry.connection;
+	}
+
+	/**
+	 * Close and remove connections that are not in use and have been idle for longer than
+	 * IDLE_TIMEOUT. Must be called while holding the monitor of this pool.
+	 */
+	private void evictIdle() {
+		long now = System.currentTimeMillis();
+		Iterator<Entry> iter = entries.values().iterator();
+		while (iter.hasNext()) {
+			final Entry entry = iter.next();
+			if (entry.users<=0 && now - entry.lastUsed >= IDLE_TIMEOUT) {
+				debug("Evicting idle connection: "+entry.key);
+				iter.remove();
+				close(entry.connection);
+			}
+		}
+	}
+
+	private void scheduleEviction() {
+		if (evictionJob==null) {
+			evictionJob = new Job("Close idle Gradle connections") {
+				@Override
+				protected IStatus run(IProgressMonitor monitor) {
+					synchronized (ToolingApiConnectionPool.this) {
+						evictIdle();
+						if (entries.isEmpty()) {
+							evictionJob = null;
+						} else {
+							schedule(IDLE_TIMEOUT);
+						}
+					}
+					return Status.OK_STATUS;
+				}
+			};
+			evictionJob.setSystem(true);
+			evictionJob.schedule(IDLE_TIMEOUT);
+		}
+	}
+
+	private ProjectConnection connect(Key key) {
+		GradleConnector connector = GradleConnector.newConnector();
+		if (key.gradleUserHome!=null) {
+			connector.useGradleUserHomeDir(key.gradleUserHome);
+		}
+		// Configure the connector and create the connection
+		URI distributionPref = key.distribution;
+		if (distributionPref!=null) {
+			boolean distroSet = false;
+			if ("file".equals(distributionPref.getScheme())) {
+				File maybeFolder = new File(distributionPref);
+				if (maybeFolder.isDirectory()) {
+					connector.useInstallation(maybeFolder);
+					distroSet = true;
+				}
+			}
+			if (!distroSet) {
+				connector.useDistribution(distributionPref);
+			}
+		}
+		connector.forProjectDirectory(key.projectLoc);
+		return connector.connect();
+	}
+
+	private static void close(ProjectConnection connection) {
+		try {
+			connection.close();
+		} catch (Throwable e) {
+			GradleCore.log(e);
+		}
+	}
+
+}
@@ -33,8 +33,12 @@ import org.osgi.framework.Bundle;
 import org.osgi.service.prefs.BackingStoreException;
 import org.springsource.ide.eclipse.gradle.core.GradleCore;
 import org.springsource.ide.eclipse.gradle.core.actions.RefreshAllActionCore;
+import org.springsource.ide.eclipse.gradle.core.actions.RefreshDependenciesActionCore;
 import org.springsource.ide.eclipse.gradle.core.autorefresh.DependencyRefresher;
 import org.springsource.ide.eclipse.gradle.core.classpathcontainer.GradleClassPathContainer;
+import org.springsource.ide.eclipse.gradle.core.modelmanager.ConcurrentModelBuilder;
+import org.springsource.ide.eclipse.gradle.core.modelmanager.ModelCache;
+import org.springsource.ide.eclipse.gradle.core.modelmanager.ToolinApiUtils;
 import org.springsource.ide.eclipse.gradle.core.util.JavaRuntimeUtils;
 import org.springsource.ide.eclipse.gradle.core.wtp.DeploymentExclusions;
 import org.springsource.ide.eclipse.gradle.core.wtp.RegexpListDeploymentExclusions;
@@ -84,6 +88,19 @@ public class GradlePreferences extends AbstractGradlePreferences implements IPre
 	
 	public static final String USE_CUSTOM_TOOLING_MODEL = GradlePreferences.class.getName()+"USE_CUSTOM_TOOLING_MODEL";
 	public static final boolean DEFAULT_USE_CUSTOM_TOOLING_MODEL = false;
+	public static final String SOURCES_ON_DEMAND = GradlePreferences.class.getName()+".SOURCES_ON_DEMAND";
+	public static final boolean DEFAULT_SOURCES_ON_DEMAND = false;
+	
+	public static final String MAX_CONCURRENT_BUILDS = GradlePreferences.class.getName()+".MAX_CONCURRENT_BUILDS";
+	public static final int DEFAULT_MAX_CONCURRENT_BUILDS = ConcurrentModelBuilder.DEFAULT_MAX_CONCURRENT_BUILDS;
+	public static final String MAX_CONCURRENT_BUILDS_PER_ROOT = GradlePreferences.class.getName()+".MAX_CONCURRENT_BUILDS_PER_ROOT";
+	public static final int DEFAULT_MAX_CONCURRENT_BUILDS_PER_ROOT = ConcurrentModelBuilder.DEFAULT_MAX_CONCURRENT_BUILDS_PER_ROOT;
+	
+	public static final String BATCH_BUILDS = GradlePreferences.class.getName()+".BATCH_BUILDS";
+	public static final boolean DEFAULT_BATCH_BUILDS = false;
+	
+	public static final String MODEL_CACHE_SIZE = GradlePreferences.class.getName()+".MODEL_CACHE_SIZE";
+	public static final int DEFAULT_MODEL_CACHE_SIZE = (int) (ModelCache.DEFAULT_BUDGET / (1024*1024));
 	
 	private static URI builtInDistribution = null;
 
@@ -280,23 +297,47 @@ public class GradlePreferences extends AbstractGradlePreferences implements IPre
 			DependencyRefresher.refresh();
 		} else if (EXPORT_DEPENDENCIES.equals(event.getKey())) {
 			try {
-				//All projects that have dependency management enabled are affected.
-				IProject[] projects = ResourcesPlugin.getWorkspace().getRoot().getProjects();
-				List<IProject> affected = new ArrayList<IProject>();
-				for (IProject p : projects) {
-					if (GradleCore.create(p).isDependencyManaged()) {
-						affected.add(p);
-					}
-				}
-				RefreshAllActionCore.callOn(affected);
+				//The models don't depend on this preference, no need to rebuild them.
+				RefreshAllActionCore.callOn(getDependencyManagedProjects(), false);
 			} catch (CoreException e) {
 				GradleCore.log(e);
 			}
+		} else if (DISTRIBUTION.equals(event.getKey())
+				|| GRADLE_USER_HOME.equals(event.getKey())) {
+			//Pooled connections were created with the old settings.
+			ToolinApiUtils.getConnectionPool().invalidate();
+		} else if (MAX_CONCURRENT_BUILDS.equals(event.getKey())
+				|| MAX_CONCURRENT_BUILDS_PER_ROOT.equals(event.getKey())) {
+			GradleCore.getInstance().updateBuildLimits();
+		} else if (BATCH_BUILDS.equals(event.getKey())) {
+			GradleCore.getInstance().updateBatchBuilds();
+		} else if (MODEL_CACHE_SIZE.equals(event.getKey())) {
+			GradleCore.getInstance().updateModelCacheBudget();
 		} else if (JAR_REMAP_ON_OPEN_CLOSE.equals(event.getKey())
 				|| JAR_REMAP_GRADLE_TO_GRADLE.equals(event.getKey())
 				|| JAR_REMAP_GRADLE_TO_MAVEN.equals(event.getKey())) {
 			GradleClassPathContainer.ensureOpenCloseListener();
 		}
+		if ((JAR_REMAP_GRADLE_TO_GRADLE.equals(event.getKey()) || SOURCES_ON_DEMAND.equals(event.getKey()))
+				&& getUseCustomToolingModel()) {
+			//These are passed on to the custom tooling model builder, so cached and persisted models
+			// built with the old value are different from what a build would produce now.
+			RefreshDependenciesActionCore.callOn(getDependencyManagedProjects(), true);
+		}
+	}
+
+	/**
+	 * @return The projects in the workspace that have dependency management enabled.
+	 */
+	private static List<IProject> getDependencyManagedProjects() {
+		IProject[] projects = ResourcesPlugin.getWorkspace().getRoot().getProjects();
+		List<IProject> affected = new ArrayList<IProject>();
+		for (IProject p : projects) {
+			if (GradleCore.create(p).isDependencyManaged()) {
+				affected.add(p);
+			}
+		}
+		return affected;
 	}
 
 	public boolean getGroovyEditorDisableUnderlining() {
@@ -357,6 +398,48 @@ public class GradlePreferences extends AbstractGradlePreferences implements IPre
 		put(AUTO_REFRESH_DELAY, v);
 	}
 
+	/**
+	 * @return Maximum number of Gradle model builds allowed to run at the same time.
+	 */
+	public int getMaxConcurrentBuilds() {
+		return get(MAX_CONCURRENT_BUILDS, DEFAULT_MAX_CONCURRENT_BUILDS);
+	}
+	public void setMaxConcurrentBuilds(int v) {
+		put(MAX_CONCURRENT_BUILDS, v);
+	}
+
+	/**
+	 * @return Maximum number of Gradle model builds allowed to run at the same time for projects
+	 * sharing the same root project.
+	 */
+	public int getMaxConcurrentBuildsPerRoot() {
+		return get(MAX_CONCURRENT_BUILDS_PER_ROOT, DEFAULT_MAX_CONCURRENT_BUILDS_PER_ROOT);
+	}
+	public void setMaxConcurrentBuildsPerRoot(int v) {
+		put(MAX_CONCURRENT_BUILDS_PER_ROOT, v);
+	}
+
+	/**
+	 * @return Whether the models of all the projects in a build family are built in a single build,
+	 * see {@link org.springsource.ide.eclipse.gradle.core.modelmanager.BatchBuildStrategy}.
+	 */
+	public boolean getBatchBuilds() {
+		return get(BATCH_BUILDS, DEFAULT_BATCH_BUILDS);
+	}
+	public void setBatchBuilds(boolean enable) {
+		put(BATCH_BUILDS, enable);
+	}
+
+	/**
+	 * @return Memory budget, in megabytes, for Gradle models cached in memory.
+	 */
+	public int getModelCacheSize() {
+		return get(MODEL_CACHE_SIZE, DEFAULT_MODEL_CACHE_SIZE);
+	}
+	public void setModelCacheSize(int v) {
+		put(MODEL_CACHE_SIZE, v);
+	}
+
 	public boolean isExportDependencies() {
 		return get(EXPORT_DEPENDENCIES, DEFAULT_EXPORT_DEPENDENCIES);
 	}
@@ -388,6 +471,18 @@ public class GradlePreferences extends AbstractGradlePreferences implements IPre
 	public void setUseCustomToolingModel(boolean enable) {
 		put(USE_CUSTOM_TOOLING_MODEL, enable);
 	}
+
+	/**
+	 * When enabled (and the custom tooling model is used), sources and javadoc of dependencies are not
+	 * resolved as part of the model build but only once they are needed.
+	 */
+	public boolean getSourcesOnDemand() {
+		return get(SOURCES_ON_DEMAND, DEFAULT_SOURCES_ON_DEMAND);
+	}
+
+	public void setSourcesOnDemand(boolean enable) {
+		put(SOURCES_ON_DEMAND, enable);
+	}
 	
 
 	public boolean getJarRemappingOnOpenClose() {
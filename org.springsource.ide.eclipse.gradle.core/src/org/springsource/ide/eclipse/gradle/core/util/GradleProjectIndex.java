@@ -23,7 +23,6 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
-import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.gradle.api.Project;
@@ -34,7 +33,6 @@ import org.gradle.tooling.model.UnsupportedMethodException;
 import org.gradle.tooling.model.eclipse.EclipseProject;
 import org.gradle.tooling.model.gradle.BuildInvocations;
 import org.springsource.ide.eclipse.gradle.core.GradleCore;
-import org.springsource.ide.eclipse.gradle.core.classpathcontainer.FastOperationFailedException;
 import org.springsource.ide.eclipse.gradle.core.modelmanager.IGradleModelListener;
 
 /**
@@ -84,6 +82,7 @@ public class GradleProjectIndex {
 	 */
 	private ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
 	private Future<?> indexRequest = null;
+	private EclipseProject indexedModel = null;
 	
 	private final IGradleModelListener MODEL_LISTENER = new IGradleModelListener() {
 		@Override
@@ -123,22 +122,28 @@ public class GradleProjectIndex {
 		this.executor.shutdownNow();
 	}
 	
-	public void setProject(org.springsource.ide.eclipse.gradle.core.GradleProject project) {
-		try {
-			if (ideProject != null) {
-				ideProject.removeModelListener(MODEL_LISTENER);
-			}
-			resetIndex();
-			if (project != null) {
-				ideProject = project;
-				ideProject.addModelListener(MODEL_LISTENER);
-				initializeIndexRequest(ideProject.requestGradleModel());
-				updateVisibilityCache(ideProject);
-			}
-		} catch (FastOperationFailedException e) {
-			// ignore
-		} catch (CoreException e) {
-			// ignore
+	public void setProject(final org.springsource.ide.eclipse.gradle.core.GradleProject project) {
+		if (ideProject != null) {
+			ideProject.removeModelListener(MODEL_LISTENER);
+		}
+		resetIndex();
+		ideProject = project;
+		if (project != null) {
+			ideProject.addModelListener(MODEL_LISTENER);
+			//Later changes to the model are picked up by the listener.
+			ideProject.getModelAsync(EclipseProject.class).whenDone(new Continuation<EclipseProject>() {
+				@Override
+				public void apply(EclipseProject model) {
+					if (ideProject == project) {
+						initializeIndexRequest(model);
+					}
+				}
+				@Override
+				public void error(Throwable e) {
+					// ignore
+				}
+			}, executor);
+			updateVisibilityCache(ideProject);
 		}
 	}
 	
@@ -160,7 +165,12 @@ public class GradleProjectIndex {
 		tasksVisibilityCache.put(projectName, tasksVisibility);
 	}
 	
-	private void initializeIndexRequest(final EclipseProject project) {
+	private synchronized void initializeIndexRequest(final EclipseProject project) {
+		if (project == indexedModel) {
+			//Both the model listener and the initial request may deliver the same model.
+			return;
+		}
+		indexedModel = project;
 		if (indexRequest != null && !indexRequest.isDone()) {
 			indexRequest.cancel(true);
 		}
@@ -175,6 +185,9 @@ public class GradleProjectIndex {
 	}
 	
 	private void resetIndex() {
+		synchronized (this) {
+			indexedModel = null;
+		}
 		lock.writeLock().lock();
 		try {
 			this.initialized = false;
@@ -234,17 +247,20 @@ public class GradleProjectIndex {
 		}	
 	}
 	
-	private void updateVisibilityCache(org.springsource.ide.eclipse.gradle.core.GradleProject ideProject) {
+	private void updateVisibilityCache(final org.springsource.ide.eclipse.gradle.core.GradleProject ideProject) {
 		trackedProjects.add(ideProject);
 		ideProject.addModelListener(BUILD_INVOCATIONS_LISTENER);
-		try {
-			updateVisibilityCache(ideProject.getName(), 
-					ideProject.requestModel(BuildInvocations.class));
-		} catch (CoreException e) {
-			GradleCore.log(e.getStatus());
-		} catch (FastOperationFailedException e) {
-			// ignore
-		}
+		ideProject.getModelAsync(BuildInvocations.class).whenDone(new Continuation<BuildInvocations>() {
+			@Override
+			public void apply(BuildInvocations model) {
+				updateVisibilityCache(ideProject.getName(), model);
+			}
+			@Override
+			public void error(Throwable e) {
+				// ignore, tasks are shown without visibility information. This happens on every lookup
+				// of the project's tasks, logging the error would flood the log.
+			}
+		});
 	}
 	
 	public boolean isInitialized() {
@@ -10,6 +10,15 @@
  *******************************************************************************/
 package org.springsource.ide.eclipse.gradle.core.util;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.springsource.ide.eclipse.gradle.core.GradleCore;
+
 /**
  * A continuation that implements the Joinable interface. The purpose of this is to support
  * clients that want to make their thread wait for a computation that calls the continuation
@@ -21,11 +30,16 @@ package org.springsource.ide.eclipse.gradle.core.util;
  * 
  * @author Kris De Volder
  */
-public class JoinableContinuation<T> extends Continuation<T> implements Joinable<T> {
+public class JoinableContinuation<T> extends Continuation<T> implements Promise<T> {
 	
 	private boolean isDone = false;
 	private T value = null;
 	private Throwable thrw = null;
+	
+	/**
+	 * Callbacks waiting for this continuation to be called.
+	 */
+	private List<Runnable> callbacks = null;
 
 	public synchronized T join() throws Exception {
 		while(!isDone) {
@@ -50,6 +64,23 @@ public class JoinableContinuation<T> extends Continuation<T> implements Joinable
 		}
 	}
 
+	/**
+	 * Like {@link #join()} but stops waiting, by throwing an {@link OperationCanceledException}, 
+	 * when the given monitor is canceled. Canceling only affects the waiting thread, not the 
+	 * computation being joined.
+	 */
+	public synchronized T join(IProgressMonitor mon) throws Exception {
+		while (!isDone) {
+			JobUtil.checkCanceled(mon);
+			try {
+				wait(100);
+			} catch (InterruptedException e) {
+				//ignore
+			}
+		}
+		return join();
+	}
+
 	public synchronized boolean isValue() {
 		return isDone && thrw==null;
 	}
@@ -75,26 +106,106 @@ public class JoinableContinuation<T> extends Continuation<T> implements Joinable
 		setError(e);
 	}
 	
-	private synchronized void setError(Throwable e) {
-		if (isDone()) {
-			return;
+	private void setError(Throwable e) {
+		synchronized (this) {
+			if (isDone()) {
+				return;
+			}
+			isDone = true;
+			thrw = e;
+			notifyAll();
 		}
-		isDone = true;
-		thrw = e;
-		notifyAll();
+		runCallbacks();
 	}
 
 	public synchronized boolean isDone() {
 		return isDone; 
 	}
 
-	private synchronized void setValue(T value) {
-		if (isDone()) {
-			return;
+	private void setValue(T value) {
+		synchronized (this) {
+			if (isDone()) {
+				return;
+			}
+			isDone = true;
+			this.value = value;
+			notifyAll();
+		}
+		runCallbacks();
+	}
+	
+	public void whenDone(Continuation<? super T> k) {
+		whenDone(k, null);
+	}
+	
+	public void whenDone(final Continuation<? super T> k, final Executor executor) {
+		Runnable callback = new Runnable() {
+			public void run() {
+				if (executor==null) {
+					passOn(k);
+				} else {
+					try {
+						executor.execute(new Runnable() {
+							public void run() {
+								passOn(k);
+							}
+						});
+					} catch (RejectedExecutionException e) {
+						//Executor was shut down, client is no longer interested.
+					}
+				}
+			}
+		};
+		synchronized (this) {
+			if (!isDone) {
+				if (callbacks==null) {
+					callbacks = new ArrayList<Runnable>();
+				}
+				callbacks.add(callback);
+				return;
+			}
+		}
+		callback.run();
+	}
+	
+	/**
+	 * Pass the result of this continuation on to another one. Must only be called once
+	 * this continuation is done.
+	 */
+	private void passOn(Continuation<? super T> k) {
+		T value;
+		Throwable thrw;
+		synchronized (this) {
+			value = this.value;
+			thrw = this.thrw;
+		}
+		try {
+			if (thrw!=null) {
+				k.error(thrw);
+			} else {
+				k.apply(value);
+			}
+		} catch (Throwable e) {
+			//Don't let a broken callback affect the computation or other callbacks.
+			GradleCore.log(e);
+		}
+	}
+	
+	/**
+	 * Called once, when this continuation is done. Callbacks are run outside synchronized
+	 * blocks, they may take a while or try to acquire other locks.
+	 */
+	private void runCallbacks() {
+		List<Runnable> todo;
+		synchronized (this) {
+			todo = callbacks;
+			callbacks = null;
+		}
+		if (todo!=null) {
+			for (Runnable callback : todo) {
+				callback.run();
+			}
 		}
-		isDone = true;
-		this.value = value;
-		notifyAll();
 	}
 
 }
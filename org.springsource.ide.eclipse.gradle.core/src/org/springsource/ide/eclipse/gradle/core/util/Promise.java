@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.springsource.ide.eclipse.gradle.core.util;
+
+import java.util.concurrent.Executor;
+
+/**
+ * A {@link Joinable} that can also notify callbacks when the computation it represents
+ * is finished, so that clients don't need to block a thread to wait for it.
+ */
+public interface Promise<T> extends Joinable<T> {
+
+	/**
+	 * @return true if the computation has finished, so that {@link #join()} will not block.
+	 */
+	boolean isDone();
+
+	/**
+	 * Call a continuation when the computation is finished. If it is already finished the
+	 * continuation is called right away, in the current thread. Otherwise it is called in the
+	 * thread that finishes the computation.
+	 */
+	void whenDone(Continuation<? super T> k);
+
+	/**
+	 * Like {@link #whenDone(Continuation)} but the continuation is always called via
+	 * the given executor (e.g. to have it run in the UI thread).
+	 */
+	void whenDone(Continuation<? super T> k, Executor executor);
+
+}
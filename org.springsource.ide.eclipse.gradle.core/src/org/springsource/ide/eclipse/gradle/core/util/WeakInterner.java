@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.springsource.ide.eclipse.gradle.core.util;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+/**
+ * Pool of canonical instances of immutable values. Equal values are replaced by a single shared instance,
+ * similar to {@link String#intern()}. The pool only holds weak references, so values that are no longer
+ * used elsewhere can still be garbage collected.
+ */
+public class WeakInterner<T> {
+
+	private final WeakHashMap<T, WeakReference<T>> pool = new WeakHashMap<T, WeakReference<T>>();
+
+	/**
+	 * @return The canonical instance equal to the given value. If the pool has no such instance yet,
+	 *   the value itself becomes the canonical instance.
+	 */
+	public synchronized T intern(T value) {
+		if (value==null) {
+			return null;
+		}
+		WeakReference<T> ref = pool.get(value);
+		if (ref!=null) {
+			T canonical = ref.get();
+			if (canonical!=null) {
+				return canonical;
+			}
+		}
+		pool.put(value, new WeakReference<T>(value));
+		return value;
+	}
+
+	/**
+	 * @return Number of values in the pool, including values that are no longer referenced
+	 *   but haven't been collected yet.
+	 */
+	public synchronized int size() {
+		return pool.size();
+	}
+
+}
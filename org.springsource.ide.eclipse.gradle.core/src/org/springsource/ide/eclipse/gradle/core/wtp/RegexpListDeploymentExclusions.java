@@ -11,7 +11,9 @@
 package org.springsource.ide.eclipse.gradle.core.wtp;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -35,6 +37,13 @@ public class RegexpListDeploymentExclusions extends DeploymentExclusions {
 	 */
 	private Pattern compiled;
 
+	/**
+	 * Remembers the decisions made so far. The same jars are checked for every WTP project each time
+	 * its classpath is computed. An instance is never changed, when the exclusions preferences change
+	 * a new instance is created, so the decisions remain valid.
+	 */
+	private Map<String, Boolean> decisions = new HashMap<String, Boolean>();
+
 	/**
 	 * Create an instance of {@link RegexpListDeploymentExclusions}. This does not verify the 
 	 * syntactic correctness of the provided regexps. To explicitly verify them call the
@@ -83,9 +92,14 @@ public class RegexpListDeploymentExclusions extends DeploymentExclusions {
 	}
 
 	@Override
-	public boolean shouldExclude(String jarFileName) {
-		ensureCompiled();
-		return compiled.matcher(jarFileName).matches();
+	public synchronized boolean shouldExclude(String jarFileName) {
+		Boolean exclude = decisions.get(jarFileName);
+		if (exclude==null) {
+			ensureCompiled();
+			exclude = compiled.matcher(jarFileName).matches();
+			decisions.put(jarFileName, exclude);
+		}
+		return exclude;
 	}
 	
 	private void ensureCompiled() {
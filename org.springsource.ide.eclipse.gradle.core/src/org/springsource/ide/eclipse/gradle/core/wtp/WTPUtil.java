@@ -21,6 +21,7 @@ import java.util.Set;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.jdt.core.IClasspathAttribute;
@@ -39,7 +40,9 @@ import org.eclipse.wst.common.project.facet.core.ProjectFacetsManager;
 import org.springsource.ide.eclipse.gradle.core.ClassPath;
 import org.springsource.ide.eclipse.gradle.core.GradleCore;
 import org.springsource.ide.eclipse.gradle.core.GradleProject;
-import org.springsource.ide.eclipse.gradle.core.actions.RefreshDependenciesActionCore;
+import org.springsource.ide.eclipse.gradle.core.classpathcontainer.GradleClassPathContainer;
+import org.springsource.ide.eclipse.gradle.core.util.GradleRunnable;
+import org.springsource.ide.eclipse.gradle.core.util.JobUtil;
 import org.springsource.ide.eclipse.gradle.core.util.WorkspaceUtil;
 
 /** 
@@ -194,10 +197,21 @@ public class WTPUtil {
 		}
 
 		public void refreshAllDependencies() {
-			//TODO: in the case where this is currently called (after changings deploy exclusions), 
-			// a full refresh isn't necessary. Just reinitializing the CP container without
-			//rebuilding the gradle models should suffice (because only need to update classpath attributes).
-			RefreshDependenciesActionCore.callOn(getAllWTPProjects());
+			//This is called after changing the deploy exclusions. Only the classpath attributes of the
+			//entries change, so the containers are recomputed from the cached models, without rebuilding them.
+			JobUtil.schedule(new GradleRunnable("Update deployment exclusions") {
+				@Override
+				public void doit(IProgressMonitor mon) throws Exception {
+					List<GradleClassPathContainer> containers = new ArrayList<GradleClassPathContainer>();
+					for (IProject p : getAllWTPProjects()) {
+						GradleClassPathContainer container = GradleCore.create(p).getClassPathcontainer();
+						if (container!=null) {
+							containers.add(container);
+						}
+					}
+					GradleClassPathContainer.notifyJDT(containers, mon);
+				}
+			});
 		}
 
 		private List<IProject> getAllWTPProjects() {
@@ -11,7 +11,10 @@
 package org.springsource.ide.eclipse.gradle.ui.taskview;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.CoreException;
@@ -31,7 +34,9 @@ import org.springsource.ide.eclipse.gradle.core.GradleCore;
 import org.springsource.ide.eclipse.gradle.core.GradleProject;
 import org.springsource.ide.eclipse.gradle.core.classpathcontainer.FastOperationFailedException;
 import org.springsource.ide.eclipse.gradle.core.modelmanager.IGradleModelListener;
+import org.springsource.ide.eclipse.gradle.core.util.Continuation;
 import org.springsource.ide.eclipse.gradle.core.util.ProjectTasksVisibility;
+import org.springsource.ide.eclipse.gradle.core.util.Promise;
 
 /**
  * Content provider for displaying tasks tree
@@ -72,18 +77,57 @@ public class TaskTreeContentProvider implements ITreeContentProvider {
 			if (currentProject==p && (model instanceof BuildInvocations || model instanceof EclipseProject)) {
 				Display.getDefault().asyncExec(new Runnable() {
 					public void run() {
-						if (viewer!=null) {
-							viewer.refresh();
-							Tree tree = viewer.getTree();
-							for (TreeColumn col : tree.getColumns()) {
-								col.pack();
-							}
-						}
+						refresh();
 					}
 				});
 			}
 		}
 	};
+	
+	private static final Executor UI_EXECUTOR = new Executor() {
+		public void execute(Runnable command) {
+			Display.getDefault().asyncExec(command);
+		}
+	};
+	
+	/**
+	 * Promises that already have a refresh registered. Only accessed from the UI thread.
+	 */
+	private final Set<Promise<?>> pendingModels = new HashSet<Promise<?>>();
+	
+	/**
+	 * Refresh the viewer when a model that isn't available yet becomes available, or
+	 * fails to build. Each promise gets at most one refresh, no matter how often the
+	 * viewer asks for elements while it is pending.
+	 */
+	private <T> void refreshWhenDone(final GradleProject project, final Promise<T> model) {
+		if (!pendingModels.add(model)) {
+			return;
+		}
+		model.whenDone(new Continuation<T>() {
+			@Override
+			public void apply(T value) {
+				pendingModels.remove(model);
+				if (currentProject==project) {
+					refresh();
+				}
+			}
+			@Override
+			public void error(Throwable e) {
+				apply(null);
+			}
+		}, UI_EXECUTOR);
+	}
+	
+	private void refresh() {
+		if (viewer!=null && !viewer.getTree().isDisposed()) {
+			viewer.refresh();
+			Tree tree = viewer.getTree();
+			for (TreeColumn col : tree.getColumns()) {
+				col.pack();
+			}
+		}
+	}
 
 	public void inputChanged(Viewer viewer, Object oldInput, Object newInput) {
 		Assert.isTrue(this.viewer == viewer);
@@ -109,25 +153,22 @@ public class TaskTreeContentProvider implements ITreeContentProvider {
 			return NO_ELEMENTS;
 		} else {
 			try {
-				boolean modelNotAvailable = false;
 				/*
 				 * Request EclipseProject and BuildInvocations models in
-				 * parallel. Swallow the exception and proceed to the next model
-				 * request if previous throws FastOperationException
+				 * parallel. The viewer is refreshed once they are available.
 				 */
-				try {
-					root.requestModel(BuildInvocations.class);
-				} catch (FastOperationFailedException e) {
-					modelNotAvailable = true;
-				}
-				try {
-					root.requestGradleModel();
-				} catch (FastOperationFailedException e) {
-					modelNotAvailable = true;
+				Promise<BuildInvocations> invocations = root.getModelAsync(BuildInvocations.class);
+				Promise<EclipseProject> eclipseProject = root.getModelAsync(EclipseProject.class);
+				if (!invocations.isDone() || !eclipseProject.isDone()) {
+					refreshWhenDone(root, invocations);
+					refreshWhenDone(root, eclipseProject);
+					return new Object[] {"model not yet available"};
 				}
-				GradleTask[] gradleTasks = getGradleTasks(root);
-				return modelNotAvailable ? new Object[] {"model not yet available"} : gradleTasks;
-			} catch (CoreException e) {
+				//Both are done, so these won't block. They rethrow build failures.
+				invocations.join();
+				eclipseProject.join();
+				return getGradleTasks(root);
+			} catch (Exception e) {
 				GradleCore.log(e);
 				return new Object[] {"ERROR: "+e.getMessage()+"", "See error log for details"};
 			}
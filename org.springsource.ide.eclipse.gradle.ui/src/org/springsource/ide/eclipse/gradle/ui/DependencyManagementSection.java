@@ -40,6 +40,7 @@ public class DependencyManagementSection extends PrefsPageSection {
 	private Button enableJarToMvnProjectMappingButton;
 	private Button enableJarToGradleProjectMappingButton;
 	private Button useCustomToolingModelButton;
+	private Button sourcesOnDemandButton;
 	
 	private Button enableJarRemappingOnOpenClose;
 	
@@ -61,6 +62,7 @@ public class DependencyManagementSection extends PrefsPageSection {
 		setRemapJarsToGradleProjects(enableJarToGradleProjectMappingButton.getSelection());
 		setJarRemappingOnOpenClose(enableJarRemappingOnOpenClose.getSelection());
 		setUseCustomToolingModel(useCustomToolingModelButton.getSelection());
+		setSourcesOnDemand(sourcesOnDemandButton.getSelection());
 		return true;
 	}
 
@@ -73,6 +75,7 @@ public class DependencyManagementSection extends PrefsPageSection {
 		setRemapJarsToMavenProjectsInPage(GradlePreferences.DEFAULT_JAR_REMAP_GRADLE_TO_MAVEN);
 		setRemapJarsToGradleProjectsInPage(GradlePreferences.DEFAULT_JAR_REMAP_GRADLE_TO_GRADLE);
 		setUseCustomToolingModelInPage(GradlePreferences.DEFAULT_USE_CUSTOM_TOOLING_MODEL);
+		setSourcesOnDemandInPage(GradlePreferences.DEFAULT_SOURCES_ON_DEMAND);
 		
 		setJarRemappingOnOpenCloseInPage(GradlePreferences.DEFAULT_JAR_REMAP_ON_OPEN_CLOSE);
 	}
@@ -168,8 +171,22 @@ public class DependencyManagementSection extends PrefsPageSection {
 		useCustomToolingModelButton.setToolTipText("The tooling will work better on newer versions of Gradle but "
 				+ "may not work at all on older versions of Gradle.");
 		useCustomToolingModelButton.setSelection(GradleCore.getInstance().getPreferences().getUseCustomToolingModel());
+		useCustomToolingModelButton.addSelectionListener(new SelectionListener() {
+			public void widgetDefaultSelected(SelectionEvent arg0) {
+			}
+			public void widgetSelected(SelectionEvent e) {
+				enableDisableWidgets();
+			}
+		});
 		span2.applyTo(useCustomToolingModelButton);
 		
+		sourcesOnDemandButton = new Button(composite, SWT.CHECK);
+		sourcesOnDemandButton.setText("Fetch sources and javadoc on demand (requires Custom Tooling Model)");
+		sourcesOnDemandButton.setToolTipText("Don't resolve sources and javadoc of all dependencies when building the model. "
+				+ "Instead, fetch them in the background when a class from a jar is opened.");
+		sourcesOnDemandButton.setSelection(GradleCore.getInstance().getPreferences().getSourcesOnDemand());
+		span2.applyTo(sourcesOnDemandButton);
+		
 		enableDisableWidgets();
 	}
 
@@ -182,6 +199,9 @@ public class DependencyManagementSection extends PrefsPageSection {
 					|| enableJarToMvnProjectMappingButton.getSelection();
 			enableJarRemappingOnOpenClose.setEnabled(openCloseListerWidgetEnabled);
 		}
+		if (useCustomToolingModelButton!=null && sourcesOnDemandButton!=null) {
+			enableDisableWidgets(useCustomToolingModelButton, sourcesOnDemandButton);
+		}
 	}
 
 	public void enableDisableWidgets(Button radio, Control... others) {
@@ -237,6 +257,10 @@ public class DependencyManagementSection extends PrefsPageSection {
 		useCustomToolingModelButton.setSelection(enable);
 	}
 
+	private void setSourcesOnDemandInPage(boolean enable) {
+		sourcesOnDemandButton.setSelection(enable);
+	}
+
 	private void setJarRemappingOnOpenCloseInPage(boolean v) {
 		enableJarRemappingOnOpenClose.setSelection(v);
 	}
@@ -279,6 +303,10 @@ public class DependencyManagementSection extends PrefsPageSection {
 		GradleCore.getInstance().getPreferences().setUseCustomToolingModel(v);
 	}
 
+	private void setSourcesOnDemand(boolean v) {
+		GradleCore.getInstance().getPreferences().setSourcesOnDemand(v);
+	}
+
 	private void setJarRemappingOnOpenClose(boolean v) {
 		GradleCore.getInstance().getPreferences().setJarRemappingOnOpenClose(v);
 		
@@ -24,6 +24,7 @@ import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.osgi.framework.BundleContext;
 import org.springsource.ide.eclipse.gradle.core.GradleCore;
 import org.springsource.ide.eclipse.gradle.core.preferences.GlobalSettings;
+import org.springsource.ide.eclipse.gradle.ui.actions.FetchSourcesPartListener;
 
 
 
@@ -79,6 +80,7 @@ public class GradleUI extends AbstractUIPlugin {
 			System.out.println("Starting plugin "+PLUGIN_ID);
 		}
 		plugin = this;
+		FetchSourcesPartListener.startTracking();
 	}
 
 	/*
@@ -86,6 +88,7 @@ public class GradleUI extends AbstractUIPlugin {
 	 * @see org.eclipse.ui.plugin.AbstractUIPlugin#stop(org.osgi.framework.BundleContext)
 	 */
 	public void stop(BundleContext context) throws Exception {
+		FetchSourcesPartListener.stopTracking();
 		plugin = null;
 		super.stop(context);
 	}
@@ -0,0 +1,35 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.springsource.ide.eclipse.gradle.ui.actions;
+
+import org.eclipse.core.commands.AbstractHandler;
+import org.eclipse.core.commands.ExecutionEvent;
+import org.eclipse.core.commands.ExecutionException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.jface.dialogs.MessageDialog;
+import org.eclipse.ui.handlers.HandlerUtil;
+import org.springsource.ide.eclipse.gradle.core.GradleCore;
+
+/**
+ * Shows the Gradle model manager statistics, and writes them to the error log so they can
+ * be attached to bug reports.
+ */
+public class DumpModelStatsHandler extends AbstractHandler {
+
+	public Object execute(ExecutionEvent event) throws ExecutionException {
+		String dump = GradleCore.dumpModelStats();
+		GradleCore.log(new Status(IStatus.INFO, GradleCore.PLUGIN_ID, dump));
+		MessageDialog.openInformation(HandlerUtil.getActiveShell(event), "Gradle Model Statistics", dump);
+		return null;
+	}
+
+}
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.springsource.ide.eclipse.gradle.ui.actions;
+
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.IPreferenceChangeListener;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.PreferenceChangeEvent;
+import org.eclipse.core.runtime.preferences.InstanceScope;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.ui.JavaUI;
+import org.eclipse.ui.IEditorPart;
+import org.eclipse.ui.IPartListener2;
+import org.eclipse.ui.IWindowListener;
+import org.eclipse.ui.IWorkbench;
+import org.eclipse.ui.IWorkbenchPart;
+import org.eclipse.ui.IWorkbenchPartReference;
+import org.eclipse.ui.IWorkbenchWindow;
+import org.eclipse.ui.PlatformUI;
+import org.springsource.ide.eclipse.gradle.core.GradleCore;
+import org.springsource.ide.eclipse.gradle.core.classpathcontainer.SourcesOnDemand;
+import org.springsource.ide.eclipse.gradle.core.preferences.GradlePreferences;
+
+/**
+ * Listens to the editors of all workbench windows. When an editor is opened or activated for a class from
+ * a jar without sources, the sources are fetched in the background (see {@link SourcesOnDemand}).
+ * JDT offers no other hook for the moment it first needs the sources of a library.
+ * <p>
+ * Only installed while sources on demand are enabled. The UI plugin starts tracking the preferences when it
+ * is activated (see {@link #startTracking()}), which {@link SourcesOnDemand} triggers as soon as it has a jar
+ * to fetch sources for.
+ */
+public class FetchSourcesPartListener implements IPartListener2, IWindowListener {
+
+	private static FetchSourcesPartListener installed = null;
+
+	private static final IPreferenceChangeListener PREFERENCE_LISTENER = new IPreferenceChangeListener() {
+		public void preferenceChange(PreferenceChangeEvent event) {
+			if (GradlePreferences.SOURCES_ON_DEMAND.equals(event.getKey())
+					|| GradlePreferences.USE_CUSTOM_TOOLING_MODEL.equals(event.getKey())) {
+				update();
+			}
+		}
+	};
+
+	/**
+	 * Installs the listener if sources on demand are enabled, and keeps installing or removing it
+	 * as the preferences change.
+	 */
+	public static void startTracking() {
+		preferences().addPreferenceChangeListener(PREFERENCE_LISTENER);
+		update();
+	}
+
+	public static void stopTracking() {
+		preferences().removePreferenceChangeListener(PREFERENCE_LISTENER);
+	}
+
+	private static IEclipsePreferences preferences() {
+		return InstanceScope.INSTANCE.getNode(GradleCore.PLUGIN_ID);
+	}
+
+	private static void update() {
+		if (PlatformUI.isWorkbenchRunning()) {
+			final IWorkbench workbench = PlatformUI.getWorkbench();
+			workbench.getDisplay().asyncExec(new Runnable() {
+				public void run() {
+					if (workbench.isClosing()) {
+						return;
+					}
+					if (SourcesOnDemand.isEnabled()) {
+						if (installed==null) {
+							installed = new FetchSourcesPartListener();
+							workbench.addWindowListener(installed);
+							for (IWorkbenchWindow window : workbench.getWorkbenchWindows()) {
+								installed.windowOpened(window);
+							}
+						}
+					} else if (installed!=null) {
+						workbench.removeWindowListener(installed);
+						for (IWorkbenchWindow window : workbench.getWorkbenchWindows()) {
+							installed.windowClosed(window);
+						}
+						installed = null;
+					}
+				}
+			});
+		}
+	}
+
+	private void fetchSources(IWorkbenchPartReference ref) {
+		if (SourcesOnDemand.isEnabled()) {
+			IWorkbenchPart part = ref.getPart(false);
+			if (part instanceof IEditorPart) {
+				IJavaElement element = JavaUI.getEditorInputJavaElement(((IEditorPart) part).getEditorInput());
+				if (element!=null) {
+					IPackageFragmentRoot root = (IPackageFragmentRoot) element.getAncestor(IJavaElement.PACKAGE_FRAGMENT_ROOT);
+					if (root!=null) {
+						SourcesOnDemand.request(root);
+					}
+				}
+			}
+		}
+	}
+
+	public void partOpened(IWorkbenchPartReference ref) {
+		fetchSources(ref);
+	}
+
+	public void partActivated(IWorkbenchPartReference ref) {
+		fetchSources(ref);
+	}
+
+	public void partInputChanged(IWorkbenchPartReference ref) {
+		fetchSources(ref);
+	}
+
+	public void partBroughtToTop(IWorkbenchPartReference ref) {
+	}
+
+	public void partClosed(IWorkbenchPartReference ref) {
+	}
+
+	public void partDeactivated(IWorkbenchPartReference ref) {
+	}
+
+	public void partHidden(IWorkbenchPartReference ref) {
+	}
+
+	public void partVisible(IWorkbenchPartReference ref) {
+	}
+
+	public void windowOpened(IWorkbenchWindow window) {
+		window.getPartService().addPartListener(this);
+	}
+
+	public void windowClosed(IWorkbenchWindow window) {
+		window.getPartService().removePartListener(this);
+	}
+
+	public void windowActivated(IWorkbenchWindow window) {
+	}
+
+	public void windowDeactivated(IWorkbenchWindow window) {
+	}
+
+}
@@ -34,7 +34,7 @@ public class RefreshAllAction extends RefreshAction {
 	public void run(IAction action) {
 		final List<IProject> projects = getProjects();
 		try {
-			RefreshAllActionCore.callOn(projects);
+			RefreshAllActionCore.callOn(projects, true);
 		} catch (CoreException e) {
 			GradleUI.log(e);
 			String msg = e.getMessage();
@@ -26,7 +26,7 @@ public class RefreshDependenciesAction extends RefreshAction {
 	}
 
 	public void run(IAction action) {
-		RefreshDependenciesActionCore.callOn(getProjects());
+		RefreshDependenciesActionCore.callOn(getProjects(), true);
 	}
 
 }
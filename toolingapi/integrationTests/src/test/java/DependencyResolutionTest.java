@@ -0,0 +1,195 @@
+import static org.hamcrest.CoreMatchers.hasItems;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import io.pivotal.tooling.model.eclipse.StsEclipseProject;
+import io.pivotal.tooling.model.eclipse.StsEclipseProjectDependency;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.gradle.tooling.GradleConnector;
+import org.gradle.tooling.ModelBuilder;
+import org.gradle.tooling.ProjectConnection;
+import org.gradle.tooling.model.ExternalDependency;
+import org.gradle.tooling.model.GradleModuleVersion;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Checks the external modules resolved for the classpath of each project, when configurations are resolved once
+ * and shared between projects, and sources and javadoc are looked up for the whole hierarchy at once. Binary
+ * equivalents of the projects aren't looked up unless requested.
+ * <p>
+ * How often configurations and sources are resolved is counted from the builder's info logging, one line per
+ * resolution.
+ */
+public class DependencyResolutionTest {
+    private static final String RESOLVING_CONFIGURATION = "Resolving dependencies of ";
+    private static final String SOURCES_QUERY = " components in one query";
+
+    static StsEclipseProject root;
+    static List<String> resolvedConfigurations = new ArrayList<String>();
+    static int sourcesQueries = 0;
+
+    @BeforeClass
+    public static void beforeClass() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        root = build(out);
+
+        BufferedReader lines = new BufferedReader(new StringReader(out.toString()));
+        String line;
+        while ((line = lines.readLine()) != null) {
+            if (line.contains(SOURCES_QUERY))
+                sourcesQueries++;
+            else if (line.contains(RESOLVING_CONFIGURATION))
+                resolvedConfigurations.add(line.substring(line.indexOf(RESOLVING_CONFIGURATION) + RESOLVING_CONFIGURATION.length()));
+        }
+    }
+
+    @Test
+    public void eachConfigurationIsResolvedOnce() {
+        assertFalse(resolvedConfigurations.isEmpty());
+        assertEquals(resolvedConfigurations.size(), new HashSet<String>(resolvedConfigurations).size());
+    }
+
+    @Test
+    public void minusConfigurationsAreNotResolvedAgain() {
+        assertEquals(1, count(resolvedConfigurations, "':minus:compile'"));
+    }
+
+    @Test
+    public void eachModuleIsOnTheClasspathOnce() {
+        for (StsEclipseProject project : root.getChildren()) {
+            List<String> modules = modules(project);
+            assertFalse(project.getName(), modules.isEmpty());
+            assertEquals(project.getName(), modules.size(), new HashSet<String>(modules).size());
+        }
+    }
+
+    @Test
+    public void modulesOfSharedConfigurationsAreOnEveryClasspath() {
+        // guava is a dependency of 'a', 'minus' and 'plus', junit of 'b' and 'minus'
+        assertThat(modules(project("a")), hasItems("com.google.guava:guava:18.0"));
+        assertThat(modules(project("plus")), hasItems("com.google.guava:guava:18.0"));
+        assertThat(names(project("b")), hasItems("jackson-dataformat-xml", "junit"));
+        assertThat(names(project("minus")), hasItems("junit"));
+    }
+
+    @Test
+    public void modulesOfMinusConfigurationsAreNotOnTheClasspath() {
+        assertThat(names(project("minus")), not(hasItems("guava")));
+    }
+
+    @Test
+    public void modulesOfPlusConfigurationsAreOnTheClasspath() {
+        assertThat(modules(project("plus")), hasItems("commons-logging:commons-logging:1.1.3"));
+    }
+
+    @Test
+    public void sourcesAreResolvedForEveryProjectWithTheModule() {
+        assertNotNull(dependency(project("a"), "guava").getSource());
+        assertNotNull(dependency(project("plus"), "guava").getSource());
+        assertNotNull(dependency(project("a"), "jackson-dataformat-xml").getSource());
+        assertNotNull(dependency(project("b"), "jackson-dataformat-xml").getSource());
+    }
+
+    @Test
+    public void sourcesOfAllProjectsAreResolvedInOneQuery() {
+        // All projects with dependencies declare the same repositories
+        assertEquals(1, sourcesQueries);
+    }
+
+    @Test
+    public void javadocIsResolvedUnlessSkipped() {
+        assertNotNull(dependency(project("a"), "guava").getJavadoc());
+
+        StsEclipseProject skipped = build(new ByteArrayOutputStream(), "-Dorg.springsource.ide.eclipse.gradle.toolingApiSkipJavadoc=true");
+        for (StsEclipseProject project : skipped.getChildren())
+            for (ExternalDependency dependency : project.getClasspath())
+                assertNull(dependency.getFile().getName(), dependency.getJavadoc());
+        assertNotNull(dependency(project(skipped, "a"), "guava").getSource());
+    }
+
+    @Test
+    public void externalEquivalentsAreOnlyResolvedWhenRequested() {
+        for (StsEclipseProjectDependency dependency : project("a").getProjectDependencies())
+            assertNull(dependency.getExternalEquivalent());
+    }
+
+    static int count(List<String> lines, String text) {
+        int count = 0;
+        for (String line : lines)
+            if (line.contains(text))
+                count++;
+        return count;
+    }
+
+    static List<String> modules(StsEclipseProject project) {
+        List<String> modules = new ArrayList<String>();
+        for (ExternalDependency dependency : project.getClasspath()) {
+            GradleModuleVersion module = dependency.getGradleModuleVersion();
+            modules.add(module.getGroup() + ":" + module.getName() + ":" + module.getVersion());
+        }
+        return modules;
+    }
+
+    static List<String> names(StsEclipseProject project) {
+        List<String> names = new ArrayList<String>();
+        for (ExternalDependency dependency : project.getClasspath())
+            names.add(dependency.getGradleModuleVersion().getName());
+        return names;
+    }
+
+    static ExternalDependency dependency(StsEclipseProject project, String name) {
+        for (ExternalDependency dependency : project.getClasspath())
+            if (dependency.getGradleModuleVersion().getName().equals(name))
+                return dependency;
+        fail(project.getName() + " has no dependency on " + name);
+        return null;
+    }
+
+    static StsEclipseProject build(ByteArrayOutputStream out, String... jvmArguments) {
+        GradleConnector connector = GradleConnector.newConnector();
+        connector.forProjectDirectory(file("projects/multiproject"));
+        ProjectConnection connection = connector.connect();
+
+        List<String> arguments = new ArrayList<String>(Arrays.asList(
+                "-Dorg.springsource.ide.eclipse.gradle.toolingApiRepo=" + file("../../org.springsource.ide.eclipse.gradle.toolingapi/lib").getAbsolutePath(),
+                "-Dorg.springsource.ide.eclipse.gradle.toolingApiEquivalentBinaryVersion=latest.integration"
+        ));
+        arguments.addAll(Arrays.asList(jvmArguments));
+
+        ModelBuilder<StsEclipseProject> customModelBuilder = connection.model(StsEclipseProject.class);
+        customModelBuilder.setJvmArguments(arguments.toArray(new String[arguments.size()]));
+        customModelBuilder.withArguments("--init-script", file("projects/init.gradle").getAbsolutePath(), "--info");
+        customModelBuilder.setStandardOutput(out);
+        return customModelBuilder.get();
+    }
+
+    StsEclipseProject project(String name) {
+        return project(root, name);
+    }
+
+    static StsEclipseProject project(StsEclipseProject root, String name) {
+        for (StsEclipseProject project : root.getChildren())
+            if(project.getGradleProject().getName().equals(name))
+                return project;
+        return null;
+    }
+
+    static File file(String path) {
+        return new File(System.getProperty("user.dir"), path);
+    }
+}
@@ -0,0 +1,97 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import io.pivotal.tooling.model.eclipse.StsEclipseProject;
+import io.pivotal.tooling.model.eclipse.StsEclipseProjectDependency;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.gradle.tooling.GradleConnector;
+import org.gradle.tooling.ModelBuilder;
+import org.junit.Test;
+
+/**
+ * Checks the transitive project dependencies computed by the builder, for a build with dependency cycles
+ * and for a large synthetic build.
+ */
+public class ProjectDependencyClosureTest {
+    private static final String COMPUTED = "Computed the project dependencies of ";
+
+    @Test
+    public void cyclesAreResolvedWithoutSelfDependencies() {
+        StsEclipseProject root = build("projects/multiproject-cycle", new ByteArrayOutputStream());
+
+        // a -> b, a; b -> a; c -> b; d -> c, d
+        assertEquals(Arrays.asList("b"), dependencies(project(root, "a")));
+        assertEquals(Arrays.asList("a"), dependencies(project(root, "b")));
+        assertEquals(Arrays.asList("b", "a"), dependencies(project(root, "c")));
+        assertEquals(Arrays.asList("c", "b", "a"), dependencies(project(root, "d")));
+    }
+
+    @Test
+    public void syntheticGraphOf1000Projects() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StsEclipseProject root = build("projects/synthetic-graph", out);
+
+        assertEquals(1000, root.getChildren().size());
+        for (StsEclipseProject project : root.getChildren()) {
+            // see projects/synthetic-graph/build.gradle: a project depends on its own ring of 10 projects,
+            // and on all the following rings in its group of 10 rings
+            int ring = Integer.parseInt(project.getName().substring(1)) / 10;
+            int lastRing = ring / 10 * 10 + 9;
+            assertEquals(project.getName(), (lastRing - ring + 1) * 10 - 1, project.getProjectDependencies().size());
+        }
+
+        long millis = -1;
+        BufferedReader lines = new BufferedReader(new StringReader(out.toString()));
+        String line;
+        while ((line = lines.readLine()) != null) {
+            if (line.contains(COMPUTED)) {
+                String message = line.substring(line.indexOf(COMPUTED) + COMPUTED.length());
+                assertTrue(message, message.startsWith("1000 projects in "));
+                millis = Long.parseLong(message.substring("1000 projects in ".length(), message.indexOf(" ms")));
+            }
+        }
+        System.out.println("project dependencies of 1000 projects computed in " + millis + " ms");
+        assertTrue(millis >= 0);
+        assertTrue(millis < 5000);
+    }
+
+    static StsEclipseProject build(String projectDir, ByteArrayOutputStream out) {
+        GradleConnector connector = GradleConnector.newConnector();
+        connector.forProjectDirectory(file(projectDir));
+
+        ModelBuilder<StsEclipseProject> customModelBuilder = connector.connect().model(StsEclipseProject.class);
+        customModelBuilder.setJvmArguments(
+                "-Dorg.springsource.ide.eclipse.gradle.toolingApiRepo=" + file("../../org.springsource.ide.eclipse.gradle.toolingapi/lib").getAbsolutePath(),
+                "-Dorg.springsource.ide.eclipse.gradle.toolingApiEquivalentBinaryVersion=latest.integration"
+        );
+        customModelBuilder.withArguments("--init-script", file("projects/init.gradle").getAbsolutePath(), "--info");
+        customModelBuilder.setStandardOutput(out);
+        return customModelBuilder.get();
+    }
+
+    static List<String> dependencies(StsEclipseProject project) {
+        List<String> names = new ArrayList<String>();
+        for (StsEclipseProjectDependency dependency : project.getProjectDependencies())
+            names.add(dependency.getGradleModuleVersion().getName());
+        return names;
+    }
+
+    static StsEclipseProject project(StsEclipseProject root, String name) {
+        for (StsEclipseProject project : root.getChildren())
+            if (project.getGradleProject().getName().equals(name))
+                return project;
+        return null;
+    }
+
+    static File file(String path) {
+        return new File(System.getProperty("user.dir"), path);
+    }
+}
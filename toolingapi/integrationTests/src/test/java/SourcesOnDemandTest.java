@@ -0,0 +1,85 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import io.pivotal.tooling.model.eclipse.StsEclipseAttachments;
+import io.pivotal.tooling.model.eclipse.StsEclipseProject;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.gradle.tooling.GradleConnector;
+import org.gradle.tooling.ModelBuilder;
+import org.gradle.tooling.ProjectConnection;
+import org.gradle.tooling.model.ExternalDependency;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class SourcesOnDemandTest {
+    static ProjectConnection connection;
+    static StsEclipseProject root;
+
+    @BeforeClass
+    public static void beforeClass() {
+        GradleConnector connector = GradleConnector.newConnector();
+        connector.forProjectDirectory(file("projects/multiproject"));
+        connection = connector.connect();
+
+        root = configure(connection.model(StsEclipseProject.class)).get();
+    }
+
+    @Test
+    public void classpathHasNoSourcesOrJavadoc() {
+        StsEclipseProject a = project("a");
+        assertEquals(7, a.getClasspath().size());
+        for (ExternalDependency dependency : a.getClasspath()) {
+            assertNull(dependency.getSource());
+            assertNull(dependency.getJavadoc());
+        }
+    }
+
+    @Test
+    public void attachmentsAreResolvedForRequestedModules() {
+        StsEclipseAttachments attachments = configure(connection.model(StsEclipseAttachments.class),
+                "-P" + StsEclipseAttachments.MODULES_PROPERTY + "=com.google.guava:guava:18.0").get();
+
+        List<ExternalDependency> all = new ArrayList<ExternalDependency>(attachments.getAttachments());
+        assertEquals(1, all.size());
+        ExternalDependency guava = all.get(0);
+        assertEquals("guava", guava.getGradleModuleVersion().getName());
+        assertNotNull(guava.getSource());
+        assertEquals("guava-18.0-sources.jar", guava.getSource().getName());
+    }
+
+    @Test
+    public void noModulesRequestedMeansNoAttachments() {
+        StsEclipseAttachments attachments = configure(connection.model(StsEclipseAttachments.class)).get();
+        assertEquals(0, attachments.getAttachments().size());
+    }
+
+    static <T> ModelBuilder<T> configure(ModelBuilder<T> builder, String... arguments) {
+        builder.setJvmArguments(
+                "-Dorg.springsource.ide.eclipse.gradle.toolingApiRepo=" + file("../../org.springsource.ide.eclipse.gradle.toolingapi/lib").getAbsolutePath(),
+                "-Dorg.springsource.ide.eclipse.gradle.toolingApiEquivalentBinaryVersion=latest.integration",
+                "-Dorg.springsource.ide.eclipse.gradle.toolingApiSourcesOnDemand=true"
+        );
+        List<String> allArguments = new ArrayList<String>();
+        allArguments.add("--init-script");
+        allArguments.add(file("projects/init.gradle").getAbsolutePath());
+        for (String argument : arguments)
+            allArguments.add(argument);
+        builder.withArguments(allArguments.toArray(new String[allArguments.size()]));
+        return builder;
+    }
+
+    StsEclipseProject project(String name) {
+        for (StsEclipseProject project : root.getChildren())
+            if(project.getGradleProject().getName().equals(name))
+                return project;
+        return null;
+    }
+
+    static File file(String path) {
+        return new File(System.getProperty("user.dir"), path);
+    }
+}
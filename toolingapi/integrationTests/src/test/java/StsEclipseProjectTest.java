@@ -37,7 +37,8 @@ public class StsEclipseProjectTest {
         ModelBuilder<StsEclipseProject> customModelBuilder = connection.model(StsEclipseProject.class);
         customModelBuilder.setJvmArguments(
                 "-Dorg.springsource.ide.eclipse.gradle.toolingApiRepo=" + file("../../org.springsource.ide.eclipse.gradle.toolingapi/lib").getAbsolutePath(),
-                "-Dorg.springsource.ide.eclipse.gradle.toolingApiEquivalentBinaryVersion=latest.integration"
+                "-Dorg.springsource.ide.eclipse.gradle.toolingApiEquivalentBinaryVersion=latest.integration",
+                "-Dorg.springsource.ide.eclipse.gradle.toolingApiResolveExternalEquivalents=true"
         );
         customModelBuilder.withArguments("--init-script", file("projects/init.gradle").getAbsolutePath());
 
@@ -153,7 +154,8 @@ public class StsEclipseProjectTest {
         ModelBuilder<StsEclipseProject> customModelBuilder = connector.connect().model(StsEclipseProject.class);
         customModelBuilder.setJvmArguments(
                 "-Dorg.springsource.ide.eclipse.gradle.toolingApiRepo=" + file("../../org.springsource.ide.eclipse.gradle.toolingapi/lib").getAbsolutePath(),
-                "-Dorg.springsource.ide.eclipse.gradle.toolingApiEquivalentBinaryVersion=latest.integration"
+                "-Dorg.springsource.ide.eclipse.gradle.toolingApiEquivalentBinaryVersion=latest.integration",
+                "-Dorg.springsource.ide.eclipse.gradle.toolingApiResolveExternalEquivalents=true"
         );
         customModelBuilder.withArguments("--init-script", file("projects/init.gradle").getAbsolutePath());
 
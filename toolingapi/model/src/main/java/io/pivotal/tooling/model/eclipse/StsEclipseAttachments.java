@@ -0,0 +1,22 @@
+package io.pivotal.tooling.model.eclipse;
+
+import org.gradle.tooling.model.DomainObjectSet;
+import org.gradle.tooling.model.ExternalDependency;
+
+/**
+ * Sources and javadoc of a number of external modules. Meant to be requested when a {@link StsEclipseProject}
+ * was built with 'sourcesOnDemand' enabled, which leaves these out.
+ * <p>
+ * The modules are passed in with the project property {@link #MODULES_PROPERTY}, as a comma separated list
+ * of 'group:name:version' coordinates. They are looked up in the repositories of the project the model is
+ * built for.
+ */
+public interface StsEclipseAttachments {
+    String MODULES_PROPERTY = "io.pivotal.tooling.eclipse.attachments.modules";
+
+    /**
+     * @return an element for each requested module, in the requested order. Only the module version, source
+     * and javadoc are set, the file is not.
+     */
+    DomainObjectSet<? extends ExternalDependency> getAttachments();
+}
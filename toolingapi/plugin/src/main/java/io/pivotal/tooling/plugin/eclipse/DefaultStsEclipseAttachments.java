@@ -0,0 +1,19 @@
+package io.pivotal.tooling.plugin.eclipse;
+
+import java.io.Serializable;
+import java.util.List;
+
+public class DefaultStsEclipseAttachments implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private List<DefaultStsEclipseExternalDependency> attachments;
+
+    public List<DefaultStsEclipseExternalDependency> getAttachments() {
+        return attachments;
+    }
+
+    public DefaultStsEclipseAttachments setAttachments(List<DefaultStsEclipseExternalDependency> attachments) {
+        this.attachments = attachments;
+        return this;
+    }
+}
@@ -21,5 +21,6 @@ class EclipseToolingModelPlugin implements Plugin<Project> {
     public void apply(Project project) {
         project.getExtensions().create("eclipseToolingModel", EclipseToolingModelPluginExtension.class);
         registry.register(new StsEclipseProjectModelBuilder(publicationRegistry));
+        registry.register(new StsEclipseAttachmentsModelBuilder());
     }
 }
@@ -2,6 +2,9 @@ package io.pivotal.tooling.plugin.eclipse;
 
 public class EclipseToolingModelPluginExtension {
     private String equivalentBinaryVersion = "latest.integration";
+    private boolean skipJavadoc = false;
+    private boolean sourcesOnDemand = false;
+    private boolean resolveExternalEquivalents = false;
 
     public String getEquivalentBinaryVersion() {
         return equivalentBinaryVersion;
@@ -10,4 +13,40 @@ public class EclipseToolingModelPluginExtension {
     public void setEquivalentBinaryVersion(String equivalentBinaryVersion) {
         this.equivalentBinaryVersion = equivalentBinaryVersion;
     }
+
+    /**
+     * If set, javadoc jars are not looked up. Resolving them can take a long time when the
+     * repositories don't have them.
+     */
+    public boolean isSkipJavadoc() {
+        return skipJavadoc;
+    }
+
+    public void setSkipJavadoc(boolean skipJavadoc) {
+        this.skipJavadoc = skipJavadoc;
+    }
+
+    /**
+     * If set, sources and javadoc are not looked up while building the StsEclipseProject model.
+     * Clients request them as needed, with the StsEclipseAttachments model.
+     */
+    public boolean isSourcesOnDemand() {
+        return sourcesOnDemand;
+    }
+
+    public void setSourcesOnDemand(boolean sourcesOnDemand) {
+        this.sourcesOnDemand = sourcesOnDemand;
+    }
+
+    /**
+     * If set, a binary equivalent (a published jar of the project, see equivalentBinaryVersion) is looked up for
+     * each project. Clients only need these to replace dependencies on projects that aren't available to them.
+     */
+    public boolean isResolveExternalEquivalents() {
+        return resolveExternalEquivalents;
+    }
+
+    public void setResolveExternalEquivalents(boolean resolveExternalEquivalents) {
+        this.resolveExternalEquivalents = resolveExternalEquivalents;
+    }
 }
@@ -0,0 +1,52 @@
+package io.pivotal.tooling.plugin.eclipse;
+
+import io.pivotal.tooling.model.eclipse.StsEclipseAttachments;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.gradle.api.Project;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier;
+import org.gradle.api.internal.artifacts.component.DefaultModuleComponentIdentifier;
+import org.gradle.tooling.provider.model.ToolingModelBuilder;
+
+/**
+ * Resolves the sources and javadoc of the modules listed in the {@link StsEclipseAttachments#MODULES_PROPERTY}
+ * project property, in a single query.
+ */
+class StsEclipseAttachmentsModelBuilder implements ToolingModelBuilder {
+    @Override
+    public boolean canBuild(String modelName) {
+        return modelName.equals(StsEclipseAttachments.class.getName());
+    }
+
+    @Override
+    public Object buildAll(String modelName, Project project) {
+        List<DefaultStsEclipseExternalDependency> attachments = new ArrayList<DefaultStsEclipseExternalDependency>();
+        Map<ComponentIdentifier, List<DefaultStsEclipseExternalDependency>> components = new LinkedHashMap<ComponentIdentifier, List<DefaultStsEclipseExternalDependency>>();
+
+        if (project.hasProperty(StsEclipseAttachments.MODULES_PROPERTY)) {
+            for (String module : project.property(StsEclipseAttachments.MODULES_PROPERTY).toString().split(",")) {
+                String[] coordinates = module.trim().split(":");
+                if (coordinates.length != 3)
+                    continue;
+
+                DefaultStsEclipseExternalDependency attachment = new DefaultStsEclipseExternalDependency()
+                        .setModuleVersion(new DefaultModuleVersionIdentifier(coordinates[0], coordinates[1], coordinates[2]));
+                attachments.add(attachment);
+                components.put(new DefaultModuleComponentIdentifier(coordinates[0], coordinates[1], coordinates[2]),
+                        Collections.singletonList(attachment));
+            }
+        }
+
+        if (!components.isEmpty())
+            StsEclipseProjectModelBuilder.resolveSourcesAndJavadoc(project, components,
+                    StsEclipseProjectModelBuilder.isSkipJavadoc(project.getRootProject()));
+
+        return new DefaultStsEclipseAttachments().setAttachments(attachments);
+    }
+}
@@ -6,18 +6,29 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
 
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
 import org.gradle.api.artifacts.*;
 import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.repositories.ArtifactRepository;
+import org.gradle.api.artifacts.repositories.FlatDirectoryArtifactRepository;
+import org.gradle.api.artifacts.repositories.IvyArtifactRepository;
+import org.gradle.api.artifacts.repositories.MavenArtifactRepository;
 import org.gradle.api.artifacts.result.ArtifactResult;
+import org.gradle.api.component.Artifact;
 import org.gradle.api.artifacts.result.ComponentArtifactsResult;
 import org.gradle.api.artifacts.result.DependencyResult;
+import org.gradle.api.artifacts.result.ResolvedComponentResult;
 import org.gradle.api.artifacts.result.ResolvedDependencyResult;
+import org.gradle.api.invocation.Gradle;
 import org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier;
 import org.gradle.api.internal.artifacts.component.DefaultModuleComponentIdentifier;
 import org.gradle.api.internal.artifacts.component.DefaultModuleComponentSelector;
@@ -25,6 +36,8 @@ import org.gradle.api.internal.artifacts.dependencies.DefaultExternalModuleDepen
 import org.gradle.api.internal.artifacts.ivyservice.projectmodule.ProjectPublication;
 import org.gradle.api.internal.artifacts.ivyservice.projectmodule.ProjectPublicationRegistry;
 import org.gradle.api.internal.artifacts.result.DefaultResolvedArtifactResult;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
 import org.gradle.api.specs.Specs;
 import org.gradle.language.base.artifact.SourcesArtifact;
 import org.gradle.language.java.artifact.JavadocArtifact;
@@ -42,7 +55,38 @@ import org.gradle.tooling.model.eclipse.HierarchicalEclipseProject;
 import org.gradle.tooling.provider.model.ToolingModelBuilder;
 
 class StsEclipseProjectModelBuilder implements ToolingModelBuilder {
-    private static final String PROJECT_EXTERNAL_CONF = "projectExternal";
+    private static final Logger logger = Logging.getLogger(StsEclipseProjectModelBuilder.class);
+
+    /**
+     * The external dependencies of a resolved configuration.
+     */
+    private static class ConfigurationDependencies {
+        /**
+         * Jars of the external modules the configuration depends on, by module key.
+         */
+        final Map<String, DefaultStsEclipseExternalDependency> binaries = new LinkedHashMap<String, DefaultStsEclipseExternalDependency>();
+
+        /**
+         * Keys of all modules with resolved artifacts, these are taken off the classpath when the configuration is a minus configuration.
+         */
+        final Set<String> modules = new HashSet<String>();
+    }
+
+    /**
+     * Components whose sources and javadoc can be looked up in the repositories of a given project.
+     */
+    private static class SourcesQuery {
+        final Project project;
+
+        /**
+         * The external dependencies to fill in with the results, per component.
+         */
+        final Map<ComponentIdentifier, List<DefaultStsEclipseExternalDependency>> components = new LinkedHashMap<ComponentIdentifier, List<DefaultStsEclipseExternalDependency>>();
+
+        SourcesQuery(Project project) {
+            this.project = project;
+        }
+    }
 
     private DefaultStsEclipseProject result, root;
     private Project currentProject;
@@ -56,8 +100,32 @@ class StsEclipseProjectModelBuilder implements ToolingModelBuilder {
     private Map<String, GradleModuleVersion> moduleVersionByProjectPath = new HashMap<String, GradleModuleVersion>();
     private Map<String, DefaultStsEclipseExternalDependency> externalEquivalentByProjectPath = new HashMap<String, DefaultStsEclipseExternalDependency>();
 
+    /**
+     * Binary equivalents of the projects in a build, by project path. Models are often requested for many projects
+     * of the same build, the equivalents only need to be looked up once.
+     */
+    private static final Map<Gradle, Map<String, DefaultStsEclipseExternalDependency>> externalEquivalentsByBuild = new WeakHashMap<Gradle, Map<String, DefaultStsEclipseExternalDependency>>();
+
 	private Map<String, DefaultStsEclipseProject> projectByPath = new HashMap<String, DefaultStsEclipseProject>();
 
+    private Map<Configuration, ConfigurationDependencies> resolvedConfigurations = new HashMap<Configuration, ConfigurationDependencies>();
+
+    /**
+     * External dependencies are shared by all projects that depend on the same module, by module key.
+     */
+    private Map<String, DefaultStsEclipseExternalDependency> externalDependencyById = new HashMap<String, DefaultStsEclipseExternalDependency>();
+
+    /**
+     * Components of the external dependencies whose sources and javadoc haven't been requested yet, by module key.
+     */
+    private Map<String, ComponentIdentifier> componentIdById = new HashMap<String, ComponentIdentifier>();
+
+    /**
+     * Sources and javadoc are resolved for the entire hierarchy at once, after all projects were visited.
+     * Projects declaring the same repositories share a single query.
+     */
+    private Map<List<String>, SourcesQuery> sourcesQueries = new LinkedHashMap<List<String>, SourcesQuery>();
+
     public StsEclipseProjectModelBuilder(ProjectPublicationRegistry publicationRegistry) {
         this.publicationRegistry = publicationRegistry;
     }
@@ -71,8 +139,14 @@ class StsEclipseProjectModelBuilder implements ToolingModelBuilder {
     public Object buildAll(String modelName, Project project) {
         currentProject = project;
         rootGradleProject = gradleProjectBuilder.buildAll(project);
+        if (isResolveExternalEquivalents(project.getRootProject()))
+            externalEquivalentByProjectPath.putAll(getExternalEquivalents(project.getRootProject()));
         buildHierarchy(project.getRootProject());
-        buildProjectDependencies(root);
+        if (isSourcesOnDemand(project.getRootProject()))
+            sourcesQueries.clear(); // looked up later on, with the StsEclipseAttachments model
+        else
+            resolveSourcesAndJavadoc(isSkipJavadoc(project.getRootProject()));
+        buildProjectDependencies();
         return result;
     }
 
@@ -81,50 +155,14 @@ class StsEclipseProjectModelBuilder implements ToolingModelBuilder {
      * @return - A list of all binary dependencies, including transitives of both
      * binary dependencies and project dependencies
      */
-    @SuppressWarnings("unchecked")
 	private List<DefaultStsEclipseExternalDependency> buildExternalDependencies(Project project) {
-        Map<String, DefaultStsEclipseExternalDependency> externalDependenciesById = new HashMap<String, DefaultStsEclipseExternalDependency>();
+        // external modules are keyed by 'group:name:version', local files by their path
+        Map<String, DefaultStsEclipseExternalDependency> externalDependenciesById = new LinkedHashMap<String, DefaultStsEclipseExternalDependency>();
 
         EclipseModel eclipseModel = project.getExtensions().getByType(EclipseModel.class);
 
-        for (Configuration conf : eclipseModel.getClasspath().getPlusConfigurations()) {
-            List<ComponentIdentifier> binaryDependencies = new ArrayList<ComponentIdentifier>();
-            for (DependencyResult dep : conf.getIncoming().getResolutionResult().getAllDependencies()) {
-                if (dep instanceof ResolvedDependencyResult && dep.getRequested() instanceof DefaultModuleComponentSelector)
-                    binaryDependencies.add(((ResolvedDependencyResult) dep).getSelected().getId());
-            }
-
-            List<String> binaryDependenciesAsStrings = new ArrayList<String>();
-            for (ComponentIdentifier binaryDependency : binaryDependencies)
-                binaryDependenciesAsStrings.add(binaryDependency.toString());
-
-            Set<ComponentArtifactsResult> artifactsResults = project.getDependencies().createArtifactResolutionQuery()
-                    .forComponents(binaryDependencies)
-                    .withArtifacts(JvmLibrary.class, SourcesArtifact.class, JavadocArtifact.class)
-                    .execute()
-                    .getResolvedComponents();
-
-            for (ResolvedArtifact artifact : conf.getResolvedConfiguration().getLenientConfiguration().getArtifacts(Specs.SATISFIES_ALL)) {
-                ModuleVersionIdentifier id = artifact.getModuleVersion().getId();
-                if (binaryDependenciesAsStrings.contains(id.toString())) {
-                    externalDependenciesById.put(id.toString(), new DefaultStsEclipseExternalDependency()
-                            .setFile(artifact.getFile())
-                            .setModuleVersion(id));
-                }
-            }
-
-            for (ComponentArtifactsResult artifactResult : artifactsResults) {
-                DefaultStsEclipseExternalDependency externalDependency = externalDependenciesById.get(artifactResult.getId().toString());
-                for (ArtifactResult sourcesResult : artifactResult.getArtifacts(SourcesArtifact.class)) {
-                    if (sourcesResult instanceof DefaultResolvedArtifactResult)
-                        externalDependency.setSource(((DefaultResolvedArtifactResult) sourcesResult).getFile());
-                }
-                for (ArtifactResult javadocResult : artifactResult.getArtifacts(JavadocArtifact.class)) {
-                    if (javadocResult instanceof DefaultResolvedArtifactResult)
-                        externalDependency.setJavadoc(((DefaultResolvedArtifactResult) javadocResult).getFile());
-                }
-            }
-        }
+        for (Configuration conf : eclipseModel.getClasspath().getPlusConfigurations())
+            externalDependenciesById.putAll(resolve(conf).binaries);
 
         // this grabs "local file dependencies" (e.g. gradleApi(), localGroovy())
         for(Configuration conf : eclipseModel.getClasspath().getPlusConfigurations()) {
@@ -141,55 +179,225 @@ class StsEclipseProjectModelBuilder implements ToolingModelBuilder {
             }
         }
 
-        for(Configuration conf: eclipseModel.getClasspath().getMinusConfigurations()) {
-            for (ResolvedArtifact artifact : conf.getResolvedConfiguration().getLenientConfiguration().getArtifacts(Specs.SATISFIES_ALL)) {
-                externalDependenciesById.remove(artifact.getModuleVersion().getId().toString());
-            }
+        for(Configuration conf: eclipseModel.getClasspath().getMinusConfigurations())
+            externalDependenciesById.keySet().removeAll(resolve(conf).modules);
+
+        for (String id : externalDependenciesById.keySet()) {
+            ComponentIdentifier componentId = componentIdById.remove(id);
+            if (componentId != null)
+                requestSourcesAndJavadoc(project, componentId, externalDependencyById.get(id));
         }
 
         // must create new list because Map.values() is not Serializable
         return new ArrayList<DefaultStsEclipseExternalDependency>(externalDependenciesById.values());
     }
 
-    private void resolveExternalDependencyEquivalent(Project project) {
-        String group = project.getGroup().toString(), name = project.getName();
+    /**
+     * Resolves a configuration, unless it was resolved before. The same configurations are often
+     * needed for more than one project, e.g. as a plus configuration of one project and a minus
+     * configuration of another.
+     */
+    private ConfigurationDependencies resolve(Configuration conf) {
+        ConfigurationDependencies resolved = resolvedConfigurations.get(conf);
+        if (resolved != null)
+            return resolved;
+
+        logger.info("Resolving dependencies of " + conf);
+        resolved = new ConfigurationDependencies();
+
+        Map<ModuleVersionIdentifier, ComponentIdentifier> binaryDependencies = new HashMap<ModuleVersionIdentifier, ComponentIdentifier>();
+        for (DependencyResult dep : conf.getIncoming().getResolutionResult().getAllDependencies()) {
+            if (dep instanceof ResolvedDependencyResult && dep.getRequested() instanceof DefaultModuleComponentSelector) {
+                ResolvedComponentResult selected = ((ResolvedDependencyResult) dep).getSelected();
+                binaryDependencies.put(selected.getModuleVersion(), selected.getId());
+            }
+        }
 
-        EclipseToolingModelPluginExtension ext = (EclipseToolingModelPluginExtension) project.getExtensions().getByName("eclipseToolingModel");
+        for (ResolvedArtifact artifact : conf.getResolvedConfiguration().getLenientConfiguration().getArtifacts(Specs.SATISFIES_ALL)) {
+            ModuleVersionIdentifier id = artifact.getModuleVersion().getId();
+            String key = key(id);
+            resolved.modules.add(key);
+            ComponentIdentifier componentId = binaryDependencies.get(id);
+            if (componentId != null) {
+                DefaultStsEclipseExternalDependency externalDependency = externalDependencyById.get(key);
+                if (externalDependency == null) {
+                    externalDependencyById.put(key, externalDependency = new DefaultStsEclipseExternalDependency()
+                            .setFile(artifact.getFile())
+                            .setModuleVersion(id));
+                    componentIdById.put(key, componentId);
+                }
+                resolved.binaries.put(key, externalDependency);
+            }
+        }
 
-        Configuration projectExternal = project.getConfigurations().create(PROJECT_EXTERNAL_CONF);
-        projectExternal.getDependencies().add(new DefaultExternalModuleDependency(group,
-                name, ext.getEquivalentBinaryVersion()).setTransitive(false));
+        resolvedConfigurations.put(conf, resolved);
+        return resolved;
+    }
 
-        DefaultStsEclipseExternalDependency externalDependency = new DefaultStsEclipseExternalDependency();
+    /**
+     * @return the 'group:name:version' key of a module
+     */
+    private static String key(ModuleVersionIdentifier id) {
+        return id.getGroup() + ":" + id.getName() + ":" + id.getVersion();
+    }
 
-        for (ResolvedArtifact resolvedArtifact : projectExternal.getResolvedConfiguration().getLenientConfiguration().getArtifacts(Specs.SATISFIES_ALL)) {
-            externalDependency.setModuleVersion(new DefaultModuleVersionIdentifier(group, name,
-                    resolvedArtifact.getModuleVersion().getId().getVersion()));
-            externalDependency.setFile(resolvedArtifact.getFile());
-        }
+    /**
+     * Requests the sources and javadoc of an external dependency to be looked up, in the repositories of the
+     * given project, once the entire hierarchy was visited.
+     */
+    private void requestSourcesAndJavadoc(Project project, ComponentIdentifier componentId, DefaultStsEclipseExternalDependency externalDependency) {
+        List<String> repositories = repositories(project);
+        SourcesQuery query = sourcesQueries.get(repositories);
+        if (query == null)
+            sourcesQueries.put(repositories, query = new SourcesQuery(project));
+
+        List<DefaultStsEclipseExternalDependency> externalDependencies = query.components.get(componentId);
+        if (externalDependencies == null)
+            query.components.put(componentId, externalDependencies = new ArrayList<DefaultStsEclipseExternalDependency>());
+        externalDependencies.add(externalDependency);
+    }
 
-        if(externalDependency.getFile() == null)
-            return; // unable to find a binary equivalent for this project
+    /**
+     * Looks up all requested sources and javadoc, with a single artifact resolution query per set of repositories.
+     */
+    private void resolveSourcesAndJavadoc(boolean skipJavadoc) {
+        for (SourcesQuery query : sourcesQueries.values())
+            resolveSourcesAndJavadoc(query.project, query.components, skipJavadoc);
+        sourcesQueries.clear();
+    }
 
-        @SuppressWarnings("unchecked")
-		Set<ComponentArtifactsResult> artifactsResults = project.getDependencies().createArtifactResolutionQuery()
-                .forComponents(new DefaultModuleComponentIdentifier(group, name, externalDependency.getGradleModuleVersion().getVersion()))
-                .withArtifacts(JvmLibrary.class, SourcesArtifact.class, JavadocArtifact.class)
+    /**
+     * Looks up the sources and javadoc of a number of components in the repositories of a project, with a single
+     * artifact resolution query, and sets them on the given external dependencies.
+     */
+    @SuppressWarnings("unchecked")
+    static void resolveSourcesAndJavadoc(Project project, Map<ComponentIdentifier, List<DefaultStsEclipseExternalDependency>> components,
+            boolean skipJavadoc) {
+        Class<? extends Artifact>[] artifactTypes = skipJavadoc
+                ? new Class[] { SourcesArtifact.class }
+                : new Class[] { SourcesArtifact.class, JavadocArtifact.class };
+
+        logger.info("Resolving sources and javadoc of " + components.size() + " components in one query");
+        for (ComponentIdentifier componentId : components.keySet())
+            logger.info("Resolving sources and javadoc of " + componentId);
+
+        Set<ComponentArtifactsResult> artifactsResults = project.getDependencies().createArtifactResolutionQuery()
+                .forComponents(components.keySet())
+                .withArtifacts(JvmLibrary.class, artifactTypes)
                 .execute()
                 .getResolvedComponents();
 
         for (ComponentArtifactsResult artifactResult : artifactsResults) {
-            for (ArtifactResult sourcesResult : artifactResult.getArtifacts(SourcesArtifact.class)) {
-                if(sourcesResult instanceof DefaultResolvedArtifactResult)
-                    externalDependency.setSource(((DefaultResolvedArtifactResult) sourcesResult).getFile());
+            List<DefaultStsEclipseExternalDependency> externalDependencies = components.get(artifactResult.getId());
+            if (externalDependencies == null)
+                continue;
+            for (DefaultStsEclipseExternalDependency externalDependency : externalDependencies) {
+                for (ArtifactResult sourcesResult : artifactResult.getArtifacts(SourcesArtifact.class)) {
+                    if (sourcesResult instanceof DefaultResolvedArtifactResult)
+                        externalDependency.setSource(((DefaultResolvedArtifactResult) sourcesResult).getFile());
+                }
+                if (!skipJavadoc) {
+                    for (ArtifactResult javadocResult : artifactResult.getArtifacts(JavadocArtifact.class)) {
+                        if (javadocResult instanceof DefaultResolvedArtifactResult)
+                            externalDependency.setJavadoc(((DefaultResolvedArtifactResult) javadocResult).getFile());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Describes the repositories of a project, projects with the same description resolve artifacts in the same way.
+     */
+    private static List<String> repositories(Project project) {
+        List<String> repositories = new ArrayList<String>();
+        for (ArtifactRepository repository : project.getRepositories()) {
+            if (repository instanceof MavenArtifactRepository)
+                repositories.add("maven " + ((MavenArtifactRepository) repository).getUrl());
+            else if (repository instanceof IvyArtifactRepository)
+                repositories.add("ivy " + ((IvyArtifactRepository) repository).getUrl());
+            else if (repository instanceof FlatDirectoryArtifactRepository)
+                repositories.add("flatDir " + ((FlatDirectoryArtifactRepository) repository).getDirs());
+            else
+                repositories.add(repository.getName());
+        }
+        return repositories;
+    }
+
+    private static EclipseToolingModelPluginExtension extension(Project project) {
+        return (EclipseToolingModelPluginExtension) project.getExtensions().getByName("eclipseToolingModel");
+    }
+
+    /**
+     * Sources and javadoc are resolved for the whole hierarchy at once, so only the setting of the root project is used.
+     */
+    static boolean isSkipJavadoc(Project rootProject) {
+        return extension(rootProject).isSkipJavadoc();
+    }
+
+    private static boolean isSourcesOnDemand(Project rootProject) {
+        return extension(rootProject).isSourcesOnDemand();
+    }
+
+    private static boolean isResolveExternalEquivalents(Project rootProject) {
+        return extension(rootProject).isResolveExternalEquivalents();
+    }
+
+    private Map<String, DefaultStsEclipseExternalDependency> getExternalEquivalents(Project rootProject) {
+        synchronized (externalEquivalentsByBuild) {
+            Map<String, DefaultStsEclipseExternalDependency> equivalents = externalEquivalentsByBuild.get(rootProject.getGradle());
+            if (equivalents == null)
+                externalEquivalentsByBuild.put(rootProject.getGradle(), equivalents = resolveExternalEquivalents(rootProject));
+            return equivalents;
+        }
+    }
+
+    /**
+     * Looks up a binary equivalent for each project in the build, i.e. a published jar of the project that can
+     * replace a project dependency when the project isn't in the workspace. Projects declaring the same repositories
+     * are resolved together, in a single detached configuration.
+     */
+    private Map<String, DefaultStsEclipseExternalDependency> resolveExternalEquivalents(Project rootProject) {
+        Map<List<String>, List<Project>> projectsByRepositories = new LinkedHashMap<List<String>, List<Project>>();
+        for (Project project : rootProject.getAllprojects()) {
+            List<String> repositories = repositories(project);
+            List<Project> projects = projectsByRepositories.get(repositories);
+            if (projects == null)
+                projectsByRepositories.put(repositories, projects = new ArrayList<Project>());
+            projects.add(project);
+        }
+
+        Map<String, DefaultStsEclipseExternalDependency> equivalents = new HashMap<String, DefaultStsEclipseExternalDependency>();
+        for (List<Project> projects : projectsByRepositories.values()) {
+            Map<String, Project> projectByModule = new HashMap<String, Project>();
+            List<Dependency> dependencies = new ArrayList<Dependency>();
+            for (Project project : projects) {
+                String group = project.getGroup().toString(), name = project.getName();
+                projectByModule.put(group + ":" + name, project);
+                dependencies.add(new DefaultExternalModuleDependency(group, name,
+                        extension(project).getEquivalentBinaryVersion()).setTransitive(false));
             }
-            for (ArtifactResult javadocResult : artifactResult.getArtifacts(JavadocArtifact.class)) {
-                if(javadocResult instanceof DefaultResolvedArtifactResult)
-                    externalDependency.setJavadoc(((DefaultResolvedArtifactResult) javadocResult).getFile());
+
+            logger.info("Resolving binary equivalents of " + projects.size() + " projects in one configuration");
+            Configuration equivalentsConf = projects.get(0).getConfigurations()
+                    .detachedConfiguration(dependencies.toArray(new Dependency[dependencies.size()]));
+
+            for (ResolvedArtifact resolvedArtifact : equivalentsConf.getResolvedConfiguration().getLenientConfiguration().getArtifacts(Specs.SATISFIES_ALL)) {
+                ModuleVersionIdentifier id = resolvedArtifact.getModuleVersion().getId();
+                Project project = projectByModule.get(id.getGroup() + ":" + id.getName());
+                if (project == null)
+                    continue;
+
+                DefaultStsEclipseExternalDependency externalDependency = new DefaultStsEclipseExternalDependency()
+                        .setFile(resolvedArtifact.getFile())
+                        .setModuleVersion(id);
+                requestSourcesAndJavadoc(project, new DefaultModuleComponentIdentifier(id.getGroup(), id.getName(), id.getVersion()),
+                        externalDependency);
+                logger.info("Binary equivalent of " + project.getPath() + " is " + externalDependency.getFile());
+                equivalents.put(project.getPath(), externalDependency);
             }
         }
-        System.out.println("externalEq: "+project.getPath() + " => " + externalDependency.getFile());
-        externalEquivalentByProjectPath.put(project.getPath(), externalDependency);
+        return equivalents;
     }
 
     private DefaultStsEclipseProject buildHierarchy(Project project) {
@@ -204,7 +412,6 @@ class StsEclipseProjectModelBuilder implements ToolingModelBuilder {
 
         moduleVersionByProjectPath.put(project.getPath(), new DefaultGradleModuleVersion(new DefaultModuleVersionIdentifier(project.getGroup().toString(),
                 project.getName(), project.getVersion().toString())));
-        resolveExternalDependencyEquivalent(project);
 
         DefaultEclipseProject defaultEclipseProject = eclipseModelBuilder.buildAll(HierarchicalEclipseProject.class.getName(), project);
 
@@ -241,36 +448,37 @@ class StsEclipseProjectModelBuilder implements ToolingModelBuilder {
 	    	return existing;
 	}
     
-    private Set<DefaultStsEclipseProjectDependency> buildProjectDependencies(DefaultStsEclipseProject eclipseProject) {
-    		Set<DefaultStsEclipseProjectDependency> pDeps = eclipseProject.getProjectDependencies();
-
-	    	if (pDeps == null) {
-	    		eclipseProject.setProjectDependencies(pDeps = new HashSet<DefaultStsEclipseProjectDependency>());
-	    		for (DefaultEclipseProjectDependency projectDependency : eclipseProject.getHierarchicalEclipseProject().getProjectDependencies()) {
-	    			// in case of a cycle, we never want to add ourselves as a project dependency
-	    			if(!eclipseProject.getHierarchicalEclipseProject().getPath().equals(":" + projectDependency.getPath())) {
-	    				pDeps.add(newProjectDep(projectDependency));	
-	    			}
-	    		}
-	    		//Add transitives as well
-	    		for (DefaultEclipseProjectDependency projectDependency : eclipseProject.getHierarchicalEclipseProject().getProjectDependencies()) {
-	    			if(!eclipseProject.getName().equals(projectDependency.getTargetProject().getName())) {
-	    				for (DefaultStsEclipseProjectDependency transitive : buildProjectDependencies(getProject(projectDependency.getTargetProject().getPath()))) {
-	    					if(!eclipseProject.getHierarchicalEclipseProject().getPath().equals(":" + transitive.getPath())) {
-			    				pDeps.add(transitive);	
-			    			}
-					}
-	    			}
-	    		}
-	    	}
-	
-	    	//Ensure that all projects in the hierarchy get built:
-	    	for (DefaultStsEclipseProject child : eclipseProject.getChildren())
-	    		buildProjectDependencies(child);
-	    	
-	    	return pDeps;
+    /**
+     * Sets the project dependencies of every project in the hierarchy: its own project dependencies, followed by
+     * the project dependencies those have, transitively. A project never depends on itself, even if it's part of a cycle.
+     */
+    private void buildProjectDependencies() {
+        long start = System.currentTimeMillis();
+
+        // projects ordered by path, so the results don't depend on the order in which they were visited
+        Map<String, List<String>> edges = new LinkedHashMap<String, List<String>>();
+        Map<String, DefaultEclipseProjectDependency> dependencyByTargetPath = new HashMap<String, DefaultEclipseProjectDependency>();
+        for (Map.Entry<String, DefaultStsEclipseProject> entry : new TreeMap<String, DefaultStsEclipseProject>(projectByPath).entrySet()) {
+            List<String> targets = new ArrayList<String>();
+            for (DefaultEclipseProjectDependency projectDependency : entry.getValue().getHierarchicalEclipseProject().getProjectDependencies()) {
+                String targetPath = projectDependency.getTargetProject().getPath();
+                targets.add(targetPath);
+                if (!dependencyByTargetPath.containsKey(targetPath))
+                    dependencyByTargetPath.put(targetPath, projectDependency);
+            }
+            edges.put(entry.getKey(), targets);
+        }
+
+        for (Map.Entry<String, Set<String>> entry : new TransitiveClosure<String>(edges).compute().entrySet()) {
+            Set<DefaultStsEclipseProjectDependency> pDeps = new LinkedHashSet<DefaultStsEclipseProjectDependency>();
+            for (String targetPath : entry.getValue())
+                pDeps.add(newProjectDep(dependencyByTargetPath.get(targetPath)));
+            projectByPath.get(entry.getKey()).setProjectDependencies(pDeps);
+        }
+
+        logger.info("Computed the project dependencies of " + edges.size() + " projects in " + (System.currentTimeMillis() - start) + " ms");
     }
-    
+
     private Map<String, DefaultStsEclipseProjectDependency> projectDependendencyCache = new HashMap<String, DefaultStsEclipseProjectDependency>();
     
 	private DefaultStsEclipseProjectDependency newProjectDep(DefaultEclipseProjectDependency projectDependency) {
@@ -0,0 +1,147 @@
+package io.pivotal.tooling.plugin.eclipse;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes, for each node of a directed graph, the nodes reachable from it. The graph may have cycles.
+ * <p>
+ * The strongly connected components are found with Tarjan's algorithm. All nodes of a component reach the same
+ * nodes, so the reachable nodes are computed once per component, from the components it points to. Tarjan's
+ * algorithm completes a component only after all components reachable from it, so those are always known by then.
+ * The depth-first search keeps its own stack, long dependency chains don't overflow the thread's stack.
+ */
+class TransitiveClosure<T> {
+    private static class Component<T> {
+        final List<T> members = new ArrayList<T>();
+
+        /**
+         * Nodes reachable from the members, including the members themselves if the component has more than one.
+         */
+        final Set<T> reachable = new LinkedHashSet<T>();
+    }
+
+    /**
+     * A node whose successors are being visited.
+     */
+    private static class Frame<T> {
+        final T node;
+        final Iterator<T> successors;
+
+        Frame(T node, Iterator<T> successors) {
+            this.node = node;
+            this.successors = successors;
+        }
+    }
+
+    private final Map<T, List<T>> edges;
+
+    private final Map<T, Integer> index = new HashMap<T, Integer>();
+    private final Map<T, Integer> lowLink = new HashMap<T, Integer>();
+    private final Deque<T> stack = new ArrayDeque<T>();
+    private final Set<T> onStack = new HashSet<T>();
+    private final Map<T, Component<T>> componentOf = new HashMap<T, Component<T>>();
+
+    /**
+     * @param edges the successors of each node, in order. Successors that aren't keys of the map are nodes
+     * without successors.
+     */
+    TransitiveClosure(Map<T, List<T>> edges) {
+        this.edges = edges;
+    }
+
+    /**
+     * @return for each key of the edges map, the nodes reachable from it, except the node itself. The direct
+     * successors come first, in order, followed by the other reachable nodes. Given the same edges, the order is
+     * always the same.
+     */
+    Map<T, Set<T>> compute() {
+        for (T node : edges.keySet())
+            if (!index.containsKey(node))
+                strongConnect(node);
+
+        Map<T, Set<T>> closure = new LinkedHashMap<T, Set<T>>();
+        for (T node : edges.keySet()) {
+            Set<T> reachable = new LinkedHashSet<T>(successors(node));
+            reachable.addAll(componentOf.get(node).reachable);
+            reachable.remove(node);
+            closure.put(node, reachable);
+        }
+        return closure;
+    }
+
+    private void strongConnect(T root) {
+        Deque<Frame<T>> work = new ArrayDeque<Frame<T>>();
+        work.push(visit(root));
+        while (!work.isEmpty()) {
+            Frame<T> frame = work.peek();
+            if (frame.successors.hasNext()) {
+                T successor = frame.successors.next();
+                if (!index.containsKey(successor))
+                    work.push(visit(successor));
+                else if (onStack.contains(successor))
+                    lowLink.put(frame.node, Math.min(lowLink.get(frame.node), index.get(successor)));
+            } else {
+                work.pop();
+                if (!work.isEmpty()) {
+                    T parent = work.peek().node;
+                    lowLink.put(parent, Math.min(lowLink.get(parent), lowLink.get(frame.node)));
+                }
+                if (lowLink.get(frame.node).equals(index.get(frame.node)))
+                    complete(frame.node);
+            }
+        }
+    }
+
+    private Frame<T> visit(T node) {
+        index.put(node, index.size());
+        lowLink.put(node, index.get(node));
+        stack.push(node);
+        onStack.add(node);
+        return new Frame<T>(node, successors(node).iterator());
+    }
+
+    /**
+     * Pops the component whose root is the given node off the stack, and computes the nodes reachable from it.
+     */
+    private void complete(T root) {
+        Component<T> component = new Component<T>();
+        T member;
+        do {
+            member = stack.pop();
+            onStack.remove(member);
+            component.members.add(member);
+            componentOf.put(member, component);
+        } while (!member.equals(root));
+        Collections.reverse(component.members);
+
+        if (component.members.size() > 1)
+            component.reachable.addAll(component.members);
+        Set<Component<T>> merged = new HashSet<Component<T>>();
+        for (T node : component.members) {
+            for (T successor : successors(node)) {
+                Component<T> successorComponent = componentOf.get(successor);
+                if (successorComponent != component) {
+                    component.reachable.add(successor);
+                    if (merged.add(successorComponent))
+                        component.reachable.addAll(successorComponent.reachable);
+                }
+            }
+        }
+    }
+
+    private List<T> successors(T node) {
+        List<T> successors = edges.get(node);
+        return successors == null ? Collections.<T>emptyList() : successors;
+    }
+}